@@ -90,10 +90,12 @@ CREATE TABLE chapters (
     novel_id         BIGINT       NOT NULL COMMENT '所属小说ID',
     chapter_number   INT          NOT NULL COMMENT '章节序号（第几章）',
     title            VARCHAR(255)          DEFAULT NULL COMMENT '章节标题',
-    abstract_content VARCHAR(500)          DEFAULT NULL COMMENT '章节摘要',
+    abstract_content VARCHAR(500)          DEFAULT NULL COMMENT '章节摘要（根据已生成正文生成）',
+    planned_outline  TEXT                  DEFAULT NULL COMMENT '本章计划（大纲同步或创建时指定）',
     content          LONGTEXT              DEFAULT NULL COMMENT '正文内容',
     vector_id        VARCHAR(100)          DEFAULT NULL COMMENT '向量库中本章节向量ID',
-    status           TINYINT              DEFAULT 0 COMMENT '0: 待生成，1: 生成中，2: 已完成',
+    chunk_ids        TEXT                  DEFAULT NULL COMMENT '向量库中本章节分块向量ID，逗号分隔',
+    status           TINYINT              DEFAULT 0 COMMENT '0: 待生成，1: 生成中，2: 已完成，3: 已取消',
     created_at       TIMESTAMP             DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     PRIMARY KEY (id),
     UNIQUE KEY uk_chapters_novel_number (novel_id, chapter_number),
@@ -101,6 +103,23 @@ CREATE TABLE chapters (
     KEY idx_chapters_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='章节内容表';
 
+-- ------------------------------------------------------------
+-- 小说分层摘要表（卷摘要、前情提要，用于控制章节生成的上下文长度）
+-- ------------------------------------------------------------
+CREATE TABLE novel_summaries (
+    id            BIGINT       NOT NULL AUTO_INCREMENT COMMENT '主键',
+    novel_id      BIGINT       NOT NULL COMMENT '所属小说ID',
+    level         TINYINT      NOT NULL COMMENT '1: 卷摘要，2: 前情提要（滚动）',
+    volume_index  INT          NOT NULL DEFAULT 0 COMMENT '卷序号（从0开始，前情提要固定为0）',
+    start_chapter INT          NOT NULL COMMENT '覆盖的起始章节',
+    end_chapter   INT          NOT NULL COMMENT '覆盖的结束章节',
+    content       LONGTEXT              DEFAULT NULL COMMENT '摘要内容',
+    source_hash   VARCHAR(64)           DEFAULT NULL COMMENT '生成摘要时源章节摘要的哈希',
+    updated_at    TIMESTAMP             DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_novel_summaries_level_volume (novel_id, level, volume_index)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='小说分层摘要表';
+
 -- ------------------------------------------------------------
 -- 基础配置表（大模型类型、小说类型等键值配置）
 -- ------------------------------------------------------------
@@ -121,14 +140,43 @@ CREATE TABLE task (
     task_name        VARCHAR(255) NOT NULL COMMENT '任务名称',
     task_type        VARCHAR(255) NOT NULL COMMENT '任务类型',
     task_relation_id BIGINT       NOT NULL COMMENT '关联业务ID（如小说ID、章节ID）',
-    task_status      TINYINT               DEFAULT 0 COMMENT '0: 待处理，1: 处理中，2: 完成，3: 失败',
+    task_status      TINYINT               DEFAULT 0 COMMENT '0: 待处理，1: 处理中，2: 完成，3: 失败，4: 已取消',
+    progress_done    INT                   DEFAULT 0 COMMENT '已完成（已落检查点）的子项数',
+    progress_total   INT                   DEFAULT 0 COMMENT '子项总数',
+    error_message    VARCHAR(1000)         DEFAULT NULL COMMENT '失败原因',
+    locked_by        VARCHAR(100)          DEFAULT NULL COMMENT '执行节点（整本生成任务认领）',
+    locked_at        TIMESTAMP             DEFAULT NULL COMMENT '执行节点最近续约时间',
     created_at       TIMESTAMP             DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at       TIMESTAMP             DEFAULT NULL COMMENT '更新时间',
     PRIMARY KEY (id),
     KEY idx_task_type_status (task_type(50), task_status),
     KEY idx_task_relation_id (task_relation_id),
     KEY idx_task_created_at (created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='异步任务表';
 
+-- ------------------------------------------------------------
+-- 本地异步生成作业表（job.dispatch.type=local 时作为作业队列，需 MySQL 8.0+ 支持 SKIP LOCKED）
+-- ------------------------------------------------------------
+CREATE TABLE generation_job (
+    id           BIGINT        NOT NULL AUTO_INCREMENT COMMENT '主键',
+    job_type     VARCHAR(50)   NOT NULL COMMENT '作业类型：NOVEL_STRUCTURE / CHAPTER_OUTLINE / CHAPTER_CONTENT',
+    novel_id     BIGINT        NOT NULL COMMENT '小说ID',
+    chapter_id   BIGINT                 DEFAULT NULL COMMENT '章节ID',
+    task_id      BIGINT                 DEFAULT NULL COMMENT '关联任务ID',
+    user_id      BIGINT                 DEFAULT NULL COMMENT '用户ID',
+    status       TINYINT                DEFAULT 0 COMMENT '0: 待执行，1: 执行中，2: 完成，3: 失败',
+    attempts     INT                    DEFAULT 0 COMMENT '已执行次数',
+    available_at TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '最早可执行时间',
+    locked_by    VARCHAR(100)           DEFAULT NULL COMMENT '执行节点',
+    locked_at    TIMESTAMP     NULL     DEFAULT NULL COMMENT '执行节点最近续约时间',
+    last_error   VARCHAR(1000)          DEFAULT NULL COMMENT '最近一次失败原因',
+    created_at   TIMESTAMP              DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at   TIMESTAMP     NULL     DEFAULT NULL COMMENT '更新时间',
+    PRIMARY KEY (id),
+    KEY idx_generation_job_status_available (status, available_at),
+    KEY idx_generation_job_status_locked (status, locked_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='本地异步生成作业表';
+
 create table score_log(
     id         BIGINT       NOT NULL AUTO_INCREMENT COMMENT '主键',
     user_id    BIGINT       NOT NULL COMMENT '用户ID',
@@ -0,0 +1,195 @@
+package com.viking.ai.novel.application.service;
+
+import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.model.Novel;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.ai.VectorScope;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 流式生成完成后的章节落库流水线，不占用模型回调线程：
+ * <pre>
+ * 保存正文 ──┬─> 生成摘要 ──┬─> 更新章节（摘要、分块 ID、状态）
+ *            └─> 向量入库 ──┘
+ * </pre>
+ * 每个阶段使用独立的有界线程池（平台线程或虚拟线程，见 {@link ExecutorFactory}）；队列满时由提交方线程执行该阶段（CallerRunsPolicy），
+ * 压力沿流水线逐级传回上游，最终减缓模型回调线程，而不会无限堆积。
+ * <p>
+ * 正文落库后即通知调用方（可立即发送 complete），摘要与向量结果作为后续事件回调。
+ */
+@Service
+@Slf4j
+public class ChapterCompletionPipeline {
+
+    public static final String STAGE_PERSIST = "persist";
+    public static final String STAGE_ABSTRACT = "abstract";
+    public static final String STAGE_VECTORS = "vectors";
+    public static final String STAGE_UPDATE = "update";
+
+    private final ChapterRepository chapterRepository;
+    private final AiModelService aiModelService;
+    private final QdrantService qdrantService;
+    private final ChapterContextBuilder chapterContextBuilder;
+
+    private final ExecutorService persistExecutor;
+    private final ExecutorService abstractExecutor;
+    private final ExecutorService vectorExecutor;
+
+    /**
+     * 流水线事件回调，均在流水线线程上调用
+     */
+    public interface Listener {
+        /**
+         * 正文已落库
+         */
+        void onTextPersisted(Chapter chapter);
+
+        /**
+         * 摘要已生成（章节已有摘要时不回调）
+         */
+        default void onAbstract(String abstractContent) {
+        }
+
+        /**
+         * 向量已入库
+         */
+        default void onVectors(int chunkCount) {
+        }
+
+        /**
+         * 某一阶段失败；正文保存失败时流水线终止，摘要或向量失败时其余阶段照常完成
+         */
+        default void onStageFailed(String stage, Throwable t) {
+        }
+
+        /**
+         * 章节最终状态已写回
+         */
+        default void onFinished(Chapter chapter) {
+        }
+    }
+
+    public ChapterCompletionPipeline(ChapterRepository chapterRepository,
+                                     AiModelService aiModelService,
+                                     QdrantService qdrantService,
+                                     ChapterContextBuilder chapterContextBuilder,
+                                     ExecutorFactory executorFactory,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${stream.completion.persist-threads:2}") int persistThreads,
+                                     @Value("${stream.completion.abstract-threads:4}") int abstractThreads,
+                                     @Value("${stream.completion.vector-threads:4}") int vectorThreads,
+                                     @Value("${stream.completion.queue-capacity:64}") int queueCapacity) {
+        this.chapterRepository = chapterRepository;
+        this.aiModelService = aiModelService;
+        this.qdrantService = qdrantService;
+        this.chapterContextBuilder = chapterContextBuilder;
+        this.persistExecutor = stageExecutor(executorFactory, meterRegistry, STAGE_PERSIST, persistThreads, queueCapacity);
+        this.abstractExecutor = stageExecutor(executorFactory, meterRegistry, STAGE_ABSTRACT, abstractThreads, queueCapacity);
+        this.vectorExecutor = stageExecutor(executorFactory, meterRegistry, STAGE_VECTORS, vectorThreads, queueCapacity);
+    }
+
+    private static ExecutorService stageExecutor(ExecutorFactory executorFactory, MeterRegistry meterRegistry,
+                                                 String stage, int threads, int queueCapacity) {
+        ExecutorService executor = executorFactory.bounded("chapter-" + stage, threads, queueCapacity);
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, "chapter.completion." + stage);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistExecutor.shutdown();
+        abstractExecutor.shutdown();
+        vectorExecutor.shutdown();
+    }
+
+    /**
+     * 提交一章已生成完的正文；返回的 future 在章节最终状态写回后完成，正文保存失败时异常完成
+     */
+    public CompletableFuture<Chapter> submit(Novel novel, Chapter chapter, String fullText,
+                                             UserModel model, UserModel embeddingModel, Listener listener) {
+        VectorScope scope = VectorScope.novel(novel.getUserId(), novel.getId());
+
+        CompletableFuture<Chapter> persisted = CompletableFuture.supplyAsync(() -> {
+            chapter.setContent(fullText);
+            Chapter saved = chapterRepository.save(chapter);
+            listener.onTextPersisted(saved);
+            return saved;
+        }, persistExecutor);
+        persisted.whenComplete((c, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Error persisting chapter {} content", chapter.getId(), cause);
+                listener.onStageFailed(STAGE_PERSIST, cause);
+            }
+        });
+
+        // 摘要总是根据本次写出的正文重新生成，替换此前的摘要
+        CompletableFuture<String> abstractFuture = persisted.thenApplyAsync(c -> {
+            String abstractContent = aiModelService.generateChapterAbstract(fullText, model);
+            listener.onAbstract(abstractContent);
+            return abstractContent;
+        }, abstractExecutor).exceptionally(e -> stageFailed(STAGE_ABSTRACT, chapter, persisted, listener, e));
+
+        // 旧分块 ID 在更新阶段才会被替换，这里删除的是上一次生成的向量
+        CompletableFuture<List<String>> vectorFuture = persisted.thenApplyAsync(c -> {
+            qdrantService.deleteChapterVectors(c, scope);
+            List<String> chunkIds = qdrantService.storeChapter(c, fullText, embeddingModel, scope);
+            listener.onVectors(chunkIds.size());
+            return chunkIds;
+        }, vectorExecutor).exceptionally(e -> stageFailed(STAGE_VECTORS, chapter, persisted, listener, e));
+
+        return abstractFuture.thenCombine(vectorFuture, ChapterPostResult::new)
+                .thenApplyAsync(result -> {
+                    Chapter latest = chapterRepository.findById(chapter.getId()).orElse(chapter);
+                    if (result.abstractContent() != null) {
+                        latest.setAbstractContent(result.abstractContent());
+                    }
+                    if (result.chunkIds() != null) {
+                        latest.setChunkIds(String.join(",", result.chunkIds()));
+                        latest.setVectorId(null);
+                    }
+                    latest.setStatus(2);
+                    Chapter saved = chapterRepository.save(latest);
+                    // 异步刷新卷摘要与前情提要
+                    chapterContextBuilder.onChapterCompleted(novel.getId(), saved.getChapterNumber(), model);
+                    listener.onFinished(saved);
+                    return saved;
+                }, persistExecutor)
+                .whenComplete((c, e) -> {
+                    if (e != null && persisted.isDone() && !persisted.isCompletedExceptionally()) {
+                        log.error("Error updating chapter {} after completion", chapter.getId(), e);
+                        listener.onStageFailed(STAGE_UPDATE, e);
+                    }
+                });
+    }
+
+    private record ChapterPostResult(String abstractContent, List<String> chunkIds) {
+    }
+
+    /**
+     * 摘要或向量阶段失败时记录并返回 null，不影响其他阶段；正文保存失败则继续向下游传播
+     */
+    private static <T> T stageFailed(String stage, Chapter chapter, CompletableFuture<Chapter> persisted,
+                                     Listener listener, Throwable e) {
+        if (persisted.isCompletedExceptionally()) {
+            throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+        }
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        log.error("Chapter {} {} stage failed", chapter.getId(), stage, cause);
+        listener.onStageFailed(stage, cause);
+        return null;
+    }
+}
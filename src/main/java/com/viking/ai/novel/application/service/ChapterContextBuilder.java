@@ -0,0 +1,330 @@
+package com.viking.ai.novel.application.service;
+
+import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.model.Novel;
+import com.viking.ai.novel.domain.model.NovelSummary;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.domain.repository.NovelSummaryRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.ai.TokenEstimator;
+import com.viking.ai.novel.infrastructure.ai.VectorScope;
+import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 章节生成的前文上下文构造：在 token 预算内按「近章原文摘要 → 卷摘要 → 前情滚动摘要」分层裁剪，
+ * 避免长篇小说每次生成都携带全部章节摘要。
+ * <p>
+ * 章节按 volume-size 划分为卷：当前卷内的章节使用各自摘要（尚未生成的章节用本章计划代替）；已完结的卷使用卷摘要；
+ * 预算仍不足时，更早的卷由一份滚动更新的前情提要代替。卷摘要与前情提要在章节完成后增量更新。
+ */
+@Service
+@Slf4j
+public class ChapterContextBuilder {
+
+    private final ChapterRepository chapterRepository;
+    private final NovelSummaryRepository novelSummaryRepository;
+    private final AiModelService aiModelService;
+    private final QdrantService qdrantService;
+    private final int budgetTokens;
+    private final int volumeSize;
+    private final int volumeSummaryChars;
+    private final int rollingSummaryChars;
+
+    private final Map<Long, Object> novelLocks = new ConcurrentHashMap<>();
+
+    public ChapterContextBuilder(ChapterRepository chapterRepository,
+                                 NovelSummaryRepository novelSummaryRepository,
+                                 AiModelService aiModelService,
+                                 QdrantService qdrantService,
+                                 @Value("${ai.context.budget-tokens:4000}") int budgetTokens,
+                                 @Value("${ai.context.volume-size:20}") int volumeSize,
+                                 @Value("${ai.context.volume-summary-chars:600}") int volumeSummaryChars,
+                                 @Value("${ai.context.rolling-summary-chars:1500}") int rollingSummaryChars) {
+        this.chapterRepository = chapterRepository;
+        this.novelSummaryRepository = novelSummaryRepository;
+        this.aiModelService = aiModelService;
+        this.qdrantService = qdrantService;
+        this.budgetTokens = budgetTokens;
+        this.volumeSize = Math.max(1, volumeSize);
+        this.volumeSummaryChars = volumeSummaryChars;
+        this.rollingSummaryChars = rollingSummaryChars;
+    }
+
+    /**
+     * 片段：覆盖 [startChapter, endChapter] 的一段前文文本
+     */
+    private record Segment(int startChapter, int endChapter, String text, int tokens) {
+        static Segment of(int start, int end, String text) {
+            return new Segment(start, end, text, TokenEstimator.estimate(text));
+        }
+    }
+
+    /**
+     * 构造第 chapterNumber 章之前的前文上下文
+     */
+    public String buildPreviousContext(Long novelId, int chapterNumber) {
+        List<Chapter> previous = chapterRepository.findByNovelId(novelId)
+                .stream()
+                .filter(c -> c.getChapterNumber() < chapterNumber)
+                .collect(Collectors.toList());
+        return buildPreviousContext(novelId, chapterNumber, previous);
+    }
+
+    /**
+     * 构造前文上下文（调用方已加载前序章节时使用，避免重复查询）
+     */
+    public String buildPreviousContext(Long novelId, int chapterNumber, List<Chapter> previousChapters) {
+        List<Chapter> previous = previousChapters.stream()
+                .filter(c -> c.getChapterNumber() < chapterNumber && hasText(previousBrief(c)))
+                .sorted(Comparator.comparing(Chapter::getChapterNumber))
+                .collect(Collectors.toList());
+        if (previous.isEmpty()) {
+            return "";
+        }
+
+        Map<Integer, NovelSummary> volumeSummaries = novelSummaryRepository
+                .findByNovelIdAndLevel(novelId, NovelSummary.LEVEL_VOLUME)
+                .stream()
+                .collect(Collectors.toMap(NovelSummary::getVolumeIndex, Function.identity(), (a, b) -> a));
+        int currentVolume = volumeOf(chapterNumber);
+
+        // 由近及远排列的候选片段
+        List<Segment> candidates = new ArrayList<>();
+        for (int i = previous.size() - 1; i >= 0; i--) {
+            Chapter c = previous.get(i);
+            int volume = volumeOf(c.getChapterNumber());
+            NovelSummary summary = volumeSummaries.get(volume);
+            if (volume < currentVolume && summary != null && hasText(summary.getContent())) {
+                // 已完结的卷用卷摘要代替，跳过该卷剩余章节
+                candidates.add(Segment.of(summary.getStartChapter(), summary.getEndChapter(),
+                        String.format("第%d-%d章概要：%s\n", summary.getStartChapter(), summary.getEndChapter(),
+                                summary.getContent().trim())));
+                while (i > 0 && volumeOf(previous.get(i - 1).getChapterNumber()) == volume) {
+                    i--;
+                }
+            } else {
+                candidates.add(Segment.of(c.getChapterNumber(), c.getChapterNumber(),
+                        String.format("第%d章：%s\n", c.getChapterNumber(), previousBrief(c).trim())));
+            }
+        }
+
+        int total = candidates.stream().mapToInt(Segment::tokens).sum();
+        Segment rolling = null;
+        int remaining = budgetTokens;
+        if (total > budgetTokens) {
+            // 放不下全部片段时，为前情提要预留预算（最多占一半）
+            Optional<NovelSummary> rollingSummary = novelSummaryRepository
+                    .findByNovelIdAndLevelAndVolumeIndex(novelId, NovelSummary.LEVEL_ROLLING, 0);
+            if (rollingSummary.isPresent() && hasText(rollingSummary.get().getContent())) {
+                NovelSummary r = rollingSummary.get();
+                Segment s = Segment.of(r.getStartChapter(), r.getEndChapter(),
+                        String.format("【前情提要（第%d-%d章）】%s\n", r.getStartChapter(), r.getEndChapter(),
+                                r.getContent().trim()));
+                if (s.tokens() <= budgetTokens / 2) {
+                    rolling = s;
+                    remaining -= s.tokens();
+                }
+            }
+        }
+
+        List<Segment> selected = new ArrayList<>();
+        for (Segment segment : candidates) {
+            if (segment.tokens() > remaining) {
+                break;
+            }
+            selected.add(segment);
+            remaining -= segment.tokens();
+        }
+
+        StringBuilder context = new StringBuilder();
+        int firstSelected = selected.isEmpty() ? chapterNumber : selected.get(selected.size() - 1).startChapter();
+        if (rolling != null && selected.size() < candidates.size() && rolling.endChapter() >= firstSelected - 1) {
+            // 前情提要覆盖到了被裁掉的章节，才有必要带上
+            context.append(rolling.text());
+        }
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            context.append(selected.get(i).text());
+        }
+        if (selected.size() < candidates.size()) {
+            log.debug("Trimmed previous context for novel {} chapter {}: kept {}/{} segments within {} tokens",
+                    novelId, chapterNumber, selected.size(), candidates.size(), budgetTokens);
+        }
+        return context.toString();
+    }
+
+    /**
+     * 从向量库检索与本章最相关的片段（章节标题 + 章节摘要 + 世界观设定作为查询），
+     * 检索失败时返回空列表，不中断生成
+     */
+    public List<String> queryRelevantSnippets(Novel novel, Chapter chapter, UserModel vectorModel, int topK) {
+        List<String> relevantSnippets = new ArrayList<>();
+        if (vectorModel == null) {
+            log.warn("Vector model not found for user {}, skipping RAG search", novel.getUserId());
+            return relevantSnippets;
+        }
+        try {
+            StringBuilder queryBuilder = new StringBuilder();
+            if (hasText(chapter.getTitle())) {
+                queryBuilder.append("章节标题：").append(chapter.getTitle()).append("\n");
+            }
+            String brief = chapterBrief(chapter);
+            if (hasText(brief)) {
+                queryBuilder.append("章节摘要：").append(brief).append("\n");
+            }
+            if (hasText(novel.getSettingText())) {
+                queryBuilder.append("世界观设定：").append(novel.getSettingText());
+            }
+            String queryText = queryBuilder.toString();
+            if (queryText.isEmpty()) {
+                return relevantSnippets;
+            }
+            VectorScope scope = VectorScope.novel(novel.getUserId(), novel.getId());
+            List<EmbeddingMatch<TextSegment>> matches = qdrantService.searchSimilar(queryText, topK, vectorModel, scope);
+            for (EmbeddingMatch<TextSegment> match : matches) {
+                TextSegment segment = match.embedded();
+                if (segment != null && hasText(segment.text())) {
+                    relevantSnippets.add(segment.text().trim());
+                }
+            }
+            log.info("Found {} relevant snippets for chapter {} of novel {}",
+                    relevantSnippets.size(), chapter.getChapterNumber(), novel.getId());
+        } catch (Exception e) {
+            log.error("Error searching relevant snippets from vector database", e);
+        }
+        return relevantSnippets;
+    }
+
+    /**
+     * 章节完成后增量更新分层摘要：所在卷已全部有摘要时生成/刷新卷摘要，并滚动更新前情提要
+     */
+    @Async("taskExecutor")
+    public void onChapterCompleted(Long novelId, int chapterNumber, UserModel model) {
+        Object lock = novelLocks.computeIfAbsent(novelId, k -> new Object());
+        synchronized (lock) {
+            try {
+                refreshVolume(novelId, volumeOf(chapterNumber), model);
+            } catch (Exception e) {
+                log.error("Error refreshing summaries for novel {} chapter {}", novelId, chapterNumber, e);
+            }
+        }
+    }
+
+    private void refreshVolume(Long novelId, int volume, UserModel model) {
+        int start = volume * volumeSize + 1;
+        int end = start + volumeSize - 1;
+        List<Chapter> chapters = chapterRepository.findByNovelId(novelId)
+                .stream()
+                .filter(c -> c.getChapterNumber() >= start && c.getChapterNumber() <= end)
+                .sorted(Comparator.comparing(Chapter::getChapterNumber))
+                .collect(Collectors.toList());
+        if (chapters.size() < volumeSize || chapters.stream().anyMatch(c -> !hasText(c.getAbstractContent()))) {
+            // 卷未写完，近章直接使用章节摘要即可
+            return;
+        }
+
+        String source = chapters.stream()
+                .map(c -> String.format("第%d章：%s", c.getChapterNumber(), c.getAbstractContent().trim()))
+                .collect(Collectors.joining("\n"));
+        String sourceHash = BasicUtils.sha256Hex(source);
+        NovelSummary summary = novelSummaryRepository
+                .findByNovelIdAndLevelAndVolumeIndex(novelId, NovelSummary.LEVEL_VOLUME, volume)
+                .orElseGet(() -> NovelSummary.builder()
+                        .novelId(novelId)
+                        .level(NovelSummary.LEVEL_VOLUME)
+                        .volumeIndex(volume)
+                        .startChapter(start)
+                        .endChapter(end)
+                        .build());
+        if (sourceHash.equals(summary.getSourceHash())) {
+            return;
+        }
+        summary.setContent(aiModelService.generateSummary(source, volumeSummaryChars, model));
+        summary.setSourceHash(sourceHash);
+        novelSummaryRepository.save(summary);
+        log.info("Updated volume {} summary for novel {}", volume, novelId);
+
+        refreshRolling(novelId, volume, summary, model);
+    }
+
+    /**
+     * 前情提要覆盖第 1 卷至最新的连续完结卷；新卷接在末尾时只做一次增量合并，否则按卷摘要重建
+     */
+    private void refreshRolling(Long novelId, int volume, NovelSummary volumeSummary, UserModel model) {
+        NovelSummary rolling = novelSummaryRepository
+                .findByNovelIdAndLevelAndVolumeIndex(novelId, NovelSummary.LEVEL_ROLLING, 0)
+                .orElseGet(() -> NovelSummary.builder()
+                        .novelId(novelId)
+                        .level(NovelSummary.LEVEL_ROLLING)
+                        .volumeIndex(0)
+                        .startChapter(1)
+                        .build());
+
+        String content;
+        if (volume == 0 && (rolling.getEndChapter() == null || rolling.getEndChapter() <= volumeSummary.getEndChapter())) {
+            content = volumeSummary.getContent();
+        } else if (rolling.getEndChapter() != null && rolling.getEndChapter() == volumeSummary.getStartChapter() - 1) {
+            content = aiModelService.generateSummary(
+                    rolling.getContent() + "\n" + volumeSummary.getContent(), rollingSummaryChars, model);
+        } else {
+            Map<Integer, NovelSummary> volumes = novelSummaryRepository
+                    .findByNovelIdAndLevel(novelId, NovelSummary.LEVEL_VOLUME)
+                    .stream()
+                    .collect(Collectors.toMap(NovelSummary::getVolumeIndex, Function.identity(), (a, b) -> a));
+            StringBuilder source = new StringBuilder();
+            int v = 0;
+            while (volumes.containsKey(v)) {
+                source.append(volumes.get(v).getContent()).append("\n");
+                v++;
+            }
+            if (v == 0) {
+                return;
+            }
+            volumeSummary = volumes.get(v - 1);
+            content = v == 1 ? source.toString().trim()
+                    : aiModelService.generateSummary(source.toString(), rollingSummaryChars, model);
+        }
+        rolling.setContent(content);
+        rolling.setEndChapter(volumeSummary.getEndChapter());
+        novelSummaryRepository.save(rolling);
+        log.info("Updated rolling summary for novel {} up to chapter {}", novelId, rolling.getEndChapter());
+    }
+
+    private int volumeOf(int chapterNumber) {
+        return Math.max(0, chapterNumber - 1) / volumeSize;
+    }
+
+    /**
+     * 生成本章时使用的要点：优先本章计划，没有计划时使用已有摘要
+     */
+    public static String chapterBrief(Chapter chapter) {
+        return hasText(chapter.getPlannedOutline()) ? chapter.getPlannedOutline() : chapter.getAbstractContent();
+    }
+
+    /**
+     * 前序章节在前文中的内容：已生成的用摘要，尚未生成（或正在生成）的用本章计划代替
+     */
+    private static String previousBrief(Chapter chapter) {
+        return hasText(chapter.getAbstractContent()) ? chapter.getAbstractContent() : chapter.getPlannedOutline();
+    }
+
+    private static boolean hasText(String s) {
+        return s != null && !s.trim().isEmpty();
+    }
+}
@@ -10,17 +10,48 @@ import com.viking.ai.novel.domain.repository.TaskRepository;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
 import com.viking.ai.novel.infrastructure.ai.AiModelService;
 import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+import com.viking.ai.novel.infrastructure.ai.VectorScope;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import com.viking.ai.novel.infrastructure.config.FairShareExecutor;
+import com.viking.ai.novel.infrastructure.config.FairSharePolicy;
 import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * 章节内容生成：核心逻辑供同步调用或 MQ 消费者调用
+ * <p>
+ * 批量生成按「波前」推进：第 N 章只依赖前文上下文所需的章节摘要，而不是第 N-1 章的正文。
+ * 已有摘要或本章计划（大纲同步的章节，前文构造中代替尚未生成的摘要）的章节不构成依赖，可立即并行生成；
+ * 两者都没有的章节在摘要写回后（不等向量与完成标记）才放行其后的章节。并行度由独立的有界线程池限制，
+ * 模型端点的并发另由准入控制约束。
+ * <p>
+ * 章节在线程池中按用户加权公平排队（{@link FairShareExecutor}）：同步等待结果的单章生成为交互式优先级，
+ * 异步作业、批量与整本生成为后台优先级，且每个用户同时生成的后台章节数受限，一个用户排入大量章节不会阻塞其他用户。
+ * <p>
+ * 进度推送到 /topic/novels/{novelId}/generation。
+ * <p>
+ * 任务可取消：进行中的章节流被取消（上游请求随之关闭），尚未开始的章节不再生成，任务标记为已取消（4）。
  */
 @Service
 @RequiredArgsConstructor
@@ -33,11 +64,443 @@ public class ChapterGenerationTaskService {
     private final AiModelService aiModelService;
     private final QdrantService qdrantService;
     private final UserModelRepository userModelRepository;
+    private final ChapterContextBuilder chapterContextBuilder;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ExecutorFactory executorFactory;
+    private final StreamRegistry streamRegistry;
+    private final FairSharePolicy fairSharePolicy;
+
+    @Value("${ai.batch.parallelism:4}")
+    private int parallelism;
+
+    @Value("${ai.batch.relevant-snippets:3}")
+    private int relevantSnippets;
+
+    private FairShareExecutor generationExecutor;
 
     /**
-     * 执行章节内容生成（同步逻辑，供实时调用或 MQ 消费者调用）
+     * 推送给前端的批量生成进度
+     *
+     * @param type 消息类型：started / chapter_started / chapter_queued / chapter_completed / chapter_failed /
+     *             chapter_cancelled / finished
+     */
+    public record GenerationProgress(Long taskId, String type, Integer chapterNumber,
+                                     int completed, int failed, int total, String message) {
+    }
+
+    /**
+     * 单个批次的执行状态
+     *
+     * @param reuseContent 已有正文的章节视为正文检查点，只补齐摘要与向量，不重新生成
+     * @param baseDone     批次开始前任务已记录的完成数，检查点进度在此基础上累加
+     * @param priority     章节排队与模型准入的优先级
+     * @param streams      进行中的章节流，取消任务时逐个取消
+     */
+    private record Batch(Novel novel, UserModel model, UserModel embeddingModel, Long taskId, int total,
+                         boolean reuseContent, PriorityClassEnum priority, int baseDone, AtomicInteger completed, AtomicInteger failed,
+                         Set<StreamHandle> streams, AtomicBoolean cancelled) {
+    }
+
+    private record BatchOutcome(int taskStatus, String error) {
+    }
+
+    // 本实例上正在执行的批次，key: taskId
+    private final Map<Long, Batch> runningBatches = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        generationExecutor = new FairShareExecutor(executorFactory.fixed("chapter-generation", parallelism),
+                parallelism, fairSharePolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        generationExecutor.shutdown();
+    }
+
+    /**
+     * 执行排队的章节生成作业（作业执行方或 MQ 消费者调用），后台优先级；生成失败时抛出异常，作业执行方据此重试或标记失败
      */
     public void doGenerateChapterContent(Long novelId, Long chapterId, Long taskId) {
+        doGenerateChapterContent(novelId, chapterId, taskId, PriorityClassEnum.BACKGROUND);
+    }
+
+    /**
+     * 执行章节内容生成并等待结束（同步逻辑）；调用方在等待结果时使用交互式优先级
+     */
+    public void doGenerateChapterContent(Long novelId, Long chapterId, Long taskId, PriorityClassEnum priority) {
+        BatchOutcome outcome = generateChapters(novelId, List.of(chapterId), taskId, false, priority).join();
+        if (outcome.taskStatus() == 3) {
+            throw new RuntimeException("Chapter generation failed: " + outcome.error());
+        }
+    }
+
+    /**
+     * 批量生成章节内容（异步，后台优先级），返回的 future 在全部章节结束后完成；单章失败不影响其他章节，
+     * 有章节失败时任务标记为失败
+     *
+     * @param chapterIds 待生成的章节 ID，顺序无关，按章节号排序后推进
+     */
+    public CompletableFuture<Void> generateChapters(Long novelId, List<Long> chapterIds, Long taskId) {
+        return generateChapters(novelId, chapterIds, taskId, false);
+    }
+
+    /**
+     * 批量生成章节内容（异步）
+     *
+     * @param reuseContent true 时已有正文的章节不重新生成，只补齐摘要、向量并标记完成（用于断点续跑）
+     */
+    public CompletableFuture<Void> generateChapters(Long novelId, List<Long> chapterIds, Long taskId,
+                                                    boolean reuseContent) {
+        return generateChapters(novelId, chapterIds, taskId, reuseContent, PriorityClassEnum.BACKGROUND)
+                .thenAccept(outcome -> {
+                });
+    }
+
+    /**
+     * @return 全部章节结束后完成，结果为任务的最终状态（2 完成 / 3 失败 / 4 已取消）及失败原因
+     */
+    private CompletableFuture<BatchOutcome> generateChapters(Long novelId, List<Long> chapterIds, Long taskId,
+                                                     boolean reuseContent, PriorityClassEnum priority) {
+        Batch batch;
+        List<Chapter> chapters;
+        try {
+            Novel novel = novelRepository.findById(novelId)
+                    .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+            UserModel model = userModelRepository.findByUserIdAndType(novel.getUserId(), ModelTypeEnum.NORMAL.getType())
+                    .orElseThrow(() -> new RuntimeException("User model not found: " + novel.getUserId()));
+            UserModel embeddingModel = userModelRepository.findByUserIdAndType(novel.getUserId(), ModelTypeEnum.VECTOR.getType())
+                    .orElse(null);
+            chapters = chapterIds.stream()
+                    .map(id -> chapterRepository.findById(id)
+                            .orElseThrow(() -> new RuntimeException("Chapter not found: " + id)))
+                    .filter(c -> novelId.equals(c.getNovelId()))
+                    .sorted(Comparator.comparing(Chapter::getChapterNumber))
+                    .collect(Collectors.toList());
+            if (isTaskCancelled(taskId)) {
+                log.info("Task {} was cancelled before it started", taskId);
+                return CompletableFuture.completedFuture(new BatchOutcome(4, "cancelled"));
+            }
+            int baseDone = startTask(taskId, chapters.size());
+            batch = new Batch(novel, model, embeddingModel, taskId, chapters.size(), reuseContent, priority, baseDone,
+                    new AtomicInteger(), new AtomicInteger(), ConcurrentHashMap.newKeySet(), new AtomicBoolean());
+            if (taskId != null) {
+                runningBatches.put(taskId, batch);
+            }
+        } catch (Exception e) {
+            log.error("Error preparing chapter generation: novelId={}, taskId={}", novelId, taskId, e);
+            finishTask(taskId, 3, e.getMessage());
+            publish(novelId, new GenerationProgress(taskId, "finished", null, 0, chapterIds.size(),
+                    chapterIds.size(), e.getMessage()));
+            return CompletableFuture.completedFuture(new BatchOutcome(3, e.getMessage()));
+        }
+
+        publish(novelId, progress(batch, "started", null, null));
+        log.info("Start generating {} chapters of novel {} with parallelism {}", chapters.size(), novelId, parallelism);
+
+        // 既无摘要也无计划的章节写回摘要时完成的 future；后续章节只等待最近一个这样的前序章节，
+        // 由于该章自身也在等待更早的同类章节，依赖是传递的
+        CompletableFuture<Void> gate = CompletableFuture.completedFuture(null);
+        List<CompletableFuture<Void>> jobs = new ArrayList<>(chapters.size());
+        for (Chapter chapter : chapters) {
+            CompletableFuture<Void> abstractSaved = new CompletableFuture<>();
+            CompletableFuture<Void> job = gate.thenCompose(v -> generationExecutor.submit(
+                    batch.novel().getUserId(), batch.priority(), () -> generateOne(batch, chapter, abstractSaved)));
+            jobs.add(job);
+            if (!hasText(ChapterContextBuilder.chapterBrief(chapter))) {
+                // 失败或未执行的章节同样放行后续章节（前文构造会跳过没有摘要的章节）
+                gate = CompletableFuture.anyOf(abstractSaved, job).handle((v, e) -> null);
+            }
+        }
+
+        return CompletableFuture.allOf(jobs.toArray(CompletableFuture[]::new))
+                .handle((v, e) -> {
+                    if (taskId != null) {
+                        runningBatches.remove(taskId, batch);
+                    }
+                    boolean success = batch.failed().get() == 0;
+                    BatchOutcome outcome;
+                    if (batch.cancelled().get()) {
+                        outcome = new BatchOutcome(4, "cancelled");
+                    } else {
+                        outcome = new BatchOutcome(success ? 2 : 3,
+                                success ? null : batch.failed().get() + " chapters failed");
+                    }
+                    finishTask(taskId, outcome.taskStatus(), outcome.error());
+                    publish(novelId, progress(batch, "finished", null, null));
+                    log.info("Finished generating chapters of novel {}: {} completed, {} failed",
+                            novelId, batch.completed().get(), batch.failed().get());
+                    return outcome;
+                });
+    }
+
+    /**
+     * 取消本实例上正在执行的批量任务；任务不在本实例执行时返回 false
+     */
+    public boolean cancelTask(Long taskId) {
+        Batch batch = runningBatches.get(taskId);
+        if (batch == null) {
+            return false;
+        }
+        if (batch.cancelled().compareAndSet(false, true)) {
+            log.info("Cancelling task {} with {} in-flight chapter streams", taskId, batch.streams().size());
+            batch.streams().forEach(StreamHandle::cancel);
+        }
+        return true;
+    }
+
+    /**
+     * @param abstractSaved 本章摘要写回（或本章结束）时完成，等待本章的后续章节据此开始
+     */
+    private void generateOne(Batch batch, Chapter planned, CompletableFuture<Void> abstractSaved) {
+        try {
+            generate(batch, planned, abstractSaved);
+        } finally {
+            abstractSaved.complete(null);
+        }
+    }
+
+    private void generate(Batch batch, Chapter planned, CompletableFuture<Void> abstractSaved) {
+        Novel novel = batch.novel();
+        Integer chapterNumber = planned.getChapterNumber();
+        if (batch.cancelled().get()) {
+            return;
+        }
+        // 与 WebSocket 单章生成共用流注册表，同一章在任一节点生成中时跳过；单章停止命令也经注册表取消该流
+        String streamKey = StreamRegistry.chapterKey(novel.getId(), chapterNumber);
+        StreamHandle handle = new StreamHandle(batch.priority());
+        if (!streamRegistry.register(streamKey, handle)) {
+            log.warn("Chapter {} is already being generated, skipping", planned.getId());
+            batch.failed().incrementAndGet();
+            publish(novel.getId(), progress(batch, "chapter_failed", chapterNumber, "章节正在生成中"));
+            return;
+        }
+        batch.streams().add(handle);
+        if (batch.cancelled().get()) {
+            handle.cancel();
+        }
+        try {
+            // 重新加载，拿到前序章节写回的最新状态
+            Chapter chapter = chapterRepository.findById(planned.getId())
+                    .orElseThrow(() -> new RuntimeException("Chapter not found: " + planned.getId()));
+            chapter.setStatus(1);
+            chapterRepository.save(chapter);
+            publish(novel.getId(), progress(batch, "chapter_started", chapterNumber, null));
+
+            // 正文检查点：续跑时已有正文（生成完成后才会写入）的章节不再调用模型
+            boolean resumed = batch.reuseContent() && hasText(chapter.getContent());
+            String content;
+            if (resumed) {
+                content = chapter.getContent();
+                log.info("Resuming chapter {} of novel {} from saved content", chapterNumber, novel.getId());
+            } else {
+                String previousContext = chapterContextBuilder.buildPreviousContext(novel.getId(), chapterNumber);
+                List<String> snippets = batch.embeddingModel() == null ? List.of()
+                        : chapterContextBuilder.queryRelevantSnippets(novel, chapter, batch.embeddingModel(), relevantSnippets);
+                content = generateContent(batch, chapter, previousContext, snippets, handle);
+                chapter.setContent(content);
+            }
+            // 摘要总是对应实际写出的正文；续跑复用的正文已有摘要时不再生成
+            if (!resumed || !hasText(chapter.getAbstractContent())) {
+                chapter.setAbstractContent(aiModelService.generateChapterAbstract(content, batch.model()));
+            }
+            // 正文与摘要先落库，等待该章的后续章节即可开始构造前文
+            chapterRepository.save(chapter);
+            abstractSaved.complete(null);
+
+            if (!resumed || !hasText(chapter.getChunkIds())) {
+                storeVectors(batch, chapter, content);
+            }
+            chapter.setStatus(2);
+            chapterRepository.save(chapter);
+            chapterContextBuilder.onChapterCompleted(novel.getId(), chapterNumber, batch.model());
+
+            batch.completed().incrementAndGet();
+            checkpoint(batch);
+            publish(novel.getId(), progress(batch, "chapter_completed", chapterNumber, null));
+        } catch (Exception e) {
+            if (batch.cancelled().get()) {
+                log.info("Chapter {} of novel {} cancelled", chapterNumber, novel.getId());
+                markChapter(planned.getId(), 3);
+                publish(novel.getId(), progress(batch, "chapter_cancelled", chapterNumber, null));
+                return;
+            }
+            if (handle.isYielded()) {
+                // 其他节点在生成同一章：章节状态归胜出方，本任务不计失败
+                log.info("Chapter {} of novel {} yielded to another node", chapterNumber, novel.getId());
+                publish(novel.getId(), progress(batch, "chapter_yielded", chapterNumber, null));
+                return;
+            }
+            if (handle.isCancelled() && handle.getFailure() == null) {
+                // 单独停止了这一章，任务其余章节继续，该章计为未完成
+                log.info("Chapter {} of novel {} stopped", chapterNumber, novel.getId());
+                markChapter(planned.getId(), 3);
+                batch.failed().incrementAndGet();
+                publish(novel.getId(), progress(batch, "chapter_cancelled", chapterNumber, null));
+                return;
+            }
+            log.error("Error generating chapter {} of novel {}", chapterNumber, novel.getId(), e);
+            markChapter(planned.getId(), 0);
+            batch.failed().incrementAndGet();
+            publish(novel.getId(), progress(batch, "chapter_failed", chapterNumber, e.getMessage()));
+        } finally {
+            batch.streams().remove(handle);
+            streamRegistry.unregister(streamKey, handle);
+        }
+    }
+
+    /**
+     * 以流式接口生成正文并在当前工作线程等待结果（流式模型的超时更适合长章节）
+     */
+    private String generateContent(Batch batch, Chapter chapter, String previousContext, List<String> snippets,
+                                   StreamHandle handle) {
+        Novel novel = batch.novel();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        aiModelService.streamChapterContent(
+                novel.getTitle(),
+                novel.getGenre(),
+                novel.getSettingText(),
+                novel.getStructure(),
+                chapter.getTitle(),
+                ChapterContextBuilder.chapterBrief(chapter),
+                previousContext,
+                novel.getChapterWordCount(),
+                snippets,
+                batch.model(),
+                new AiModelService.ChapterStreamCallback() {
+                    @Override
+                    public void onDelta(String text) {
+                    }
+
+                    @Override
+                    public void onComplete(String fullText) {
+                        result.complete(fullText);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onQueued(int position) {
+                        publish(novel.getId(), progress(batch, "chapter_queued", chapter.getChapterNumber(),
+                                String.valueOf(position)));
+                    }
+
+                    @Override
+                    public void onCancelled(String partialText) {
+                        result.completeExceptionally(new CancellationException("Chapter generation cancelled"));
+                    }
+                },
+                handle);
+        return result.join();
+    }
+
+    private void storeVectors(Batch batch, Chapter chapter, String content) {
+        if (batch.embeddingModel() == null) {
+            log.warn("Vector model not found for user {}, skipping chapter vectors", batch.novel().getUserId());
+            return;
+        }
+        try {
+            VectorScope scope = VectorScope.novel(batch.novel().getUserId(), batch.novel().getId());
+            qdrantService.deleteChapterVectors(chapter, scope);
+            List<String> chunkIds = qdrantService.storeChapter(chapter, content, batch.embeddingModel(), scope);
+            chapter.setChunkIds(String.join(",", chunkIds));
+            chapter.setVectorId(null);
+        } catch (Exception e) {
+            log.error("Error storing chapter {} to Qdrant", chapter.getId(), e);
+        }
+    }
+
+    /**
+     * 处理中的章节失败时回到待处理（0），被取消时标记为已取消（3）
+     */
+    private void markChapter(Long chapterId, int status) {
+        try {
+            chapterRepository.findById(chapterId).ifPresent(c -> {
+                if (c.getStatus() != null && c.getStatus() == 1) {
+                    c.setStatus(status);
+                    chapterRepository.save(c);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error resetting status of chapter {}", chapterId, e);
+        }
+    }
+
+    /**
+     * 标记任务开始处理，返回任务已记录的完成数；调用方未设置总数时以本批次章节数为准
+     */
+    private int startTask(Long taskId, int total) {
+        if (taskId == null) {
+            return 0;
+        }
+        Task task = taskRepository.findById(taskId)
+                .orElseThrow(() -> new RuntimeException("Task not found: " + taskId));
+        task.setTaskStatus(1);
+        task.setErrorMessage(null);
+        if (task.getProgressTotal() == null || task.getProgressTotal() == 0) {
+            task.setProgressTotal(total);
+        }
+        taskRepository.save(task);
+        return task.getProgressDone() == null ? 0 : task.getProgressDone();
+    }
+
+    /**
+     * 章节完成（正文、摘要、向量均已落库）后记录检查点；多个工作线程并发完成时按批次串行写入，保证进度单调
+     */
+    private void checkpoint(Batch batch) {
+        if (batch.taskId() == null) {
+            return;
+        }
+        synchronized (batch) {
+            try {
+                taskRepository.findById(batch.taskId()).ifPresent(task -> {
+                    task.setProgressDone(batch.baseDone() + batch.completed().get());
+                    taskRepository.save(task);
+                });
+            } catch (Exception e) {
+                log.error("Error checkpointing task {}", batch.taskId(), e);
+            }
+        }
+    }
+
+    private boolean isTaskCancelled(Long taskId) {
+        return taskId != null && taskRepository.findById(taskId)
+                .map(task -> task.getTaskStatus() != null && task.getTaskStatus() == 4)
+                .orElse(false);
+    }
+
+    private void finishTask(Long taskId, int status, String errorMessage) {
+        if (taskId == null) {
+            return;
+        }
+        try {
+            taskRepository.findById(taskId).ifPresent(task -> {
+                task.setTaskStatus(status);
+                task.setErrorMessage(errorMessage);
+                taskRepository.save(task);
+            });
+        } catch (Exception e) {
+            log.error("Error updating task {} status to {}", taskId, status, e);
+        }
+    }
+
+    private GenerationProgress progress(Batch batch, String type, Integer chapterNumber, String message) {
+        return new GenerationProgress(batch.taskId(), type, chapterNumber,
+                batch.completed().get(), batch.failed().get(), batch.total(), message);
+    }
+
+    private void publish(Long novelId, GenerationProgress progress) {
+        try {
+            messagingTemplate.convertAndSend(String.format("/topic/novels/%d/generation", novelId), progress);
+        } catch (Exception e) {
+            log.warn("Error publishing generation progress for novel {}", novelId, e);
+        }
+    }
 
+    private static boolean hasText(String s) {
+        return s != null && !s.trim().isEmpty();
     }
 }
@@ -6,23 +6,29 @@ import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.domain.model.UserModel;
 import com.viking.ai.novel.domain.repository.ChapterRepository;
 import com.viking.ai.novel.domain.repository.NovelRepository;
+import com.viking.ai.novel.domain.repository.NovelSummaryRepository;
 import com.viking.ai.novel.domain.repository.TaskRepository;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
 import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.ai.VectorScope;
 import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
-import com.viking.ai.novel.infrastructure.mq.AiGenerateProducer;
-import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import com.viking.ai.novel.infrastructure.job.GenerationJobDispatcher;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * 章节应用服务
@@ -36,29 +42,32 @@ public class ChapterService {
     private final TaskRepository taskRepository;
     private final ChapterGenerationTaskService chapterGenerationTaskService;
     private final QdrantService qdrantService;
-    private final AiGenerateProducer aiGenerateProducer;
+    private final GenerationJobDispatcher jobDispatcher;
     private final UserModelRepository userModelRepository;
+    private final NovelSummaryRepository novelSummaryRepository;
 
     public ChapterService(ChapterRepository chapterRepository,
                           NovelRepository novelRepository,
                           TaskRepository taskRepository,
                           ChapterGenerationTaskService chapterGenerationTaskService,
                           QdrantService qdrantService,
-                          @Autowired(required = false) AiGenerateProducer aiGenerateProducer,
-                          UserModelRepository userModelRepository) {
+                          GenerationJobDispatcher jobDispatcher,
+                          UserModelRepository userModelRepository,
+                          NovelSummaryRepository novelSummaryRepository) {
         this.chapterRepository = chapterRepository;
         this.novelRepository = novelRepository;
         this.taskRepository = taskRepository;
         this.chapterGenerationTaskService = chapterGenerationTaskService;
         this.qdrantService = qdrantService;
-        this.aiGenerateProducer = aiGenerateProducer;
+        this.jobDispatcher = jobDispatcher;
         this.userModelRepository = userModelRepository;
+        this.novelSummaryRepository = novelSummaryRepository;
     }
 
     /**
      * 生成章节
      *
-     * @param async true=通过 MQ 异步生成，false=同步生成（阻塞至完成）
+     * @param async true=派发异步生成作业，false=同步生成（阻塞至完成）
      */
     @Transactional
     public Chapter generateChapter(Long novelId, Integer chapterNumber, String chapterTitle, String chapterAbstract, boolean async) {
@@ -74,27 +83,77 @@ public class ChapterService {
                 .novelId(novelId)
                 .chapterNumber(chapterNumber)
                 .title(chapterTitle)
-                .abstractContent(chapterAbstract)
+                .plannedOutline(chapterAbstract)
                 .status(0)
                 .build();
         chapter = chapterRepository.save(chapter);
 
         Task task = Task.builder()
                 .taskName("生成章节内容")
-                .taskType("GENERATE_CHAPTER")
+                .taskType(TaskService.TASK_TYPE_GENERATE_CHAPTER)
                 .taskRelationId(chapter.getId())
                 .taskStatus(0)
                 .build();
         taskRepository.save(task);
 
-        if (async && aiGenerateProducer != null) {
-            aiGenerateProducer.sendChapterContent(novel.getId(), chapter.getId(), task.getId());
+        // 生成在其他线程/进程读取章节，须等事务提交后再执行（异步作业由派发器保证）
+        Long chapterId = chapter.getId();
+        if (async) {
+            jobDispatcher.dispatchChapterContent(novel.getId(), chapterId, task.getId());
         } else {
-            chapterGenerationTaskService.doGenerateChapterContent(novel.getId(), chapter.getId(), task.getId());
+            // 调用方阻塞等待结果，按交互式优先级排队
+            afterCommit(() -> chapterGenerationTaskService.doGenerateChapterContent(novel.getId(), chapterId, task.getId(),
+                    PriorityClassEnum.INTERACTIVE));
         }
         return chapter;
     }
 
+    /**
+     * 批量生成章节内容：生成小说中 [fromChapter, toChapter] 范围内尚未完成的章节（异步执行）
+     *
+     * @param fromChapter 起始章节号，为空表示从第一章开始
+     * @param toChapter   结束章节号，为空表示到最后一章
+     * @return 批量生成任务
+     */
+    @Transactional
+    public Task generateChapters(Long novelId, Integer fromChapter, Integer toChapter) {
+        Novel novel = novelRepository.findById(novelId)
+                .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+        List<Long> chapterIds = chapterRepository.findByNovelId(novelId).stream()
+                .filter(c -> fromChapter == null || c.getChapterNumber() >= fromChapter)
+                .filter(c -> toChapter == null || c.getChapterNumber() <= toChapter)
+                .filter(c -> c.getStatus() == null || c.getStatus() != 2)
+                .sorted(Comparator.comparing(Chapter::getChapterNumber))
+                .map(Chapter::getId)
+                .collect(Collectors.toList());
+        if (chapterIds.isEmpty()) {
+            throw new RuntimeException("No pending chapters to generate: " + novelId);
+        }
+
+        Task task = Task.builder()
+                .taskName("批量生成章节内容")
+                .taskType(TaskService.TASK_TYPE_GENERATE_CHAPTERS)
+                .taskRelationId(novel.getId())
+                .taskStatus(0)
+                .build();
+        Task saved = taskRepository.save(task);
+        afterCommit(() -> chapterGenerationTaskService.generateChapters(novel.getId(), chapterIds, saved.getId()));
+        return saved;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     /**
      * 根据ID获取章节
      */
@@ -126,13 +185,12 @@ public class ChapterService {
         }
         if (content != null) {
             chapter.setContent(content);
-            // 更新向量数据库
-            if (chapter.getVectorId() != null) {
-                qdrantService.deleteVector(chapter.getVectorId());
-            }
-            String collectionName = BasicUtils.getCollectionName(novel.getUserId(), novel.getId());
-            String vectorId = qdrantService.storeChapter(chapter.getId().toString(), content, model, collectionName);
-            chapter.setVectorId(vectorId);
+            // 更新向量数据库：删除旧向量后重新分块入库
+            VectorScope scope = VectorScope.novel(novel.getUserId(), novel.getId());
+            qdrantService.deleteChapterVectors(chapter, scope);
+            List<String> chunkIds = qdrantService.storeChapter(chapter, content, model, scope);
+            chapter.setChunkIds(String.join(",", chunkIds));
+            chapter.setVectorId(null);
         }
 
         return chapterRepository.save(chapter);
@@ -147,9 +205,8 @@ public class ChapterService {
                 .orElseThrow(() -> new RuntimeException("Chapter not found: " + id));
 
         // 删除向量数据库中的内容
-        if (chapter.getVectorId() != null) {
-            qdrantService.deleteVector(chapter.getVectorId());
-        }
+        novelRepository.findById(chapter.getNovelId()).ifPresent(novel -> qdrantService.deleteChapterVectors(
+                chapter, VectorScope.novel(novel.getUserId(), novel.getId())));
 
         chapterRepository.deleteById(id);
     }
@@ -160,17 +217,22 @@ public class ChapterService {
     @Transactional
     public void deleteChaptersByNovelId(Long novelId) {
         List<Chapter> chapters = chapterRepository.findByNovelId(novelId);
-        for (Chapter chapter : chapters) {
-            // 删除向量数据库中的内容
-            if (chapter.getVectorId() != null) {
-                qdrantService.deleteVector(chapter.getVectorId());
-            }
+        Optional<Novel> novel = novelRepository.findById(novelId);
+        if (novel.isPresent()) {
+            VectorScope scope = VectorScope.novel(novel.get().getUserId(), novelId);
+            // 删除向量数据库中的内容（各章节并发删除）
+            CompletableFuture.allOf(chapters.stream()
+                    .map(chapter -> qdrantService.deleteChapterVectorsAsync(chapter, scope))
+                    .toArray(CompletableFuture[]::new)).join();
         }
         chapterRepository.deleteByNovelId(novelId);
+        // 章节摘要失效，分层摘要一并清除
+        novelSummaryRepository.deleteByNovelId(novelId);
     }
 
     /**
-     * 从章节大纲中提取每章标题，同步到 chapters 表
+     * 从章节大纲中提取每章标题和大纲正文，同步到 chapters 表。
+     * 大纲正文作为章节的计划摘要写入（仅在摘要为空时），批量生成时后续章节据此构造前文，无需等待前章正文写完
      */
     @Transactional
     public void syncChaptersFromOutline(Long novelId, String outline) {
@@ -181,7 +243,8 @@ public class ChapterService {
         Pattern pattern = Pattern.compile("^[#]+\\s*第([一二三四五六七八九十百千万]+|\\d+)章\\s*(.*)$", Pattern.MULTILINE);
         Matcher matcher = pattern.matcher(outline);
 
-        while (matcher.find()) {
+        boolean found = matcher.find();
+        while (found) {
             String chapterNumStr = matcher.group(1);
             int chapterNumber;
 
@@ -196,20 +259,35 @@ public class ChapterService {
             // 去掉可能的方括号
             String title = rawTitle.replaceAll("^[\\[【]?|[】\\]]?$", "").trim();
 
+            // 本章大纲正文：标题行之后到下一章标题之前
+            int bodyStart = matcher.end();
+            found = matcher.find();
+            String planned = outline.substring(bodyStart, found ? matcher.start() : outline.length()).trim();
+
             Optional<Chapter> existingOpt = chapterRepository.findByNovelIdAndChapterNumber(novelId, chapterNumber);
             if (existingOpt.isPresent()) {
-                // 已存在章节，不强制覆盖标题，只在标题为空时补充
+                // 已存在章节，不强制覆盖标题和计划，只在为空时补充
                 Chapter existing = existingOpt.get();
+                boolean changed = false;
                 if ((existing.getTitle() == null || existing.getTitle().isEmpty()) && !title.isEmpty()) {
                     existing.setTitle(title);
+                    changed = true;
+                }
+                if ((existing.getPlannedOutline() == null || existing.getPlannedOutline().isEmpty())
+                        && !planned.isEmpty()) {
+                    existing.setPlannedOutline(planned);
+                    changed = true;
+                }
+                if (changed) {
                     chapterRepository.save(existing);
                 }
             } else {
-                // 创建占位章节记录（仅有编号和标题，状态为待处理）
+                // 创建占位章节记录（仅有编号、标题和本章计划，状态为待处理；摘要在正文生成后写入）
                 Chapter chapter = Chapter.builder()
                         .novelId(novelId)
                         .chapterNumber(chapterNumber)
                         .title(title.isEmpty() ? null : title)
+                        .plannedOutline(planned.isEmpty() ? null : planned)
                         .status(0)
                         .build();
                 chapterRepository.save(chapter);
@@ -1,43 +1,346 @@
 package com.viking.ai.novel.application.service;
 
+import com.viking.ai.novel.domain.model.Chapter;
 import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
 import com.viking.ai.novel.domain.repository.NovelRepository;
 import com.viking.ai.novel.domain.repository.TaskRepository;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
 import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
 import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * 小说结构生成：核心逻辑供同步调用或 MQ 消费者调用
+ * <p>
+ * 整本生成任务（GENERATE_NOVEL）按大纲同步出的章节逐章推进，每章正文、摘要、向量落库即为一个检查点，
+ * 任务上记录已完成章节数。任务失败或进程重启后再次执行时跳过已完成章节，已有正文的章节只补齐摘要与向量。
+ * <p>
+ * 多节点部署时整本生成任务先原子认领（task.locked_by）再执行，执行中定期续约；节点下线后续约过期的任务
+ * 由其他节点在定期扫描中认领续跑，同一任务任一时刻只在一个节点上执行。
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NovelGenerationTaskService {
 
+    public static final String TASK_TYPE_GENERATE_NOVEL = "GENERATE_NOVEL";
+
     private final NovelRepository novelRepository;
     private final TaskRepository taskRepository;
     private final AiModelService aiModelService;
     private final UserModelRepository userModelRepository;
+    private final ChapterRepository chapterRepository;
+    private final ChapterService chapterService;
+    private final ChapterGenerationTaskService chapterGenerationTaskService;
+    private final StreamRegistry streamRegistry;
+
+    @Value("${ai.novel-job.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    @Value("${stream.registry.node-id:}")
+    private String nodeId;
+
+    @Value("${ai.novel-job.lease-seconds:60}")
+    private long leaseSeconds;
+
+    // 本实例正在执行的整本生成任务 ID
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "novel-job-lease");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        leaseSeconds = Math.max(3, leaseSeconds);
+        long heartbeatSeconds = Math.max(1, leaseSeconds / 3);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
 
     /**
-     * 执行小说结构生成（同步逻辑，供实时调用或 MQ 消费者调用）
+     * 执行小说结构生成（同步逻辑，供实时调用或 MQ 消费者调用）：流式生成完成后写回小说结构并结束任务，
+     * 生成失败时任务置为失败并抛出异常，由作业执行方决定是否重试
      */
-    @Transactional
     public void doGenerateNovelStructure(Long novelId, Long taskId, Long userId) {
-
+        Novel novel = novelRepository.findById(novelId)
+                .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+        UserModel model = normalModel(userId != null ? userId : novel.getUserId());
+        runNovelStream(novelId, taskId, "structure",
+                (callback, handle) -> aiModelService.streamNovelStructure(novel.getTitle(), novel.getGenre(),
+                        novel.getSettingText(), novel.getChapterNumber(), model, callback, handle),
+                structure -> {
+                    Novel latest = novelRepository.findById(novelId)
+                            .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+                    latest.setStructure(structure);
+                    novelRepository.save(latest);
+                });
     }
-    
+
     /**
-     * 执行章节大纲生成（同步逻辑，供实时调用或 MQ 消费者调用）
+     * 执行章节大纲生成（同步逻辑，供实时调用或 MQ 消费者调用）：重新生成整份大纲，
+     * 完成后替换原有章节并按新大纲同步占位章节；生成失败时原有大纲与章节保持不变
      */
-    @Transactional
     public void doGenerateChapterOutline(Long novelId, Long taskId) {
+        Novel novel = novelRepository.findById(novelId)
+                .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+        if (novel.getStructure() == null || novel.getStructure().isEmpty()) {
+            markTask(taskId, 3, "Novel structure is required before generating chapter outline");
+            throw new RuntimeException("Novel structure is required before generating chapter outline");
+        }
+        UserModel model = normalModel(novel.getUserId());
+        runNovelStream(novelId, taskId, "outline",
+                (callback, handle) -> aiModelService.streamChapterOutline(novel.getTitle(), novel.getGenre(),
+                        novel.getSettingText(), novel.getStructure(), null, model, callback, handle),
+                outline -> {
+                    Novel latest = novelRepository.findById(novelId)
+                            .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+                    if (latest.getChapterOutline() != null && !latest.getChapterOutline().isEmpty()) {
+                        log.info("Regenerated chapter outline, delete existing chapters for novel: {}", novelId);
+                        chapterService.deleteChaptersByNovelId(novelId);
+                    }
+                    latest.setChapterOutline(outline);
+                    novelRepository.save(latest);
+                    chapterService.syncChaptersFromOutline(novelId, outline);
+                });
+    }
+
+    /**
+     * 小说级流式调用：(回调, 句柄) -> 发起模型流
+     */
+    @FunctionalInterface
+    private interface NovelStreamCall {
+        void start(AiModelService.StreamCallback callback, StreamHandle handle);
+    }
+
+    /**
+     * 以后台优先级调用模型流并在当前线程等待结果；与 WebSocket 的 structure / outline 流共用注册表，
+     * 同一小说的同类流在集群内已在生成时不再调用模型。被停止时任务置为已取消，其余失败置为失败并抛出
+     */
+    private void runNovelStream(Long novelId, Long taskId, String streamType, NovelStreamCall call,
+                                Consumer<String> onText) {
+        markTask(taskId, 1, null);
+        String streamKey = StreamRegistry.novelKey(novelId, streamType);
+        StreamHandle handle = new StreamHandle(PriorityClassEnum.BACKGROUND);
+        if (!streamRegistry.register(streamKey, handle)) {
+            String message = "Novel " + streamType + " is already being generated: " + novelId;
+            markTask(taskId, 3, message);
+            throw new RuntimeException(message);
+        }
+        try {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            call.start(new AiModelService.StreamCallback() {
+                @Override
+                public void onDelta(String text) {
+                }
+
+                @Override
+                public void onComplete(String fullText) {
+                    result.complete(fullText);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    result.completeExceptionally(t);
+                }
+
+                @Override
+                public void onCancelled(String partialText) {
+                    result.completeExceptionally(new CancellationException("Novel " + streamType + " generation cancelled"));
+                }
+            }, handle);
+            String text = result.join();
+            if (text == null || text.isBlank()) {
+                throw new RuntimeException("Model returned empty " + streamType + " for novel " + novelId);
+            }
+            onText.accept(text);
+            markTask(taskId, 2, null);
+        } catch (Exception e) {
+            if (handle.isCancelled() && !handle.isYielded() && handle.getFailure() == null) {
+                log.info("Novel {} generation for novel {} stopped", streamType, novelId);
+                markTask(taskId, 4, null);
+                return;
+            }
+            log.error("Error generating novel {} for novel {}", streamType, novelId, e);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            markTask(taskId, 3, cause.getMessage());
+            throw e instanceof RuntimeException re ? re : new RuntimeException(e);
+        } finally {
+            streamRegistry.unregister(streamKey, handle);
+        }
+    }
+
+    private UserModel normalModel(Long userId) {
+        return userModelRepository.findByUserIdAndType(userId, ModelTypeEnum.NORMAL.getType())
+                .orElseThrow(() -> new RuntimeException("User model not found: " + userId));
+    }
+
+    private void markTask(Long taskId, int status, String errorMessage) {
+        if (taskId == null) {
+            return;
+        }
+        taskRepository.findById(taskId).ifPresent(task -> {
+            task.setTaskStatus(status);
+            task.setErrorMessage(errorMessage);
+            taskRepository.save(task);
+        });
+    }
+
+    /**
+     * 启动整本小说生成（异步执行）；该小说已有未完成（待处理/处理中/失败/已取消）的整本生成任务时沿用该任务续跑
+     */
+    public Task startNovelGeneration(Long novelId) {
+        novelRepository.findById(novelId)
+                .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+        Task task = taskRepository.findByTaskRelationId(novelId).stream()
+                .filter(t -> TASK_TYPE_GENERATE_NOVEL.equals(t.getTaskType()))
+                .filter(t -> t.getTaskStatus() == null || t.getTaskStatus() != 2)
+                .max(Comparator.comparing(Task::getId))
+                .orElseGet(() -> taskRepository.save(Task.builder()
+                        .taskName("生成整本小说")
+                        .taskType(TASK_TYPE_GENERATE_NOVEL)
+                        .taskRelationId(novelId)
+                        .taskStatus(0)
+                        .build()));
+        if (task.getTaskStatus() != null && task.getTaskStatus() == 4) {
+            // 已取消的任务重新启动时从检查点继续
+            task.setTaskStatus(0);
+            task = taskRepository.save(task);
+        }
+        runNovelJob(task);
+        return task;
+    }
+
+    /**
+     * 启动时续跑上次未结束的整本生成任务；其他节点正在执行（认领未过期）的任务跳过
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        ready = true;
+        if (!resumeOnStartup) {
+            return;
+        }
+        for (Integer status : List.of(0, 1)) {
+            for (Task task : taskRepository.findByTaskTypeAndTaskStatus(TASK_TYPE_GENERATE_NOVEL, status)) {
+                if (runningJobs.contains(task.getId())) {
+                    continue;
+                }
+                runNovelJob(task);
+            }
+        }
+    }
+
+    /**
+     * 续约本节点执行中的任务，并接管续约已过期（执行节点已下线）的任务
+     */
+    public void heartbeat() {
+        try {
+            taskRepository.touch(nodeId, Set.copyOf(runningJobs));
+            if (ready) {
+                resumeInterruptedJobs();
+            }
+        } catch (Exception e) {
+            log.error("Error renewing novel generation task leases", e);
+        }
+    }
+
+    private void runNovelJob(Task task) {
+        if (!runningJobs.add(task.getId())) {
+            log.info("Novel generation task {} is already running", task.getId());
+            return;
+        }
+        if (!taskRepository.claim(task.getId(), nodeId, LocalDateTime.now().minusSeconds(leaseSeconds))) {
+            runningJobs.remove(task.getId());
+            log.debug("Novel generation task {} is running on another node", task.getId());
+            return;
+        }
+        log.info("Running novel generation task {} for novel {} on node {}", task.getId(), task.getTaskRelationId(), nodeId);
+        Long novelId = task.getTaskRelationId();
+        try {
+            List<Chapter> chapters = chapterRepository.findByNovelId(novelId);
+            if (chapters.isEmpty()) {
+                // 大纲已生成但章节尚未同步时先同步一次
+                Novel novel = novelRepository.findById(novelId)
+                        .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
+                chapterService.syncChaptersFromOutline(novelId, novel.getChapterOutline());
+                chapters = chapterRepository.findByNovelId(novelId);
+            }
+            if (chapters.isEmpty()) {
+                throw new RuntimeException("No chapters to generate, please generate the chapter outline first");
+            }
+
+            List<Long> pending = chapters.stream()
+                    .filter(c -> c.getStatus() == null || c.getStatus() != 2)
+                    .sorted(Comparator.comparing(Chapter::getChapterNumber))
+                    .map(Chapter::getId)
+                    .collect(Collectors.toList());
+            task.setProgressTotal(chapters.size());
+            task.setProgressDone(chapters.size() - pending.size());
+            if (pending.isEmpty()) {
+                task.setTaskStatus(2);
+                taskRepository.save(task);
+                releaseJob(task.getId());
+                return;
+            }
+            taskRepository.save(task);
+            log.info("Novel generation task {}: {}/{} chapters already done, {} remaining",
+                    task.getId(), task.getProgressDone(), task.getProgressTotal(), pending.size());
+
+            chapterGenerationTaskService.generateChapters(novelId, pending, task.getId(), true)
+                    .whenComplete((v, e) -> releaseJob(task.getId()));
+        } catch (Exception e) {
+            log.error("Error starting novel generation task {}", task.getId(), e);
+            task.setTaskStatus(3);
+            task.setErrorMessage(e.getMessage());
+            taskRepository.save(task);
+            releaseJob(task.getId());
+        }
+    }
+
+    private void releaseJob(Long taskId) {
+        runningJobs.remove(taskId);
+        try {
+            taskRepository.release(taskId, nodeId);
+        } catch (Exception e) {
+            // 未释放的认领在续约过期后失效
+            log.warn("Error releasing novel generation task {}", taskId, e);
+        }
     }
 }
@@ -6,9 +6,8 @@ import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.domain.repository.NovelRepository;
 import com.viking.ai.novel.domain.repository.TaskRepository;
-import com.viking.ai.novel.infrastructure.mq.AiGenerateProducer;
+import com.viking.ai.novel.infrastructure.job.GenerationJobDispatcher;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,20 +24,20 @@ public class NovelService {
     private final NovelRepository novelRepository;
     private final TaskRepository taskRepository;
     private final NovelGenerationTaskService novelGenerationTaskService;
-    private final AiGenerateProducer aiGenerateProducer;
+    private final GenerationJobDispatcher jobDispatcher;
     private final ChapterService chapterService;
     private final NovelVectorService novelVectorService;
 
     public NovelService(NovelRepository novelRepository,
                         TaskRepository taskRepository,
                         NovelGenerationTaskService novelGenerationTaskService,
-                        @Autowired(required = false) AiGenerateProducer aiGenerateProducer,
+                        GenerationJobDispatcher jobDispatcher,
                         ChapterService chapterService,
                         NovelVectorService novelVectorService) {
         this.novelRepository = novelRepository;
         this.taskRepository = taskRepository;
         this.novelGenerationTaskService = novelGenerationTaskService;
-        this.aiGenerateProducer = aiGenerateProducer;
+        this.jobDispatcher = jobDispatcher;
         this.chapterService = chapterService;
         this.novelVectorService = novelVectorService;
     }
@@ -130,7 +129,7 @@ public class NovelService {
     
     /**
      * 重新生成小说架构
-     * @param async true=通过 MQ 异步生成，false=同步生成（阻塞至完成）
+     * @param async true=派发异步生成作业，false=同步生成（阻塞至完成）
      */
     @Transactional
     public Novel regenerateNovelStructure(Long novelId, boolean async) {
@@ -145,8 +144,8 @@ public class NovelService {
                 .build();
         taskRepository.save(task);
         
-        if (async && aiGenerateProducer != null) {
-            aiGenerateProducer.sendNovelStructure(novel.getId(), task.getId(), novel.getUserId());
+        if (async) {
+            jobDispatcher.dispatchNovelStructure(novel.getId(), task.getId(), novel.getUserId());
         } else {
             novelGenerationTaskService.doGenerateNovelStructure(novel.getId(), task.getId(), novel.getUserId());
         }
@@ -155,7 +154,7 @@ public class NovelService {
     
     /**
      * 生成章节大纲
-     * @param async true=通过 MQ 异步生成，false=同步生成（阻塞至完成）
+     * @param async true=派发异步生成作业，false=同步生成（阻塞至完成）
      */
     @Transactional
     public Novel generateChapterOutline(Long novelId, boolean async) {
@@ -174,8 +173,8 @@ public class NovelService {
                 .build();
         taskRepository.save(task);
         
-        if (async && aiGenerateProducer != null) {
-            aiGenerateProducer.sendChapterOutline(novel.getId(), task.getId());
+        if (async) {
+            jobDispatcher.dispatchChapterOutline(novel.getId(), task.getId());
         } else {
             novelGenerationTaskService.doGenerateChapterOutline(novel.getId(), task.getId());
         }
@@ -0,0 +1,85 @@
+package com.viking.ai.novel.application.service;
+
+import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回收卡在“生成中”的章节：状态为 1 但集群内没有对应的流（进程崩溃、回调链路异常等）时改回待处理。
+ * <p>
+ * 流结束到落库流水线写回最终状态之间章节也短暂处于 1 且已注销，因此连续两次巡检都无流时才回收。
+ */
+@Component
+@Slf4j
+public class StaleChapterReaper {
+
+    private final ChapterRepository chapterRepository;
+    private final StreamRegistry streamRegistry;
+    private final long intervalSeconds;
+    private Set<Long> suspects = new HashSet<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stale-chapter-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StaleChapterReaper(ChapterRepository chapterRepository,
+                              StreamRegistry streamRegistry,
+                              @Value("${stream.supervisor.chapter-sweep-seconds:60}") long intervalSeconds) {
+        this.chapterRepository = chapterRepository;
+        this.streamRegistry = streamRegistry;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (intervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::sweep, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 巡检一次；返回本次回收的章节数
+     */
+    public synchronized int sweep() {
+        int reaped = 0;
+        try {
+            Set<Long> orphaned = new HashSet<>();
+            for (Chapter chapter : chapterRepository.findByStatus(1)) {
+                String key = StreamRegistry.chapterKey(chapter.getNovelId(), chapter.getChapterNumber());
+                if (streamRegistry.status(key).isPresent()) {
+                    continue;
+                }
+                if (!suspects.contains(chapter.getId())) {
+                    orphaned.add(chapter.getId());
+                    continue;
+                }
+                chapter.setStatus(0);
+                chapterRepository.save(chapter);
+                reaped++;
+                log.warn("Reset chapter {} of novel {} stuck in generating state without an active stream",
+                        chapter.getChapterNumber(), chapter.getNovelId());
+            }
+            suspects = orphaned;
+        } catch (Exception e) {
+            log.error("Error reaping stale chapters", e);
+        }
+        return reaped;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -16,9 +17,23 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class TaskService {
+
+    /** 单章生成任务类型，task_relation_id 为章节 ID（其余任务为小说 ID） */
+    public static final String TASK_TYPE_GENERATE_CHAPTER = "GENERATE_CHAPTER";
+
+    /** 批量生成章节任务类型，task_relation_id 为小说 ID */
+    public static final String TASK_TYPE_GENERATE_CHAPTERS = "GENERATE_CHAPTERS";
     
     private final TaskRepository taskRepository;
+    private final ChapterGenerationTaskService chapterGenerationTaskService;
     
+    /**
+     * 根据ID获取任务
+     */
+    public Optional<Task> getTaskById(Long taskId) {
+        return taskRepository.findById(taskId);
+    }
+
     /**
      * 根据关联ID获取任务列表
      */
@@ -39,4 +54,22 @@ public class TaskService {
     public List<Task> getAllActiveTasks() {
         return taskRepository.findByTaskStatusIn(List.of(0, 1));
     }
+
+    /**
+     * 取消任务：正在执行的批量生成取消进行中的章节流，由执行方写回已取消状态；
+     * 尚未开始执行（如仍在 MQ 中）的任务直接标记为已取消，执行方开始时跳过
+     */
+    public Task cancelTask(Long taskId) {
+        Task task = taskRepository.findById(taskId)
+                .orElseThrow(() -> new RuntimeException("Task not found: " + taskId));
+        if (task.getTaskStatus() != null && task.getTaskStatus() >= 2) {
+            return task;
+        }
+        if (!chapterGenerationTaskService.cancelTask(taskId)) {
+            task.setTaskStatus(4);
+            task.setErrorMessage("cancelled");
+            return taskRepository.save(task);
+        }
+        return task;
+    }
 }
@@ -2,6 +2,7 @@ package com.viking.ai.novel.application.service;
 
 import com.viking.ai.novel.domain.model.UserModel;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,6 +19,7 @@ import java.util.Optional;
 public class UserModelService {
     
     private final UserModelRepository userModelRepository;
+    private final AiModelService aiModelService;
     
     /**
      * 保存或更新用户模型配置
@@ -39,6 +41,14 @@ public class UserModelService {
         if (existing.isPresent()) {
             // 更新现有配置
             userModel = existing.get();
+            // 旧配置对应的缓存客户端不再可用，先失效再覆盖
+            aiModelService.invalidateModelClients(UserModel.builder()
+                    .userId(userModel.getUserId())
+                    .type(userModel.getType())
+                    .modelName(userModel.getModelName())
+                    .modelUrl(userModel.getModelUrl())
+                    .apiKey(userModel.getApiKey())
+                    .build());
             userModel.setModelName(modelName);
             userModel.setModelUrl(modelUrl);
             userModel.setModelType(modelType);
@@ -5,8 +5,8 @@ import com.viking.ai.novel.domain.model.UserVector;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
 import com.viking.ai.novel.domain.repository.UserVectorRepository;
 import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.ai.VectorScope;
 import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
-import com.viking.ai.novel.infrastructure.utils.BasicUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -42,7 +42,7 @@ public class UserVectorService {
     public UserVector createFromContent(Long userId, String vectorName, String content) {
         UserModel model = userModelRepository.findByUserIdAndType(userId, ModelTypeEnum.VECTOR.getType())
                 .orElseThrow(() -> new RuntimeException("User model not found: " + userId));
-        String vectorId = qdrantService.storeText(content, model, BasicUtils.getCollectionName(userId, null));
+        String vectorId = qdrantService.storeText(content, model, VectorScope.library(userId));
         return create(userId, vectorName, vectorId);
     }
 
@@ -29,17 +29,23 @@ public class Chapter {
     private String title;
     
     @Column(name = "abstract_content", length = 500)
-    private String abstractContent;
+    private String abstractContent; // 已生成正文的摘要，正文生成后总是重新生成
+
+    @Column(name = "planned_outline", columnDefinition = "TEXT")
+    private String plannedOutline; // 本章计划（大纲同步或创建时指定），生成正文时作为本章要点
     
     @Column(name = "content", columnDefinition = "LONGTEXT")
     private String content;
     
     @Column(name = "vector_id", length = 100)
     private String vectorId;
+
+    @Column(name = "chunk_ids", columnDefinition = "TEXT")
+    private String chunkIds; // 分块向量ID，逗号分隔
     
     @Column(name = "status")
     @Builder.Default
-    private Integer status = 0; // 0: 待处理，1: 处理中，2: 处理完成
+    private Integer status = 0; // 0: 待处理，1: 处理中，2: 处理完成，3: 已取消
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
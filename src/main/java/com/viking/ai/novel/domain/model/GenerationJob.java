@@ -0,0 +1,86 @@
+package com.viking.ai.novel.domain.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 本地异步生成队列中的一条作业（未启用 RocketMQ 时使用）
+ */
+@Entity
+@Table(name = "generation_job")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationJob {
+
+    public static final String TYPE_NOVEL_STRUCTURE = "NOVEL_STRUCTURE";
+    public static final String TYPE_CHAPTER_OUTLINE = "CHAPTER_OUTLINE";
+    public static final String TYPE_CHAPTER_CONTENT = "CHAPTER_CONTENT";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_type", nullable = false, length = 50)
+    private String jobType;
+
+    @Column(name = "novel_id", nullable = false)
+    private Long novelId;
+
+    @Column(name = "chapter_id")
+    private Long chapterId;
+
+    @Column(name = "task_id")
+    private Long taskId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "status")
+    @Builder.Default
+    private Integer status = 0; // 0: 待执行，1: 执行中，2: 完成，3: 失败
+
+    @Column(name = "attempts")
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "available_at")
+    private LocalDateTime availableAt; // 最早可执行时间，失败重试时后延
+
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt; // 执行节点的最近续约时间
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (availableAt == null) {
+            availableAt = createdAt;
+        }
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
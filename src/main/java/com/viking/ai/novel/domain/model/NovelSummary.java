@@ -0,0 +1,59 @@
+package com.viking.ai.novel.domain.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 小说分层摘要：卷摘要（若干章压缩）与前情滚动摘要（截至某章的全书前情），
+ * 用于长篇小说在 token 预算内构造前文上下文
+ */
+@Entity
+@Table(name = "novel_summaries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NovelSummary {
+
+    public static final int LEVEL_VOLUME = 1;
+    public static final int LEVEL_ROLLING = 2;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "novel_id", nullable = false)
+    private Long novelId;
+
+    @Column(name = "level", nullable = false)
+    private Integer level; // 1: 卷摘要，2: 前情滚动摘要
+
+    @Column(name = "volume_index", nullable = false)
+    private Integer volumeIndex; // 卷序号（从 0 开始）；滚动摘要固定为 0
+
+    @Column(name = "start_chapter", nullable = false)
+    private Integer startChapter;
+
+    @Column(name = "end_chapter", nullable = false)
+    private Integer endChapter;
+
+    @Column(name = "content", columnDefinition = "LONGTEXT")
+    private String content;
+
+    @Column(name = "source_hash", length = 64)
+    private String sourceHash; // 生成摘要所用原文的哈希，用于判断是否过期
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -30,15 +30,42 @@ public class Task {
     
     @Column(name = "task_status")
     @Builder.Default
-    private Integer taskStatus = 0; // 0: 待处理，1: 处理中，2: 处理完成 3-处理失败
+    private Integer taskStatus = 0; // 0: 待处理，1: 处理中，2: 处理完成 3-处理失败 4-已取消
+
+    @Column(name = "progress_done")
+    @Builder.Default
+    private Integer progressDone = 0; // 已完成（已落检查点）的子项数，如已完成的章节数
+
+    @Column(name = "progress_total")
+    @Builder.Default
+    private Integer progressTotal = 0;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    // 执行节点与最近续约时间，只由认领/续约语句写入，保存实体时不覆盖
+    @Column(name = "locked_by", length = 100, insertable = false, updatable = false)
+    private String lockedBy;
+
+    @Column(name = "locked_at", insertable = false, updatable = false)
+    private LocalDateTime lockedAt;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
     
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
         }
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
     }
 }
@@ -10,6 +10,7 @@ public interface ChapterRepository {
     Optional<Chapter> findById(Long id);
     List<Chapter> findByNovelId(Long novelId);
     Optional<Chapter> findByNovelIdAndChapterNumber(Long novelId, Integer chapterNumber);
+    List<Chapter> findByStatus(Integer status);
     void deleteById(Long id);
     void deleteByNovelId(Long novelId);
 }
@@ -0,0 +1,33 @@
+package com.viking.ai.novel.domain.repository;
+
+import com.viking.ai.novel.domain.model.GenerationJob;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface GenerationJobRepository {
+    GenerationJob save(GenerationJob job);
+    Optional<GenerationJob> findById(Long id);
+
+    /**
+     * 检查作业表可用且数据库支持 SKIP LOCKED，不可用时抛出异常
+     */
+    void probe();
+
+    /**
+     * 认领最多 limit 条到期的待执行作业并标记为执行中（SELECT ... FOR UPDATE SKIP LOCKED，多个节点并发认领互不阻塞）
+     */
+    List<GenerationJob> claim(String nodeId, int limit);
+
+    /**
+     * 续约本节点正在执行的作业
+     */
+    int touch(String nodeId, Collection<Long> ids);
+
+    /**
+     * 把续约时间早于 expiredBefore 的执行中作业（执行节点已下线）放回待执行
+     */
+    int releaseExpired(LocalDateTime expiredBefore);
+}
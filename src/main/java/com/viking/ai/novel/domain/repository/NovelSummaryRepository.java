@@ -0,0 +1,13 @@
+package com.viking.ai.novel.domain.repository;
+
+import com.viking.ai.novel.domain.model.NovelSummary;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface NovelSummaryRepository {
+    NovelSummary save(NovelSummary summary);
+    List<NovelSummary> findByNovelIdAndLevel(Long novelId, Integer level);
+    Optional<NovelSummary> findByNovelIdAndLevelAndVolumeIndex(Long novelId, Integer level, Integer volumeIndex);
+    void deleteByNovelId(Long novelId);
+}
@@ -2,6 +2,8 @@ package com.viking.ai.novel.domain.repository;
 
 import com.viking.ai.novel.domain.model.Task;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +13,20 @@ public interface TaskRepository {
     List<Task> findByTaskTypeAndTaskStatus(String taskType, Integer taskStatus);
     List<Task> findByTaskRelationId(Long taskRelationId);
     List<Task> findByTaskStatusIn(List<Integer> statuses);
+
+    /**
+     * 认领未完成的任务由 nodeId 执行：任务未被占用、已由本节点占用或占用节点续约早于 expiredBefore（已下线）时成功，
+     * 多个节点并发认领同一任务只有一个成功
+     */
+    boolean claim(Long id, String nodeId, LocalDateTime expiredBefore);
+
+    /**
+     * 续约本节点执行中的任务
+     */
+    int touch(String nodeId, Collection<Long> ids);
+
+    /**
+     * 释放本节点对任务的占用
+     */
+    void release(Long id, String nodeId);
 }
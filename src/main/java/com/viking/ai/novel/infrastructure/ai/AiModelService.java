@@ -1,65 +1,96 @@
 package com.viking.ai.novel.infrastructure.ai;
 
 import com.viking.ai.novel.domain.model.UserModel;
-import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.model.StreamingResponseHandler;
+import dev.ai4j.openai4j.DefaultOpenAiClient;
+import dev.ai4j.openai4j.OpenAiClient;
+import dev.ai4j.openai4j.ResponseHandle;
+import dev.ai4j.openai4j.chat.ChatCompletionRequest;
+import dev.ai4j.openai4j.chat.ChatCompletionResponse;
+import dev.ai4j.openai4j.chat.Delta;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
-import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
-import dev.langchain4j.model.output.Response;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 
 /**
  * AI 模型服务，用于调用大模型生成内容
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AiModelService {
     
     @Value("${langchain4j.open-ai.chat-model.temperature:0.7}")
     private double temperature;
 
+    private final ModelClientRegistry modelClientRegistry;
+    private final ModelAdmissionController admissionController;
+    private final StreamMetrics streamMetrics;
+    private final StreamSupervisor streamSupervisor;
+
+    public AiModelService(ModelClientRegistry modelClientRegistry,
+                          ModelAdmissionController admissionController,
+                          StreamMetrics streamMetrics,
+                          StreamSupervisor streamSupervisor) {
+        this.modelClientRegistry = modelClientRegistry;
+        this.admissionController = admissionController;
+        this.streamMetrics = streamMetrics;
+        this.streamSupervisor = streamSupervisor;
+    }
+
+    /**
+     * 流式生成的最大输出 token 数
+     */
+    private static final int MAX_STREAM_TOKENS = 8192;
+
     public ChatLanguageModel getChatModel(UserModel model) {
-        return OpenAiChatModel.builder()
-                .apiKey(model.getApiKey())
-                .baseUrl(model.getModelUrl())
-                .modelName(model.getModelName())
-                .temperature(temperature)
-                .timeout(Duration.ofSeconds(300))
-                .build();
+        return modelClientRegistry.get(ModelClientRegistry.Kind.CHAT, model, temperature,
+                () -> OpenAiChatModel.builder()
+                        .apiKey(model.getApiKey())
+                        .baseUrl(model.getModelUrl())
+                        .modelName(model.getModelName())
+                        .temperature(temperature)
+                        .timeout(Duration.ofSeconds(300))
+                        .build());
     }
 
     /**
-     * 获取支持流式输出的 ChatLanguageModel
+     * 获取流式对话客户端（按配置缓存复用）。直接使用 openai4j 客户端而非 langchain4j 的流式模型，
+     * 以便拿到 ResponseHandle 在停止时取消上游请求
      */
-    public StreamingChatLanguageModel getStreamingChatModel(UserModel model) {
-        return OpenAiStreamingChatModel.builder()
-                .apiKey(model.getApiKey())
-                .baseUrl(model.getModelUrl())
-                .modelName(model.getModelName())
-                .temperature(temperature)
-                .timeout(Duration.ofSeconds(6000))
-                .maxTokens(8192)
-                .build();
+    public OpenAiClient getStreamingClient(UserModel model) {
+        return modelClientRegistry.get(ModelClientRegistry.Kind.STREAMING_CHAT, model, temperature,
+                () -> DefaultOpenAiClient.builder()
+                        .openAiApiKey(model.getApiKey())
+                        .baseUrl(model.getModelUrl())
+                        .callTimeout(Duration.ofSeconds(6000))
+                        .readTimeout(Duration.ofSeconds(6000))
+                        .build());
     }
 
     public EmbeddingModel getEmbeddingModel(UserModel model) {
-        return OpenAiEmbeddingModel.builder()
-                .baseUrl(model.getModelUrl())
-                .apiKey(model.getApiKey())
-                .modelName(model.getModelName())
-                .dimensions(1536)
-                .build();
+        return modelClientRegistry.get(ModelClientRegistry.Kind.EMBEDDING, model, temperature,
+                () -> OpenAiEmbeddingModel.builder()
+                        .baseUrl(model.getModelUrl())
+                        .apiKey(model.getApiKey())
+                        .modelName(model.getModelName())
+                        .dimensions(1536)
+                        .build());
+    }
+
+    /**
+     * 用户模型配置变更时，使旧配置对应的缓存客户端失效
+     */
+    public void invalidateModelClients(UserModel oldConfig) {
+        modelClientRegistry.invalidate(oldConfig, temperature);
     }
     
     /**
@@ -82,6 +113,18 @@ public class AiModelService {
         void onDelta(String text);
         void onComplete(String fullText);
         void onError(Throwable t);
+
+        /**
+         * 端点繁忙时请求进入排队，回调当前排队位置（从 1 开始），默认忽略
+         */
+        default void onQueued(int position) {
+        }
+
+        /**
+         * 流被 {@link StreamHandle#cancel()} 取消，回调已生成的部分文本，默认忽略
+         */
+        default void onCancelled(String partialText) {
+        }
     }
 
     /**
@@ -92,19 +135,17 @@ public class AiModelService {
 
     /**
      * 生成章节内容（流式）
+     *
+     * @param previousContext 已按 token 预算裁剪好的前文摘要（见 ChapterContextBuilder），可为空
      */
     public void streamChapterContent(String novelTitle, String genre, String settingText,
                                      String structure, String chapterTitle, String chapterAbstract,
-                                     List<String> previousChapters, Integer chapterWordCount,
-                                     List<String> relevantSnippets, UserModel model, ChapterStreamCallback callback) {
-        StreamingChatLanguageModel streamingModel = getStreamingChatModel(model);
-
+                                     String previousContext, Integer chapterWordCount,
+                                     List<String> relevantSnippets, UserModel model, ChapterStreamCallback callback,
+                                     StreamHandle handle) {
         StringBuilder contextBuilder = new StringBuilder();
-        if (previousChapters != null && !previousChapters.isEmpty()) {
-            contextBuilder.append("前文摘要：\n");
-            for (int i = 0; i < previousChapters.size(); i++) {
-                contextBuilder.append(String.format("第%d章：%s\n", i + 1, previousChapters.get(i)));
-            }
+        if (previousContext != null && !previousContext.isEmpty()) {
+            contextBuilder.append("前文摘要：\n").append(previousContext);
         }
 
         // 添加相关片段（RAG检索结果）
@@ -150,38 +191,18 @@ public class AiModelService {
             """, novelTitle, genre, settingText, structure, contextBuilder.toString(),
                 relevantSnippetsBuilder.toString(), chapterTitle, chapterAbstract, genre, wordCountRequirement);
 
-        streamingModel.generate(prompt, new StreamingResponseHandler<AiMessage>() {
-            @Override
-            public void onNext(String token) {
-                if (callback != null) {
-                    callback.onDelta(token);
-                }
-            }
-
-            @Override
-            public void onError(Throwable error) {
-                log.error("Error streaming chapter content", error);
-                if (callback != null) {
-                    callback.onError(error);
-                }
-            }
-
-            @Override
-            public void onComplete(Response<AiMessage> response) {
-                if (callback != null) {
-                    callback.onComplete(response.content().text());
-                }
-            }
-        });
+        // 中文正文约每字 1 token，用于估算取消时节省的输出 token
+        int expectedTokens = chapterWordCount != null && chapterWordCount > 0
+                ? Math.min(chapterWordCount, MAX_STREAM_TOKENS) : MAX_STREAM_TOKENS;
+        streamPrompt(prompt, model, StreamMetrics.STREAM_CHAPTER, expectedTokens, callback, handle);
     }
     
     /**
      * 生成小说结构（流式）
      */
     public void streamNovelStructure(String title, String genre, String settingText,
-                                     Integer chapterNumber, UserModel model, StreamCallback callback) {
-        StreamingChatLanguageModel streamingModel = getStreamingChatModel(model);
-
+                                     Integer chapterNumber, UserModel model, StreamCallback callback,
+                                     StreamHandle handle) {
         // 根据总章数生成章节规划要求
         String chapterPlanningRequirement;
         if (chapterNumber != null && chapterNumber > 0) {
@@ -235,32 +256,7 @@ public class AiModelService {
             请使用清晰的分段和标题，确保结构清晰、内容详实，便于后续章节创作。
             """, title, genre, settingText, chapterPlanningRequirement);
 
-        StringBuilder full = new StringBuilder();
-
-        streamingModel.generate(prompt, new StreamingResponseHandler<AiMessage>() {
-            @Override
-            public void onNext(String token) {
-                full.append(token);
-                if (callback != null) {
-                    callback.onDelta(token);
-                }
-            }
-
-            @Override
-            public void onError(Throwable error) {
-                log.error("Error streaming novel structure", error);
-                if (callback != null) {
-                    callback.onError(error);
-                }
-            }
-
-            @Override
-            public void onComplete(Response<AiMessage> response) {
-                if (callback != null) {
-                    callback.onComplete(response.content().text());
-                }
-            }
-        });
+        streamPrompt(prompt, model, StreamMetrics.STREAM_STRUCTURE, MAX_STREAM_TOKENS, callback, handle);
     }
 
     /**
@@ -270,9 +266,7 @@ public class AiModelService {
      */
     public void streamChapterOutline(String title, String genre, String settingText,
                                      String structure, String existingOutline,
-                                     UserModel model, StreamCallback callback) {
-        StreamingChatLanguageModel streamingModel = getStreamingChatModel(model);
-
+                                     UserModel model, StreamCallback callback, StreamHandle handle) {
         final String prompt;
         if (existingOutline != null && !existingOutline.trim().isEmpty()) {
             prompt = String.format("""
@@ -350,29 +344,7 @@ public class AiModelService {
                 """, title, genre, settingText, structure != null ? structure : "无");
         }
 
-        streamingModel.generate(prompt, new StreamingResponseHandler<AiMessage>() {
-            @Override
-            public void onNext(String token) {
-                if (callback != null) {
-                    callback.onDelta(token);
-                }
-            }
-
-            @Override
-            public void onError(Throwable error) {
-                log.error("Error streaming chapter outline", error);
-                if (callback != null) {
-                    callback.onError(error);
-                }
-            }
-
-            @Override
-            public void onComplete(Response<AiMessage> response) {
-                if (callback != null) {
-                    callback.onComplete(response.content().text());
-                }
-            }
-        });
+        streamPrompt(prompt, model, StreamMetrics.STREAM_OUTLINE, MAX_STREAM_TOKENS, callback, handle);
     }
 
     /**
@@ -387,13 +359,181 @@ public class AiModelService {
             %s
             """, chapterContent);
         
+        ModelAdmissionController.Permit permit = admissionController.acquireBlocking(model, TokenEstimator.estimate(prompt));
+        StreamMetrics.Sample sample = streamMetrics.start(StreamMetrics.STREAM_ABSTRACT, model.getModelName(), prompt);
+        sample.sent();
         try {
             String response = chatModel.generate(prompt);
+            sample.finish(StreamMetrics.OUTCOME_COMPLETE, response);
             log.info("Generated chapter abstract");
             return response;
         } catch (Exception e) {
+            sample.finish(StreamMetrics.OUTCOME_ERROR, null);
             log.error("Error generating chapter abstract", e);
             throw new RuntimeException("Failed to generate chapter abstract", e);
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * 将多段摘要压缩为一段概要（用于卷摘要、前情滚动摘要）
+     */
+    public String generateSummary(String content, int maxChars, UserModel model) {
+        ChatLanguageModel chatModel = getChatModel(model);
+
+        String prompt = String.format("""
+            请将以下小说情节概要压缩为一段连贯的前情提要（不超过%d字），
+            保留主要人物、关键事件、伏笔和人物关系变化，省略细节描写：
+            
+            %s
+            """, maxChars, content);
+
+        ModelAdmissionController.Permit permit = admissionController.acquireBlocking(model, TokenEstimator.estimate(prompt));
+        StreamMetrics.Sample sample = streamMetrics.start(StreamMetrics.STREAM_SUMMARY, model.getModelName(), prompt);
+        sample.sent();
+        try {
+            String response = chatModel.generate(prompt);
+            sample.finish(StreamMetrics.OUTCOME_COMPLETE, response);
+            log.info("Generated summary");
+            return response;
+        } catch (Exception e) {
+            sample.finish(StreamMetrics.OUTCOME_ERROR, null);
+            log.error("Error generating summary", e);
+            throw new RuntimeException("Failed to generate summary", e);
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * 经准入控制后以流式方式调用模型；许可在完成、出错或取消时释放
+     *
+     * @param stream         流类型（{@link StreamMetrics} 的 STREAM_*），用于指标标签与日志
+     * @param expectedTokens 预期输出 token 数，取消时据此估算节省的 token
+     */
+    private void streamPrompt(String prompt, UserModel model, String stream, int expectedTokens,
+                              StreamCallback callback, StreamHandle handle) {
+        OpenAiClient client = getStreamingClient(model);
+        StreamMetrics.Sample sample = streamMetrics.start(stream, model.getModelName(), prompt);
+        IntConsumer onQueued = callback != null ? callback::onQueued : null;
+        StreamHandle streamHandle = handle != null ? handle : new StreamHandle();
+        StreamSupervisor.Tracked tracked = streamSupervisor.track(stream, model, streamHandle);
+
+        CompletableFuture<ModelAdmissionController.Permit> admission =
+                admissionController.acquire(model, TokenEstimator.estimate(prompt), onQueued, streamHandle.getPriority());
+        // 排队期间取消：放弃等待，请求不会发往模型端点
+        streamHandle.onCancel(() -> {
+            if (admission.cancel(false)) {
+                terminated(stream, streamHandle, sample, tracked, expectedTokens, "", callback);
+            }
+        });
+        admission.thenAccept(permit -> {
+            StringBuilder generated = new StringBuilder();
+            // 完成、出错、取消三者只回调其一
+            AtomicBoolean finished = new AtomicBoolean(false);
+            if (streamHandle.isCancelled()) {
+                permit.release();
+                terminated(stream, streamHandle, sample, tracked, expectedTokens, "", callback);
+                return;
+            }
+            try {
+                ChatCompletionRequest request = ChatCompletionRequest.builder()
+                        .model(model.getModelName())
+                        .addUserMessage(prompt)
+                        .temperature(temperature)
+                        .maxTokens(MAX_STREAM_TOKENS)
+                        .build();
+                sample.sent();
+                tracked.sent();
+                ResponseHandle responseHandle = client.chatCompletion(request)
+                        .onPartialResponse(response -> {
+                            String token = deltaText(response);
+                            if (token == null || token.isEmpty() || finished.get()) {
+                                return;
+                            }
+                            generated.append(token);
+                            sample.token();
+                            tracked.token(token.length());
+                            if (callback != null) {
+                                callback.onDelta(token);
+                            }
+                        })
+                        .onComplete(() -> {
+                            if (!finished.compareAndSet(false, true)) {
+                                return;
+                            }
+                            permit.release();
+                            sample.finish(StreamMetrics.OUTCOME_COMPLETE, generated.toString());
+                            tracked.close();
+                            if (callback != null) {
+                                callback.onComplete(generated.toString());
+                            }
+                        })
+                        .onError(error -> {
+                            if (!finished.compareAndSet(false, true)) {
+                                return;
+                            }
+                            permit.release();
+                            sample.finish(StreamMetrics.OUTCOME_ERROR, generated.toString());
+                            tracked.close();
+                            log.error("Error streaming {}", stream, error);
+                            if (callback != null) {
+                                callback.onError(error);
+                            }
+                        })
+                        .execute();
+                streamHandle.onCancel(() -> {
+                    if (!finished.compareAndSet(false, true)) {
+                        return;
+                    }
+                    responseHandle.cancel();
+                    permit.release();
+                    terminated(stream, streamHandle, sample, tracked, expectedTokens, generated.toString(), callback);
+                });
+            } catch (Exception e) {
+                if (!finished.compareAndSet(false, true)) {
+                    return;
+                }
+                permit.release();
+                sample.finish(StreamMetrics.OUTCOME_ERROR, null);
+                tracked.close();
+                log.error("Error starting {} stream", stream, e);
+                if (callback != null) {
+                    callback.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 流被句柄终止：普通取消回调 onCancelled；{@link StreamHandle#fail} 终止（空闲超时等）回调 onError
+     */
+    private static void terminated(String stream, StreamHandle handle, StreamMetrics.Sample sample,
+                                   StreamSupervisor.Tracked tracked, int expectedTokens, String partial,
+                                   StreamCallback callback) {
+        tracked.close();
+        Throwable failure = handle.getFailure();
+        if (failure != null) {
+            sample.finish(StreamMetrics.OUTCOME_ERROR, partial);
+            log.warn("Terminated {} stream after {} chars: {}", stream, partial.length(), failure.getMessage());
+            if (callback != null) {
+                callback.onError(failure);
+            }
+            return;
+        }
+        sample.cancelled(expectedTokens, partial);
+        log.info("Cancelled {} stream after {} chars", stream, partial.length());
+        if (callback != null) {
+            callback.onCancelled(partial);
+        }
+    }
+
+    private static String deltaText(ChatCompletionResponse response) {
+        if (response.choices() == null || response.choices().isEmpty()) {
+            return null;
         }
+        Delta delta = response.choices().get(0).delta();
+        return delta != null ? delta.content() : null;
     }
 }
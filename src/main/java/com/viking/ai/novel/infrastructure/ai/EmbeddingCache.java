@@ -0,0 +1,266 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import dev.langchain4j.data.embedding.Embedding;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 向量缓存：以「模型名 + 维度 + 文本哈希」为键缓存 embedding 结果，
+ * 未修改的文本（重复保存的章节、重复的 RAG 查询）不会再次请求嵌入接口。
+ * <p>
+ * 内存层为 LRU；配置 ai.embedding-cache.disk-dir 后启用磁盘层，重启后仍可命中。
+ * 磁盘层命中时刷新文件修改时间，定时清理超过 disk-max-age-days 未访问的文件，
+ * 文件数超过 disk-max-entries 时再按最久未访问淘汰。
+ */
+@Component
+@Slf4j
+public class EmbeddingCache {
+
+    private final Cache<String, float[]> memory;
+    private final Path diskDir;
+    private final long diskMaxEntries;
+    private final long diskMaxAgeDays;
+    private final Counter hits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "embedding-cache-pruner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public EmbeddingCache(MeterRegistry meterRegistry,
+                          @Value("${ai.embedding-cache.max-size:10000}") long maxSize,
+                          @Value("${ai.embedding-cache.disk-dir:}") String diskDir,
+                          @Value("${ai.embedding-cache.disk-max-entries:200000}") long diskMaxEntries,
+                          @Value("${ai.embedding-cache.disk-max-age-days:30}") long diskMaxAgeDays) {
+        this.diskMaxEntries = diskMaxEntries;
+        this.diskMaxAgeDays = diskMaxAgeDays;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "ai.embedding.cache.memory");
+        this.diskDir = diskDir == null || diskDir.isBlank() ? null : Paths.get(diskDir);
+        this.hits = lookupCounter(meterRegistry, "memory_hit");
+        this.diskHits = lookupCounter(meterRegistry, "disk_hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        if (this.diskDir != null) {
+            log.info("Embedding disk cache enabled at {}", this.diskDir.toAbsolutePath());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (diskDir != null) {
+            scheduler.scheduleWithFixedDelay(this::pruneDisk, 1, 60, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai.embedding.cache.lookups")
+                .description("Embedding cache lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 异步批量获取：全部命中缓存时立即完成；否则在 executor 上执行 loader
+     */
+    public CompletableFuture<List<Embedding>> getAllAsync(String modelName, int dimension, List<String> texts,
+                                                          Function<List<String>, List<Embedding>> loader,
+                                                          Executor executor) {
+        Embedding[] result = new Embedding[texts.size()];
+        List<String> missingKeys = new ArrayList<>();
+        List<String> missingTexts = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = key(modelName, dimension, texts.get(i));
+            float[] vector = memory.getIfPresent(key);
+            if (vector != null) {
+                hits.increment();
+            } else if ((vector = readDisk(key)) != null) {
+                diskHits.increment();
+                memory.put(key, vector);
+            }
+            if (vector != null) {
+                result[i] = Embedding.from(vector);
+            } else {
+                missingKeys.add(key);
+                missingTexts.add(texts.get(i));
+                missingIndexes.add(i);
+            }
+        }
+        if (missingTexts.isEmpty()) {
+            return CompletableFuture.completedFuture(Arrays.asList(result));
+        }
+        misses.increment(missingTexts.size());
+        return CompletableFuture.supplyAsync(() -> loader.apply(missingTexts), executor)
+                .thenApply(loaded -> {
+                    if (loaded.size() != missingTexts.size()) {
+                        throw new IllegalStateException("Embedding count mismatch: expected "
+                                + missingTexts.size() + ", got " + loaded.size());
+                    }
+                    for (int i = 0; i < loaded.size(); i++) {
+                        put(missingKeys.get(i), loaded.get(i).vector());
+                        result[missingIndexes.get(i)] = loaded.get(i);
+                    }
+                    return Arrays.asList(result);
+                });
+    }
+
+    /**
+     * 清理磁盘层：删除超过最大闲置天数的文件，文件数仍超过上限时删除最久未访问的文件；返回删除的文件数
+     */
+    public int pruneDisk() {
+        if (diskDir == null || !Files.isDirectory(diskDir)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(diskDir, 2)) {
+            files = walk.filter(p -> p.getFileName().toString().endsWith(".vec")).toList();
+        } catch (IOException e) {
+            log.warn("Failed to list embedding cache dir {}", diskDir, e);
+            return 0;
+        }
+        Instant expireBefore = diskMaxAgeDays > 0 ? Instant.now().minus(diskMaxAgeDays, ChronoUnit.DAYS) : null;
+        List<Path> kept = new ArrayList<>();
+        List<FileTime> keptTimes = new ArrayList<>();
+        int deleted = 0;
+        for (Path file : files) {
+            try {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (expireBefore != null && modified.toInstant().isBefore(expireBefore)) {
+                    deleted += Files.deleteIfExists(file) ? 1 : 0;
+                } else {
+                    kept.add(file);
+                    keptTimes.add(modified);
+                }
+            } catch (IOException e) {
+                // 并发删除等，忽略
+            }
+        }
+        if (diskMaxEntries > 0 && kept.size() > diskMaxEntries) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < kept.size(); i++) {
+                order.add(i);
+            }
+            order.sort(Comparator.comparing(keptTimes::get));
+            for (int i = 0; i < kept.size() - diskMaxEntries; i++) {
+                try {
+                    deleted += Files.deleteIfExists(kept.get(order.get(i))) ? 1 : 0;
+                } catch (IOException e) {
+                    log.warn("Failed to delete embedding cache file {}", kept.get(order.get(i)), e);
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("Pruned {} embedding cache files from {}", deleted, diskDir);
+        }
+        return deleted;
+    }
+
+    static String key(String modelName, int dimension, String text) {
+        return BasicUtils.sha256Hex(modelName + "\n" + dimension + "\n" + BasicUtils.sha256Hex(text));
+    }
+
+    private void put(String key, float[] vector) {
+        memory.put(key, vector);
+        writeDisk(key, vector);
+    }
+
+    private Path diskPath(String key) {
+        // 按前两位分目录，避免单目录文件过多
+        return diskDir.resolve(key.substring(0, 2)).resolve(key + ".vec");
+    }
+
+    private float[] readDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(in)) {
+            float[] vector = new float[data.readInt()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = data.readFloat();
+            }
+            touch(path);
+            return vector;
+        } catch (IOException e) {
+            log.warn("Failed to read embedding cache file {}", path, e);
+            return null;
+        }
+    }
+
+    private void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // 清理时可能已删除，忽略
+        }
+    }
+
+    private void writeDisk(String key, float[] vector) {
+        if (diskDir == null) {
+            return;
+        }
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            // 先写临时文件再原子替换，避免并发读到半个文件
+            Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp);
+                 DataOutputStream data = new DataOutputStream(out)) {
+                data.writeInt(vector.length);
+                for (float v : vector) {
+                    data.writeFloat(v);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write embedding cache file {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.infrastructure.config.FairSharePolicy;
+import com.viking.ai.novel.infrastructure.config.WeightedFairQueue;
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * 大模型调用准入控制：按 (modelUrl, apiKey) 限制并发数与 token 速率，
+ * 超出部分按用户加权公平排队，避免单个用户占满端点配额，也避免触发服务商 429。
+ * <p>
+ * 交互式请求（WebSocket 流）先于后台请求（批量生成、摘要）放行，后台请求不占用为交互式请求预留的名额；
+ * 用户权重与每用户并发上限见 {@link FairSharePolicy}。
+ */
+@Component
+@Slf4j
+public class ModelAdmissionController {
+
+    private final int maxConcurrentPerEndpoint;
+    private final int tokensPerMinute;
+    private final long maxWaitSeconds;
+    private final FairSharePolicy policy;
+
+    private final Map<String, EndpointGate> gates = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "model-admission-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ModelAdmissionController(int maxConcurrentPerEndpoint, int tokensPerMinute, long maxWaitSeconds) {
+        this(maxConcurrentPerEndpoint, tokensPerMinute, maxWaitSeconds, FairSharePolicy.UNRESTRICTED);
+    }
+
+    @Autowired
+    public ModelAdmissionController(@Value("${ai.admission.max-concurrent-per-endpoint:4}") int maxConcurrentPerEndpoint,
+                                    @Value("${ai.admission.tokens-per-minute:0}") int tokensPerMinute,
+                                    @Value("${ai.admission.max-wait-seconds:600}") long maxWaitSeconds,
+                                    FairSharePolicy policy) {
+        this.maxConcurrentPerEndpoint = Math.max(1, maxConcurrentPerEndpoint);
+        this.tokensPerMinute = tokensPerMinute;
+        this.maxWaitSeconds = maxWaitSeconds;
+        this.policy = policy;
+    }
+
+    /**
+     * 准入许可：调用结束（完成、出错、取消）后必须 release，重复 release 无副作用
+     */
+    public static final class Permit {
+        private final EndpointGate gate;
+        private final Waiter waiter;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(EndpointGate gate, Waiter waiter) {
+            this.gate = gate;
+            this.waiter = waiter;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                gate.release(waiter);
+            }
+        }
+    }
+
+    /**
+     * 异步申请许可。排队期间通过 onQueued 回调当前排队位置（从 1 开始）。
+     *
+     * @param estimatedTokens 本次调用预计消耗的 token 数，用于速率限制
+     */
+    public CompletableFuture<Permit> acquire(UserModel model, int estimatedTokens, IntConsumer onQueued) {
+        return acquire(model, estimatedTokens, onQueued, PriorityClassEnum.INTERACTIVE);
+    }
+
+    public CompletableFuture<Permit> acquire(UserModel model, int estimatedTokens, IntConsumer onQueued,
+                                             PriorityClassEnum priority) {
+        EndpointGate gate = gates.computeIfAbsent(endpointKey(model), k -> new EndpointGate());
+        Waiter waiter = new Waiter(model.getUserId(), estimatedTokens, onQueued, priority);
+        gate.enqueue(waiter);
+        return waiter.future;
+    }
+
+    /**
+     * 同步申请许可（用于摘要等非流式调用，按后台请求排队），超过最大等待时间抛出异常
+     */
+    public Permit acquireBlocking(UserModel model, int estimatedTokens) {
+        CompletableFuture<Permit> future = acquire(model, estimatedTokens, null, PriorityClassEnum.BACKGROUND);
+        try {
+            return future.get(maxWaitSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new RuntimeException("模型调用排队超时，请稍后重试");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("模型调用排队被中断", e);
+        } catch (Exception e) {
+            throw new RuntimeException("模型调用准入失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static String endpointKey(UserModel model) {
+        return BasicUtils.sha256Hex(model.getModelUrl() + "\n" + model.getApiKey());
+    }
+
+    private static final class Waiter {
+        final Long userId;
+        final int tokens;
+        final IntConsumer onQueued;
+        final PriorityClassEnum priority;
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+        int lastReportedPosition;
+
+        Waiter(Long userId, int tokens, IntConsumer onQueued, PriorityClassEnum priority) {
+            this.userId = userId;
+            this.tokens = tokens;
+            this.onQueued = onQueued;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * 单个端点的闸门：并发计数 + 令牌桶 + 按用户加权公平、分优先级的等待队列
+     */
+    private final class EndpointGate {
+        private int inFlight;
+        private int inFlightBackground;
+        private final Map<Long, Integer> inFlightPerUser = new HashMap<>();
+        private double availableTokens = tokensPerMinute;
+        private long lastRefillNanos = System.nanoTime();
+        private boolean retryScheduled;
+        private final WeightedFairQueue<Waiter> queue = new WeightedFairQueue<>(policy::weight);
+
+        void enqueue(Waiter waiter) {
+            synchronized (this) {
+                queue.add(waiter.userId, waiter.priority, waiter);
+            }
+            dispatch();
+        }
+
+        void release(Waiter waiter) {
+            synchronized (this) {
+                inFlight--;
+                inFlightPerUser.computeIfPresent(waiter.userId, (k, v) -> v > 1 ? v - 1 : null);
+                if (waiter.priority == PriorityClassEnum.BACKGROUND) {
+                    inFlightBackground--;
+                }
+            }
+            dispatch();
+        }
+
+        private void dispatch() {
+            List<Waiter> admitted = new ArrayList<>();
+            List<Waiter> queued = new ArrayList<>();
+            synchronized (this) {
+                refill();
+                // 已取消（如同步等待超时）的请求直接丢弃
+                queue.removeIf(w -> w.future.isDone());
+                while (inFlight < maxConcurrentPerEndpoint && !queue.isEmpty()) {
+                    Waiter next = queue.peek(this::admissible);
+                    if (next == null) {
+                        break;
+                    }
+                    double cost = tokenCost(next);
+                    if (tokensPerMinute > 0 && availableTokens < cost) {
+                        scheduleRetry(cost - availableTokens);
+                        break;
+                    }
+                    queue.poll(this::admissible);
+                    if (tokensPerMinute > 0) {
+                        availableTokens -= cost;
+                    }
+                    inFlight++;
+                    inFlightPerUser.merge(next.userId, 1, Integer::sum);
+                    if (next.priority == PriorityClassEnum.BACKGROUND) {
+                        inFlightBackground++;
+                    }
+                    admitted.add(next);
+                }
+                collectPositions(queued);
+            }
+            for (Waiter waiter : admitted) {
+                if (!waiter.future.complete(new Permit(this, waiter))) {
+                    // 等待方已放弃，归还并发名额
+                    release(waiter);
+                }
+            }
+            for (Waiter waiter : queued) {
+                try {
+                    waiter.onQueued.accept(waiter.lastReportedPosition);
+                } catch (Exception e) {
+                    log.warn("Failed to report queue position", e);
+                }
+            }
+        }
+
+        /**
+         * 后台请求不占用为交互式请求预留的名额；每用户并发上限对两类请求都生效
+         */
+        private boolean admissible(Long userId, PriorityClassEnum priority) {
+            int cap = policy.getMaxStreamsPerUser();
+            if (cap > 0 && inFlightPerUser.getOrDefault(userId, 0) >= cap) {
+                return false;
+            }
+            return priority == PriorityClassEnum.INTERACTIVE
+                    || inFlightBackground < policy.backgroundLimit(maxConcurrentPerEndpoint);
+        }
+
+        /**
+         * 按放行顺序计算每个等待请求的排队位置（从 1 开始），只回调位置有变化的请求
+         */
+        private void collectPositions(List<Waiter> changed) {
+            int position = 0;
+            for (Waiter waiter : queue.inOrder()) {
+                position++;
+                if (waiter.onQueued != null && position != waiter.lastReportedPosition) {
+                    waiter.lastReportedPosition = position;
+                    changed.add(waiter);
+                }
+            }
+        }
+
+        private double tokenCost(Waiter waiter) {
+            // 单次请求不超过桶容量，避免大请求永远无法放行
+            return Math.min(Math.max(waiter.tokens, 1), tokensPerMinute);
+        }
+
+        private void refill() {
+            if (tokensPerMinute <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            double refill = (now - lastRefillNanos) / 60_000_000_000.0 * tokensPerMinute;
+            availableTokens = Math.min(tokensPerMinute, availableTokens + refill);
+            lastRefillNanos = now;
+        }
+
+        private void scheduleRetry(double deficit) {
+            if (retryScheduled) {
+                return;
+            }
+            retryScheduled = true;
+            long delayMillis = Math.max(50, (long) Math.ceil(deficit / tokensPerMinute * 60_000));
+            scheduler.schedule(() -> {
+                synchronized (this) {
+                    retryScheduled = false;
+                }
+                dispatch();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
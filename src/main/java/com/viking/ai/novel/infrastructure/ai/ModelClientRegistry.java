@@ -0,0 +1,96 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * 模型客户端注册表：按 UserModel 配置（url、key、模型名、温度）的哈希缓存已构建的模型实例，
+ * 复用其内部 HTTP 连接池，避免每次生成都重新建连、握手。
+ * <p>
+ * 缓存有容量上限与空闲过期；用户修改模型配置时由 UserModelService 显式失效。
+ */
+@Component
+@Slf4j
+public class ModelClientRegistry {
+
+    /**
+     * 客户端种类：同一份配置会分别构建对话、流式对话、嵌入三种客户端
+     */
+    public enum Kind {
+        CHAT, STREAMING_CHAT, EMBEDDING
+    }
+
+    private record ClientKey(Kind kind, String configHash) {
+    }
+
+    private final Cache<ClientKey, Object> clients;
+    private final MeterRegistry meterRegistry;
+
+    public ModelClientRegistry(MeterRegistry meterRegistry,
+                               @Value("${ai.model-client.max-size:500}") long maxSize,
+                               @Value("${ai.model-client.idle-timeout-minutes:30}") long idleTimeoutMinutes) {
+        this.meterRegistry = meterRegistry;
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofMinutes(idleTimeoutMinutes))
+                .recordStats()
+                .removalListener((ClientKey key, Object client, RemovalCause cause) ->
+                        log.debug("Model client evicted: kind={}, cause={}", key != null ? key.kind() : null, cause))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, clients, "ai.model.clients");
+    }
+
+    /**
+     * 获取缓存的客户端，不存在时通过 factory 构建并记录构建耗时
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Kind kind, UserModel model, double temperature, Supplier<T> factory) {
+        ClientKey key = new ClientKey(kind, configHash(model, temperature));
+        return (T) clients.get(key, k -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            T client = factory.get();
+            sample.stop(Timer.builder("ai.model.client.build")
+                    .description("Time spent building a model client")
+                    .tag("kind", kind.name().toLowerCase())
+                    .register(meterRegistry));
+            log.info("Built new {} model client for model {}", kind, model.getModelName());
+            return client;
+        });
+    }
+
+    /**
+     * 使某份配置对应的全部客户端失效（配置被修改或删除时调用）
+     */
+    public void invalidate(UserModel model, double temperature) {
+        String hash = configHash(model, temperature);
+        for (Kind kind : Kind.values()) {
+            clients.invalidate(new ClientKey(kind, hash));
+        }
+        log.info("Invalidated model clients for userId={}, type={}", model.getUserId(), model.getType());
+    }
+
+    public long size() {
+        return clients.estimatedSize();
+    }
+
+    static String configHash(UserModel model, double temperature) {
+        String raw = String.join("\n",
+                String.valueOf(model.getModelUrl()),
+                String.valueOf(model.getApiKey()),
+                String.valueOf(model.getModelName()),
+                String.valueOf(temperature));
+        return BasicUtils.sha256Hex(raw);
+    }
+}
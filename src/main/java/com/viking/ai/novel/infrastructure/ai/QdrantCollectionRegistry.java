@@ -0,0 +1,165 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Collections;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已知集合注册表：缓存确认存在的集合名，避免每次读写前都 listCollections 一次。
+ * <p>
+ * 缺失的集合按名合并并发请求、只创建一次；集合在外部被删除时，调用方遇到 NOT_FOUND 后
+ * 通过 {@link #invalidate(String)} 移除缓存，下次访问重新确认。
+ */
+@Slf4j
+public class QdrantCollectionRegistry {
+
+    private static final List<String> INDEXED_FIELDS = List.of(
+            VectorScope.KEY_USER_ID, VectorScope.KEY_NOVEL_ID, VectorScope.KEY_CHAPTER_ID, VectorScope.KEY_KIND);
+
+    private final QdrantClient qdrantClient;
+    private final int vectorSize;
+
+    private final Set<String> knownCollections = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile Instant lastInvalidation;
+
+    public QdrantCollectionRegistry(QdrantClient qdrantClient, int vectorSize) {
+        this.qdrantClient = qdrantClient;
+        this.vectorSize = vectorSize;
+    }
+
+    /**
+     * 确保集合存在，如果不存在则创建；已确认过的集合直接返回，不访问 Qdrant
+     */
+    public void ensureExists(String collectionName) {
+        ensureExistsAsync(collectionName).join();
+    }
+
+    /**
+     * 异步确保集合存在。同名集合并发确认时共用同一个 future，缺失的集合只会被创建一次
+     */
+    public CompletableFuture<Void> ensureExistsAsync(String collectionName) {
+        if (knownCollections.contains(collectionName)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pending.putIfAbsent(collectionName, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (knownCollections.contains(collectionName)) {
+            pending.remove(collectionName, created);
+            created.complete(null);
+            return created;
+        }
+        lookups.incrementAndGet();
+        GrpcFutures.toCompletable(qdrantClient.collectionExistsAsync(collectionName))
+                .thenCompose(exists -> exists ? CompletableFuture.<Void>completedFuture(null) : create(collectionName))
+                .whenComplete((v, e) -> {
+                    if (e == null || isAlreadyExists(e)) {
+                        // 其他实例并发创建了同名集合也视为成功
+                        knownCollections.add(collectionName);
+                        pending.remove(collectionName, created);
+                        created.complete(null);
+                    } else {
+                        log.error("Error ensuring collection {} exists", collectionName, e);
+                        pending.remove(collectionName, created);
+                        created.completeExceptionally(
+                                new RuntimeException("Failed to ensure collection exists: " + collectionName, e));
+                    }
+                });
+        return created;
+    }
+
+    private CompletableFuture<Void> create(String collectionName) {
+        log.info("Collection {} does not exist, creating...", collectionName);
+        Collections.VectorParams vectorParams = Collections.VectorParams.newBuilder()
+                .setSize(vectorSize)
+                .setDistance(Collections.Distance.Cosine)
+                .build();
+        Collections.CreateCollection createCollection = Collections.CreateCollection.newBuilder()
+                .setCollectionName(collectionName)
+                .setVectorsConfig(Collections.VectorsConfig.newBuilder()
+                        .setParams(vectorParams)
+                        .build())
+                .build();
+        CompletableFuture<?> future = GrpcFutures.toCompletable(qdrantClient.createCollectionAsync(createCollection));
+        // 范围字段建立 payload 索引，shared 布局下按用户/小说过滤检索依赖这些索引
+        for (String field : INDEXED_FIELDS) {
+            future = future.thenCompose(r -> GrpcFutures.toCompletable(qdrantClient.createPayloadIndexAsync(
+                    collectionName, field, Collections.PayloadSchemaType.Keyword, null, true, null, null)));
+        }
+        return future.thenRun(() -> {
+            createdCount.incrementAndGet();
+            log.info("Collection {} created successfully", collectionName);
+        });
+    }
+
+    /**
+     * 移除缓存的集合名（集合被删除或访问返回 NOT_FOUND 时调用）
+     */
+    public void invalidate(String collectionName) {
+        if (knownCollections.remove(collectionName)) {
+            invalidations.incrementAndGet();
+            lastInvalidation = Instant.now();
+            log.info("Collection {} removed from known-collection cache", collectionName);
+        }
+    }
+
+    /**
+     * 判断异常链中是否包含 gRPC NOT_FOUND
+     */
+    public static boolean isNotFound(Throwable t) {
+        return hasStatus(t, Status.Code.NOT_FOUND);
+    }
+
+    private static boolean isAlreadyExists(Throwable t) {
+        if (hasStatus(t, Status.Code.ALREADY_EXISTS)) {
+            return true;
+        }
+        // 部分 Qdrant 版本以 INVALID_ARGUMENT + "already exists" 返回
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c.getMessage() != null && c.getMessage().contains("already exists")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasStatus(Throwable t, Status.Code code) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof StatusRuntimeException e && e.getStatus().getCode() == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存状态快照（供 actuator 查看）
+     */
+    public Map<String, Object> snapshot() {
+        return Map.of(
+                "knownCollections", new TreeSet<>(knownCollections),
+                "size", knownCollections.size(),
+                "lookups", lookups.get(),
+                "created", createdCount.get(),
+                "pending", pending.size(),
+                "invalidations", invalidations.get(),
+                "lastInvalidation", lastInvalidation == null ? "" : lastInvalidation.toString());
+    }
+}
@@ -0,0 +1,33 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * actuator 端点：查看已知集合缓存状态，或手动移除某个集合的缓存
+ * <p>
+ * GET /actuator/qdrantcollections；DELETE /actuator/qdrantcollections/{name}
+ */
+@Component
+@Endpoint(id = "qdrantcollections")
+@RequiredArgsConstructor
+public class QdrantCollectionsEndpoint {
+
+    private final QdrantService qdrantService;
+
+    @ReadOperation
+    public Map<String, Object> collections() {
+        return qdrantService.getCollectionRegistry().snapshot();
+    }
+
+    @DeleteOperation
+    public void invalidate(@Selector String name) {
+        qdrantService.getCollectionRegistry().invalidate(name);
+    }
+}
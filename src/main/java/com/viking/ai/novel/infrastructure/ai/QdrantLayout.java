@@ -0,0 +1,89 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import dev.langchain4j.data.document.Metadata;
+import io.qdrant.client.grpc.Points;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static io.qdrant.client.ConditionFactory.matchKeyword;
+
+/**
+ * 向量存储布局：
+ * <ul>
+ *     <li>per-novel：每个 (userId, novelId) 一个集合（原有布局）</li>
+ *     <li>shared：所有用户共用一个（或按 userId 分片的若干个）集合，按 payload 中的 userId/novelId/kind 过滤</li>
+ * </ul>
+ * 两种布局写入的 payload 相同，便于从 per-novel 迁移到 shared。
+ */
+@Component
+public class QdrantLayout {
+
+    public static final String PER_NOVEL = "per-novel";
+    public static final String SHARED = "shared";
+
+    private final boolean shared;
+    private final String sharedCollectionName;
+    private final int shards;
+
+    public QdrantLayout(@Value("${qdrant.layout:per-novel}") String layout,
+                        @Value("${qdrant.shared.collection-name:novel-vectors}") String sharedCollectionName,
+                        @Value("${qdrant.shared.shards:1}") int shards) {
+        if (!PER_NOVEL.equals(layout) && !SHARED.equals(layout)) {
+            throw new IllegalArgumentException("Unknown qdrant.layout: " + layout);
+        }
+        this.shared = SHARED.equals(layout);
+        this.sharedCollectionName = sharedCollectionName;
+        this.shards = Math.max(1, shards);
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * 范围所在的集合
+     */
+    public String collectionOf(VectorScope scope) {
+        return shared ? sharedCollectionOf(scope.userId()) : BasicUtils.getCollectionName(scope.userId(), scope.novelId());
+    }
+
+    /**
+     * shared 布局下用户所在的集合（按 userId 取模分片）
+     */
+    public String sharedCollectionOf(Long userId) {
+        if (shards == 1) {
+            return sharedCollectionName;
+        }
+        return sharedCollectionName + "-" + Math.floorMod(userId, shards);
+    }
+
+    /**
+     * 检索时的 payload 过滤条件；per-novel 布局下集合本身已限定范围，返回 null
+     */
+    public Points.Filter filterOf(VectorScope scope) {
+        if (!shared) {
+            return null;
+        }
+        Points.Filter.Builder filter = Points.Filter.newBuilder()
+                .addMust(matchKeyword(VectorScope.KEY_USER_ID, String.valueOf(scope.userId())))
+                .addMust(matchKeyword(VectorScope.KEY_KIND, scope.kind()));
+        if (!scope.isLibrary()) {
+            filter.addMust(matchKeyword(VectorScope.KEY_NOVEL_ID, String.valueOf(scope.novelId())));
+        }
+        return filter.build();
+    }
+
+    /**
+     * 写入时附带的范围 payload
+     */
+    public Metadata metadataOf(VectorScope scope) {
+        Metadata metadata = new Metadata()
+                .put(VectorScope.KEY_USER_ID, scope.userId())
+                .put(VectorScope.KEY_KIND, scope.kind());
+        if (!scope.isLibrary()) {
+            metadata.put(VectorScope.KEY_NOVEL_ID, scope.novelId());
+        }
+        return metadata;
+    }
+}
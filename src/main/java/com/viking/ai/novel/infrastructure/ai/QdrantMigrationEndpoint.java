@@ -0,0 +1,34 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * actuator 端点：per-novel 集合迁移到 shared 布局
+ * <p>
+ * GET /actuator/qdrantmigration 查看进度；POST /actuator/qdrantmigration {"deleteSource": false} 启动迁移
+ */
+@Component
+@Endpoint(id = "qdrantmigration")
+@RequiredArgsConstructor
+public class QdrantMigrationEndpoint {
+
+    private final QdrantMigrationJob migrationJob;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return migrationJob.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> migrate(@Nullable Boolean deleteSource) {
+        migrationJob.start(Boolean.TRUE.equals(deleteSource));
+        return migrationJob.status();
+    }
+}
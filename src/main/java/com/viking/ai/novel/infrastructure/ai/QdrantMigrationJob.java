@@ -0,0 +1,193 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.ValueFactory;
+import io.qdrant.client.VectorsFactory;
+import io.qdrant.client.WithPayloadSelectorFactory;
+import io.qdrant.client.WithVectorsSelectorFactory;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 向量布局迁移：把 per-novel 布局下的 novel-chapters-{userId}-{novelId|null} 集合
+ * 逐个滚动读出，补齐 userId/novelId/kind payload 后写入 shared 布局的集合。
+ * <p>
+ * 点 ID 保持不变，章节上记录的 chunkIds 无需修改；可选在迁移成功后删除源集合。
+ * 仅在 qdrant.layout=shared 时可执行，重复执行是幂等的（upsert 覆盖同 ID 的点）。
+ */
+@Component
+@Slf4j
+public class QdrantMigrationJob {
+
+    private static final Pattern SOURCE_COLLECTION = Pattern.compile("^novel-chapters-(\\d+)-(\\d+|null)$");
+
+    private final QdrantClient qdrantClient;
+    private final QdrantLayout qdrantLayout;
+    private final QdrantService qdrantService;
+    private final Executor taskExecutor;
+
+    @Value("${qdrant.migration.batch-size:256}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong migratedCollections = new AtomicLong();
+    private final AtomicLong migratedPoints = new AtomicLong();
+    private final List<String> failedCollections = new ArrayList<>();
+    private volatile String currentCollection;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String lastError;
+
+    public QdrantMigrationJob(QdrantClient qdrantClient,
+                              QdrantLayout qdrantLayout,
+                              QdrantService qdrantService,
+                              @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.qdrantClient = qdrantClient;
+        this.qdrantLayout = qdrantLayout;
+        this.qdrantService = qdrantService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * 启动迁移并提交到 taskExecutor 异步执行；已有迁移在运行、布局不是 shared 或提交失败时返回 false，
+     * 提交失败时运行标记随即复位，可以再次启动
+     */
+    public boolean start(boolean deleteSource) {
+        if (!qdrantLayout.isShared()) {
+            log.warn("Qdrant migration requires qdrant.layout=shared");
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        migratedCollections.set(0);
+        migratedPoints.set(0);
+        synchronized (failedCollections) {
+            failedCollections.clear();
+        }
+        startedAt = Instant.now();
+        finishedAt = null;
+        lastError = null;
+        try {
+            taskExecutor.execute(() -> run(deleteSource));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to submit Qdrant migration", e);
+            lastError = e.getMessage();
+            finishedAt = Instant.now();
+            running.set(false);
+            return false;
+        }
+    }
+
+    private void run(boolean deleteSource) {
+        try {
+            List<String> collections = qdrantClient.listCollectionsAsync().get();
+            for (String collection : collections) {
+                Matcher matcher = SOURCE_COLLECTION.matcher(collection);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                Long userId = Long.parseLong(matcher.group(1));
+                Long novelId = "null".equals(matcher.group(2)) ? null : Long.parseLong(matcher.group(2));
+                currentCollection = collection;
+                try {
+                    migrateCollection(collection, new VectorScope(userId, novelId), deleteSource);
+                    migratedCollections.incrementAndGet();
+                } catch (Exception e) {
+                    log.error("Failed to migrate collection {}", collection, e);
+                    lastError = collection + ": " + e.getMessage();
+                    synchronized (failedCollections) {
+                        failedCollections.add(collection);
+                    }
+                }
+            }
+            log.info("Qdrant migration finished: {} collections, {} points",
+                    migratedCollections.get(), migratedPoints.get());
+        } catch (Exception e) {
+            log.error("Qdrant migration aborted", e);
+            lastError = e.getMessage();
+        } finally {
+            currentCollection = null;
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void migrateCollection(String source, VectorScope scope, boolean deleteSource) throws Exception {
+        String target = qdrantLayout.collectionOf(scope);
+        qdrantService.getCollectionRegistry().ensureExists(target);
+        Map<String, JsonWithInt.Value> scopePayload = new LinkedHashMap<>();
+        qdrantLayout.metadataOf(scope).asMap().forEach((k, v) -> scopePayload.put(k, ValueFactory.value(v)));
+
+        Points.PointId offset = null;
+        long count = 0;
+        do {
+            Points.ScrollPoints.Builder request = Points.ScrollPoints.newBuilder()
+                    .setCollectionName(source)
+                    .setLimit(batchSize)
+                    .setWithPayload(WithPayloadSelectorFactory.enable(true))
+                    .setWithVectors(WithVectorsSelectorFactory.enable(true));
+            if (offset != null) {
+                request.setOffset(offset);
+            }
+            Points.ScrollResponse response = qdrantClient.scrollAsync(request.build()).get();
+            List<Points.PointStruct> points = new ArrayList<>(response.getResultCount());
+            for (Points.RetrievedPoint point : response.getResultList()) {
+                points.add(Points.PointStruct.newBuilder()
+                        .setId(point.getId())
+                        .setVectors(VectorsFactory.vectors(point.getVectors().getVector().getDataList()))
+                        .putAllPayload(point.getPayloadMap())
+                        .putAllPayload(scopePayload)
+                        .build());
+            }
+            if (!points.isEmpty()) {
+                qdrantClient.upsertAsync(target, points).get();
+                count += points.size();
+                migratedPoints.addAndGet(points.size());
+            }
+            offset = response.hasNextPageOffset() ? response.getNextPageOffset() : null;
+        } while (offset != null);
+
+        log.info("Migrated {} points from {} to {}", count, source, target);
+        if (deleteSource) {
+            qdrantClient.deleteCollectionAsync(source).get();
+            qdrantService.getCollectionRegistry().invalidate(source);
+            log.info("Deleted source collection {}", source);
+        }
+    }
+
+    /**
+     * 迁移状态快照（供 actuator 查看）
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("layout", qdrantLayout.isShared() ? QdrantLayout.SHARED : QdrantLayout.PER_NOVEL);
+        status.put("running", running.get());
+        status.put("currentCollection", currentCollection);
+        status.put("migratedCollections", migratedCollections.get());
+        status.put("migratedPoints", migratedPoints.get());
+        synchronized (failedCollections) {
+            status.put("failedCollections", List.copyOf(failedCollections));
+        }
+        status.put("startedAt", startedAt == null ? null : startedAt.toString());
+        status.put("finishedAt", finishedAt == null ? null : finishedAt.toString());
+        status.put("lastError", lastError);
+        return status;
+    }
+}
@@ -1,184 +1,319 @@
 package com.viking.ai.novel.infrastructure.ai;
 
+import com.viking.ai.novel.domain.model.Chapter;
 import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.qdrant.QdrantEmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import io.qdrant.client.PointIdFactory;
 import io.qdrant.client.QdrantClient;
-import io.qdrant.client.QdrantGrpcClient;
-import io.qdrant.client.grpc.Collections;
+import io.qdrant.client.ValueFactory;
+import io.qdrant.client.VectorsFactory;
+import io.qdrant.client.WithPayloadSelectorFactory;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
+/**
+ * 向量库服务：所有操作以 CompletableFuture 组合，直接建立在 QdrantClient 的 gRPC 异步调用之上；
+ * embedding 计算在独立的有界线程池中执行，缓存命中时不占用线程。
+ * <p>
+ * 以 Async 结尾的方法不阻塞调用线程；同名的同步方法只是等待对应的 future，供尚未改造的调用方使用。
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class QdrantService {
-    
-    @Value("${qdrant.host:localhost}")
-    private String qdrantHost;
-    
-    @Value("${qdrant.port:6333}")
-    private int qdrantPort;
 
-    @Value("${qdrant.port:6334}")
-    private int qdrantGrpcPort;
+    private static final Integer size = 1536;
 
-    // 使用 ConcurrentHashMap 来存储不同集合的 EmbeddingStore 实例
-    private final Map<String, EmbeddingStore<TextSegment>> embeddingStoreMap = new ConcurrentHashMap<>();
+    // 与 QdrantEmbeddingStore 写入格式保持一致的文本 payload 键
+    private static final String PAYLOAD_TEXT_KEY = "text_segment";
 
-    private static final Integer size = 1536;
+    @Value("${qdrant.ingest.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${qdrant.ingest.chunk-overlap:80}")
+    private int chunkOverlap;
+
+    @Value("${qdrant.ingest.embed-batch-size:16}")
+    private int embedBatchSize;
+
+    @Value("${ai.embedding.executor-threads:8}")
+    private int embeddingThreads;
 
     @Autowired
     private AiModelService aiModelService;
 
-    // Qdrant gRPC 客户端，用于集合管理
+    @Autowired
+    private EmbeddingCache embeddingCache;
+
+    @Autowired
+    private QdrantLayout qdrantLayout;
+
+    @Autowired
+    private ExecutorFactory executorFactory;
+
+    // 共享的 Qdrant gRPC 客户端（单一 channel），集合管理与向量读写都经由它
+    @Autowired
     private QdrantClient qdrantClient;
 
+    // 已知集合缓存，避免每次读写前都查询集合列表
+    private QdrantCollectionRegistry collectionRegistry;
+
+    // embedding 调用是阻塞的 HTTP 请求，放在独立线程池中执行，不占用调用方线程
+    private ExecutorService embeddingExecutor;
+
     @PostConstruct
     public void init() {
-        try {
-            // 初始化 Qdrant gRPC 客户端
-            QdrantGrpcClient grpcClient = QdrantGrpcClient.newBuilder(qdrantHost, qdrantGrpcPort, false).build();
-            qdrantClient = new QdrantClient(grpcClient);
-            log.info("Qdrant client initialized successfully");
-        } catch (Exception e) {
-            log.error("Failed to initialize Qdrant client", e);
-            throw new RuntimeException("Failed to initialize Qdrant client", e);
-        }
+        collectionRegistry = new QdrantCollectionRegistry(qdrantClient, size);
+        embeddingExecutor = executorFactory.fixed("embedding", embeddingThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        embeddingExecutor.shutdown();
+    }
+
+    public QdrantCollectionRegistry getCollectionRegistry() {
+        return collectionRegistry;
     }
 
     /**
-     * 确保集合存在，如果不存在则创建
+     * 对集合执行异步操作；集合在外部被删除（NOT_FOUND）时刷新已知集合缓存、重新创建后重试一次
      */
-    private void ensureCollectionExists(String collectionName) {
-        try {
-            // 检查集合是否存在
-            List<String> collections = qdrantClient.listCollectionsAsync().get();
-
-            if (!collections.contains(collectionName)) {
-                log.info("Collection {} does not exist, creating...", collectionName);
-
-                // 创建集合配置
-                Collections.VectorParams vectorParams = Collections.VectorParams.newBuilder()
-                        .setSize(size) // 默认向量维度，可以根据实际模型调整
-                        .setDistance(Collections.Distance.Cosine)
-                        .build();
-
-                Collections.CreateCollection.Builder createCollectionBuilder = Collections.CreateCollection.newBuilder()
-                        .setCollectionName(collectionName)
-                        .setVectorsConfig(Collections.VectorsConfig.newBuilder()
-                                .setParams(vectorParams)
-                                .build());
-
-                // 执行创建操作
-                qdrantClient.createCollectionAsync(createCollectionBuilder.build()).get();
-                log.info("Collection {} created successfully", collectionName);
-            } else {
-                log.debug("Collection {} already exists", collectionName);
+    private <T> CompletableFuture<T> withCollection(String collectionName, Supplier<CompletableFuture<T>> operation) {
+        return collectionRegistry.ensureExistsAsync(collectionName)
+                .thenCompose(v -> operation.get())
+                .exceptionallyCompose(e -> {
+                    if (!QdrantCollectionRegistry.isNotFound(e)) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    log.warn("Collection {} not found, refreshing collection cache and retrying", collectionName);
+                    collectionRegistry.invalidate(collectionName);
+                    return collectionRegistry.ensureExistsAsync(collectionName).thenCompose(v -> operation.get());
+                });
+    }
+
+    /**
+     * 计算文本 embedding，相同模型下的相同文本直接命中缓存
+     */
+    private CompletableFuture<Embedding> embedAsync(String text, UserModel model) {
+        return embedAllAsync(List.of(text), model).thenApply(list -> list.get(0));
+    }
+
+    /**
+     * 批量计算 embedding：未命中缓存的文本按 embed-batch-size 分批调用 embedAll
+     */
+    private CompletableFuture<List<Embedding>> embedAllAsync(List<String> texts, UserModel model) {
+        return embeddingCache.getAllAsync(model.getModelName(), size, texts, missing -> {
+            EmbeddingModel embeddingModel = aiModelService.getEmbeddingModel(model);
+            List<Embedding> result = new ArrayList<>(missing.size());
+            for (int i = 0; i < missing.size(); i += embedBatchSize) {
+                List<TextSegment> batch = missing.subList(i, Math.min(missing.size(), i + embedBatchSize))
+                        .stream()
+                        .map(TextSegment::from)
+                        .toList();
+                result.addAll(embeddingModel.embedAll(batch).content());
             }
-        } catch (Exception e) {
-            log.error("Error ensuring collection {} exists", collectionName, e);
-            throw new RuntimeException("Failed to ensure collection exists: " + collectionName, e);
+            return result;
+        }, embeddingExecutor);
+    }
+
+    /**
+     * 批量写入文本片段（单次 upsert），返回各片段的向量ID
+     */
+    public CompletableFuture<List<String>> storeSegmentsAsync(List<TextSegment> segments, UserModel model, VectorScope scope) {
+        if (segments.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
         }
+        String collectionName = qdrantLayout.collectionOf(scope);
+        return embedAllAsync(segments.stream().map(TextSegment::text).toList(), model)
+                .thenCompose(embeddings -> {
+                    List<String> ids = new ArrayList<>(segments.size());
+                    List<Points.PointStruct> points = new ArrayList<>(segments.size());
+                    for (int i = 0; i < segments.size(); i++) {
+                        String id = UUID.randomUUID().toString();
+                        ids.add(id);
+                        points.add(toPoint(id, embeddings.get(i), segments.get(i)));
+                    }
+                    return withCollection(collectionName,
+                            () -> GrpcFutures.toCompletable(qdrantClient.upsertAsync(collectionName, points)))
+                            .thenApply(result -> ids);
+                });
+    }
+
+    private static Points.PointStruct toPoint(String id, Embedding embedding, TextSegment segment) {
+        Points.PointStruct.Builder point = Points.PointStruct.newBuilder()
+                .setId(PointIdFactory.id(UUID.fromString(id)))
+                .setVectors(VectorsFactory.vectors(embedding.vector()))
+                .putPayload(PAYLOAD_TEXT_KEY, ValueFactory.value(segment.text()));
+        segment.metadata().asMap().forEach((key, value) -> point.putPayload(key, ValueFactory.value(value)));
+        return point.build();
     }
-    
-    private EmbeddingStore<TextSegment> getEmbeddingStore(String collectionName) {
-        // 先确保集合存在
-        ensureCollectionExists(collectionName);
-
-        // 使用 computeIfAbsent 确保线程安全的懒加载
-        return embeddingStoreMap.computeIfAbsent(collectionName, name -> {
-            log.info("Creating EmbeddingStore for collection: {}", name);
-            return QdrantEmbeddingStore.builder()
-                    .host(qdrantHost)
-                    .port(qdrantGrpcPort) // REST API 端口
-                    .collectionName(name)
-                    .useTls(false)
-                    .build();
-        });
-    }
-    
+
     /**
      * 存储文本到向量数据库，返回向量ID
      */
-    public String storeText(String content, UserModel model, String collectionName) {
-        EmbeddingModel embeddingModel = aiModelService.getEmbeddingModel(model);
+    public CompletableFuture<String> storeTextAsync(String content, UserModel model, VectorScope scope) {
+        TextSegment segment = TextSegment.from(content, qdrantLayout.metadataOf(scope));
+        return storeSegmentsAsync(List.of(segment), model, scope)
+                .thenApply(ids -> {
+                    log.info("Stored text to Qdrant with vector ID: {}", ids.get(0));
+                    return ids.get(0);
+                });
+    }
 
-        TextSegment segment = TextSegment.from(content);
-        Embedding embedding = embeddingModel.embed(segment).content();
-        String id = getEmbeddingStore(collectionName).add(embedding);
-        log.info("Stored text to Qdrant with vector ID: {}", id);
-        return id;
+    public String storeText(String content, UserModel model, VectorScope scope) {
+        return join(storeTextAsync(content, model, scope), "Failed to store text to Qdrant");
     }
-    
+
     /**
-     * 存储章节内容到向量数据库
+     * 分块存储章节内容到向量数据库：按重叠窗口切块、批量 embedAll、单次批量写入，返回各块的向量ID
      */
-    public String storeChapter(String chapterId, String content, UserModel model, String collectionName) {
-        try {
-            EmbeddingModel embeddingModel = aiModelService.getEmbeddingModel(model);
-            TextSegment segment = TextSegment.from(content);
-            Embedding embedding = embeddingModel.embed(segment).content();
-            String id = getEmbeddingStore(collectionName).add(embedding);
-            log.info("Stored chapter {} to Qdrant with vector ID: {}", chapterId, id);
-            return id;
-        } catch (Exception e) {
-            log.error("Error storing chapter to Qdrant", e);
-            throw new RuntimeException("Failed to store chapter to Qdrant", e);
+    public CompletableFuture<List<String>> storeChapterAsync(Chapter chapter, String content, UserModel model, VectorScope scope) {
+        List<TextChunker.Chunk> chunks = TextChunker.split(content, chunkSize, chunkOverlap);
+        List<TextSegment> segments = new ArrayList<>(chunks.size());
+        for (TextChunker.Chunk chunk : chunks) {
+            Metadata metadata = qdrantLayout.metadataOf(scope)
+                    .put(VectorScope.KEY_CHAPTER_ID, chapter.getId())
+                    .put("chapterNumber", chapter.getChapterNumber())
+                    .put("chunkIndex", chunk.index())
+                    .put("offset", chunk.offset());
+            segments.add(TextSegment.from(chunk.text(), metadata));
         }
+        return storeSegmentsAsync(segments, model, scope)
+                .whenComplete((ids, e) -> {
+                    if (e == null) {
+                        log.info("Stored chapter {} to Qdrant as {} chunks", chapter.getId(), ids.size());
+                    }
+                });
+    }
+
+    public List<String> storeChapter(Chapter chapter, String content, UserModel model, VectorScope scope) {
+        return join(storeChapterAsync(chapter, content, model, scope), "Failed to store chapter to Qdrant");
     }
-    
+
     /**
-     * 根据查询文本搜索相似章节
+     * 删除章节在向量库中的全部向量（分块向量及旧版整章向量）；删除失败只记录日志，不影响业务数据的删除
      */
-    public List<EmbeddingMatch<TextSegment>> searchSimilar(String query, int maxResults, UserModel model, String collectionName) {
+    public CompletableFuture<Void> deleteChapterVectorsAsync(Chapter chapter, VectorScope scope) {
+        List<Points.PointId> pointIds = new ArrayList<>();
+        if (chapter.getChunkIds() != null && !chapter.getChunkIds().isEmpty()) {
+            for (String id : chapter.getChunkIds().split(",")) {
+                addPointId(pointIds, id);
+            }
+        }
+        if (chapter.getVectorId() != null) {
+            addPointId(pointIds, chapter.getVectorId());
+        }
+        if (pointIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String collectionName = qdrantLayout.collectionOf(scope);
+        return GrpcFutures.toCompletable(qdrantClient.deleteAsync(collectionName, pointIds))
+                .handle((result, e) -> {
+                    if (e == null) {
+                        log.info("Deleted {} vectors of chapter {} from Qdrant", pointIds.size(), chapter.getId());
+                    } else {
+                        if (QdrantCollectionRegistry.isNotFound(e)) {
+                            collectionRegistry.invalidate(collectionName);
+                        }
+                        log.error("Error deleting chapter {} vectors from Qdrant", chapter.getId(), e);
+                    }
+                    return null;
+                });
+    }
+
+    public void deleteChapterVectors(Chapter chapter, VectorScope scope) {
+        deleteChapterVectorsAsync(chapter, scope).join();
+    }
+
+    private static void addPointId(List<Points.PointId> pointIds, String id) {
         try {
-            EmbeddingModel embeddingModel = aiModelService.getEmbeddingModel(model);
-            Embedding queryEmbedding = embeddingModel.embed(query).content();
-            return getEmbeddingStore(collectionName).findRelevant(queryEmbedding, maxResults, 0.0);
-        } catch (Exception e) {
-            log.error("Error searching in Qdrant", e);
-            throw new RuntimeException("Failed to search in Qdrant", e);
+            pointIds.add(PointIdFactory.id(UUID.fromString(id.trim())));
+        } catch (IllegalArgumentException e) {
+            log.warn("Skip invalid vector id: {}", id);
         }
     }
-    
+
     /**
-     * 删除向量
+     * 根据查询文本搜索相似片段；shared 布局下按 userId/novelId/kind 过滤
      */
-    public void deleteVector(String vectorId) {
-        try {
-//            getEmbeddingStore().remove(vectorId);
-            log.info("Deleted vector {} from Qdrant", vectorId);
-        } catch (Exception e) {
-            log.error("Error deleting vector from Qdrant", e);
-            throw new RuntimeException("Failed to delete vector from Qdrant", e);
-        }
+    public CompletableFuture<List<EmbeddingMatch<TextSegment>>> searchSimilarAsync(String query, int maxResults,
+                                                                                  UserModel model, VectorScope scope) {
+        String collectionName = qdrantLayout.collectionOf(scope);
+        Points.Filter filter = qdrantLayout.filterOf(scope);
+        return embedAsync(query, model)
+                .thenCompose(queryEmbedding -> {
+                    Points.SearchPoints.Builder request = Points.SearchPoints.newBuilder()
+                            .setCollectionName(collectionName)
+                            .addAllVector(queryEmbedding.vectorAsList())
+                            .setLimit(maxResults)
+                            .setWithPayload(WithPayloadSelectorFactory.enable(true));
+                    if (filter != null) {
+                        request.setFilter(filter);
+                    }
+                    return withCollection(collectionName,
+                            () -> GrpcFutures.toCompletable(qdrantClient.searchAsync(request.build())));
+                })
+                .thenApply(points -> points.stream().map(QdrantService::toEmbeddingMatch).toList());
+    }
+
+    public List<EmbeddingMatch<TextSegment>> searchSimilar(String query, int maxResults, UserModel model, VectorScope scope) {
+        return join(searchSimilarAsync(query, maxResults, model, scope), "Failed to search in Qdrant");
     }
 
     /**
-     * 清理资源
+     * 与 QdrantEmbeddingStore 写入格式一致：文本在 text_segment，其余字符串 payload 作为元数据
      */
-    public void cleanup() {
-        if (qdrantClient != null) {
-            try {
-                qdrantClient.close();
-                log.info("Qdrant client closed");
-            } catch (Exception e) {
-                log.error("Error closing Qdrant client", e);
+    private static EmbeddingMatch<TextSegment> toEmbeddingMatch(Points.ScoredPoint point) {
+        Map<String, String> metadata = new HashMap<>();
+        String text = null;
+        for (Map.Entry<String, JsonWithInt.Value> entry : point.getPayloadMap().entrySet()) {
+            if (PAYLOAD_TEXT_KEY.equals(entry.getKey())) {
+                text = entry.getValue().getStringValue();
+            } else if (entry.getValue().hasStringValue()) {
+                metadata.put(entry.getKey(), entry.getValue().getStringValue());
             }
         }
+        TextSegment segment = text == null ? null : TextSegment.from(text, new Metadata(metadata));
+        return new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(point.getScore()),
+                point.getId().getUuid(), null, segment);
+    }
+
+    /**
+     * 同步等待异步结果，失败时统一包装为 RuntimeException
+     */
+    private static <T> T join(CompletableFuture<T> future, String message) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(message, e);
+        } catch (ExecutionException e) {
+            log.error(message, e.getCause());
+            throw new RuntimeException(message, e.getCause());
+        }
     }
 }
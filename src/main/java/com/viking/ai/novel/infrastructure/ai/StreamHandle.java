@@ -0,0 +1,110 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+
+/**
+ * 流式生成的取消句柄：由调用方创建并传入 {@link AiModelService} 的流式方法，停止时调用 {@link #cancel()}。
+ * <p>
+ * 取消后上游 HTTP 流被关闭（openai4j 在收到下一个事件时断开连接），准入许可立即释放，
+ * 回调 {@link AiModelService.StreamCallback#onCancelled(String)}，不再回调 onComplete / onError。
+ * 在排队等待准入时取消，请求不会发往模型端点。
+ * <p>
+ * {@link #fail(Throwable)} 同样关闭上游，但回调 onError（用于空闲超时等异常终止）。
+ * <p>
+ * {@link #yieldToDuplicate()} 用于同一个流在其他节点也在生成、本节点让出：同样回调 onCancelled，
+ * 回调方通过 {@link #isYielded()} 区分，不写回章节状态、不发送 stopped（胜出节点的流仍在推送）。
+ * <p>
+ * 句柄同时携带准入排队的优先级，默认为交互式；批量生成创建后台优先级的句柄。
+ */
+public class StreamHandle {
+
+    private final PriorityClassEnum priority;
+    private volatile boolean cancelled;
+    private volatile boolean yielded;
+    private volatile Throwable failure;
+    private Runnable canceller;
+
+    public StreamHandle() {
+        this(PriorityClassEnum.INTERACTIVE);
+    }
+
+    public StreamHandle(PriorityClassEnum priority) {
+        this.priority = priority;
+    }
+
+    public PriorityClassEnum getPriority() {
+        return priority;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        Runnable action;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            action = canceller;
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * 以错误终止：关闭上游并回调 onError(cause)；已取消时不生效
+     */
+    public void fail(Throwable cause) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            failure = cause;
+        }
+        cancel();
+    }
+
+    /**
+     * 让出给其他节点上的同一个流：关闭上游并回调 onCancelled；已取消时不生效
+     */
+    public void yieldToDuplicate() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            yielded = true;
+        }
+        cancel();
+    }
+
+    /**
+     * 是否通过 {@link #yieldToDuplicate()} 终止
+     */
+    public boolean isYielded() {
+        return yielded;
+    }
+
+    /**
+     * 通过 {@link #fail(Throwable)} 终止时的原因，普通取消为 null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * 绑定实际的取消动作；已取消时立即执行
+     */
+    void onCancel(Runnable action) {
+        boolean runNow;
+        synchronized (this) {
+            canceller = action;
+            runNow = cancelled;
+        }
+        if (runNow) {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 模型调用指标（Micrometer），按 stream（chapter / structure / outline / abstract / summary）与 model 打标签：
+ * <ul>
+ *     <li>ai.stream.prompt.tokens：提示词估算 token 数</li>
+ *     <li>ai.stream.ttft：请求发出到收到首个增量（不含准入排队）</li>
+ *     <li>ai.stream.inter.token：相邻两个增量的间隔</li>
+ *     <li>ai.stream.tokens.per.second：首个增量之后的输出速率（按估算 token 数）</li>
+ *     <li>ai.stream.output.tokens：输出估算 token 数</li>
+ *     <li>ai.stream.duration：请求发出到结束，带 outcome 标签</li>
+ *     <li>ai.stream.outcomes：按 outcome（complete / stopped / error）计数，含排队期间取消的请求</li>
+ *     <li>ai.stream.cancelled / ai.stream.tokens.saved：取消次数与估算节省的输出 token</li>
+ * </ul>
+ * model 标签取自用户填写的模型名，取值不受控：配置了 ai.metrics.model-tags 时只保留名单内的模型名，
+ * 否则保留最先出现的 max-model-tags 个，其余记为 other，保证标签基数有上限。
+ * 延迟与速率指标默认输出直方图，Prometheus 端可按标签聚合分位数。
+ */
+@Component
+public class StreamMetrics {
+
+    public static final String STREAM_CHAPTER = "chapter";
+    public static final String STREAM_STRUCTURE = "structure";
+    public static final String STREAM_OUTLINE = "outline";
+    public static final String STREAM_ABSTRACT = "abstract";
+    public static final String STREAM_SUMMARY = "summary";
+
+    public static final String OUTCOME_COMPLETE = "complete";
+    public static final String OUTCOME_STOPPED = "stopped";
+    public static final String OUTCOME_ERROR = "error";
+
+    private static final String MODEL_UNKNOWN = "unknown";
+    private static final String MODEL_OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final Set<String> allowedModels;
+    private final int maxModelTags;
+    private final boolean percentileHistogram;
+    // 未配置名单时已占用标签值的模型名
+    private final Set<String> seenModels = ConcurrentHashMap.newKeySet();
+
+    public StreamMetrics(MeterRegistry registry,
+                         @Value("${ai.metrics.model-tags:}") List<String> modelTags,
+                         @Value("${ai.metrics.max-model-tags:20}") int maxModelTags,
+                         @Value("${ai.metrics.percentiles-histogram:true}") boolean percentileHistogram) {
+        this.registry = registry;
+        this.allowedModels = modelTags == null ? Set.of() : modelTags.stream()
+                .map(StreamMetrics::normalize)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.maxModelTags = Math.max(0, maxModelTags);
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    /**
+     * 开始记录一次调用，同时记录提示词大小
+     */
+    public Sample start(String stream, String modelName, String prompt) {
+        Tags tags = Tags.of("stream", stream, "model", modelTag(modelName));
+        summary("ai.stream.prompt.tokens", "tokens", tags).record(TokenEstimator.estimate(prompt));
+        return new Sample(tags);
+    }
+
+    /**
+     * model 标签值：名单内或名额内的模型名（小写），其余为 other
+     */
+    private String modelTag(String modelName) {
+        String name = normalize(modelName);
+        if (name.isEmpty()) {
+            return MODEL_UNKNOWN;
+        }
+        if (!allowedModels.isEmpty()) {
+            return allowedModels.contains(name) ? name : MODEL_OTHER;
+        }
+        // 并发登记时可能略超上限，基数仍然有界
+        if (seenModels.contains(name) || seenModels.size() < maxModelTags) {
+            seenModels.add(name);
+            return name;
+        }
+        return MODEL_OTHER;
+    }
+
+    private static String normalize(String modelName) {
+        return modelName == null ? "" : modelName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 一次调用的计时状态；增量在同一个回调线程上依次到达，结束可能来自取消线程，方法均加锁
+     */
+    public final class Sample {
+
+        private final Tags tags;
+        private long sentNanos;
+        private long firstTokenNanos;
+        private long lastTokenNanos;
+        private boolean finished;
+
+        private Sample(Tags tags) {
+            this.tags = tags;
+        }
+
+        /**
+         * 请求已发往模型端点（准入排队结束）
+         */
+        public synchronized void sent() {
+            sentNanos = System.nanoTime();
+        }
+
+        /**
+         * 收到一个增量
+         */
+        public synchronized void token() {
+            long now = System.nanoTime();
+            if (firstTokenNanos == 0) {
+                firstTokenNanos = now;
+                if (sentNanos != 0) {
+                    timer("ai.stream.ttft", tags).record(now - sentNanos, TimeUnit.NANOSECONDS);
+                }
+            } else {
+                timer("ai.stream.inter.token", tags).record(now - lastTokenNanos, TimeUnit.NANOSECONDS);
+            }
+            lastTokenNanos = now;
+        }
+
+        /**
+         * 调用结束，重复调用只记录第一次
+         *
+         * @param output 已生成的文本，用于估算输出 token 与速率
+         */
+        public synchronized void finish(String outcome, String output) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long now = System.nanoTime();
+            Tags outcomeTags = tags.and("outcome", outcome);
+            registry.counter("ai.stream.outcomes", outcomeTags).increment();
+            if (sentNanos == 0) {
+                return;
+            }
+            timer("ai.stream.duration", outcomeTags).record(now - sentNanos, TimeUnit.NANOSECONDS);
+            int outputTokens = output != null ? TokenEstimator.estimate(output) : 0;
+            summary("ai.stream.output.tokens", "tokens", outcomeTags).record(outputTokens);
+            if (firstTokenNanos != 0 && lastTokenNanos > firstTokenNanos) {
+                double seconds = (lastTokenNanos - firstTokenNanos) / 1_000_000_000.0;
+                summary("ai.stream.tokens.per.second", "tokens", tags).record(outputTokens / seconds);
+            }
+        }
+
+        /**
+         * 取消：记录 stopped 结果，以及按预期输出减去已生成部分估算的节省 token
+         */
+        public synchronized void cancelled(int expectedTokens, String partialText) {
+            if (finished) {
+                return;
+            }
+            registry.counter("ai.stream.cancelled", tags).increment();
+            int saved = Math.max(0, expectedTokens - TokenEstimator.estimate(partialText));
+            registry.counter("ai.stream.tokens.saved", tags).increment(saved);
+            finish(OUTCOME_STOPPED, partialText);
+        }
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name).tags(tags).publishPercentileHistogram(percentileHistogram).register(registry);
+    }
+
+    private DistributionSummary summary(String name, String baseUnit, Tags tags) {
+        return DistributionSummary.builder(name).baseUnit(baseUnit).tags(tags)
+                .publishPercentileHistogram(percentileHistogram).register(registry);
+    }
+}
@@ -0,0 +1,180 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import com.viking.ai.novel.domain.model.UserModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式调用监督：登记每个进行中的模型流，定时巡检。
+ * <p>
+ * - 请求发出后超过 idle-timeout 没有新的增量（含首个增量），以 {@link TimeoutException} 终止该流，
+ * 调用方走 onError 路径（章节状态回退、任务标记失败），不必等待 HTTP 读超时；
+ * - 总时长超过 max-age 的流同样终止；
+ * - 已结束但未注销的条目（回调异常等导致的泄漏）直接移除。
+ * <p>
+ * 排队等待准入的流不计空闲时间。当前流表通过 actuator 端点 streams 查看。
+ */
+@Component
+@Slf4j
+public class StreamSupervisor {
+
+    /**
+     * 流表中的一行
+     */
+    public record StreamInfo(long id, String stream, String model, Long userId, String state,
+                             Instant startedAt, long ageSeconds, long idleSeconds, long tokens, long chars) {
+    }
+
+    private final long idleTimeoutMillis;
+    private final long maxAgeMillis;
+    private final long sweepIntervalMillis;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Tracked> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stream-supervisor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StreamSupervisor(@Value("${stream.supervisor.idle-timeout-seconds:120}") long idleTimeoutSeconds,
+                            @Value("${stream.supervisor.max-age-minutes:60}") long maxAgeMinutes,
+                            @Value("${stream.supervisor.sweep-interval-seconds:10}") long sweepIntervalSeconds) {
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.maxAgeMillis = TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+        this.sweepIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, sweepIntervalSeconds));
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::sweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 登记一个流，流结束时调用方必须调用 {@link Tracked#close()}
+     */
+    public Tracked track(String stream, UserModel model, StreamHandle handle) {
+        Tracked tracked = new Tracked(ids.incrementAndGet(), stream, model.getModelName(), model.getUserId(), handle);
+        streams.put(tracked.id, tracked);
+        return tracked;
+    }
+
+    public List<StreamInfo> snapshot() {
+        long now = System.currentTimeMillis();
+        return streams.values().stream()
+                .map(t -> t.info(now))
+                .sorted(Comparator.comparing(StreamInfo::startedAt))
+                .toList();
+    }
+
+    /**
+     * 手动终止一个流（以错误结束），流不存在时返回 false
+     */
+    public boolean abort(long id) {
+        Tracked tracked = streams.get(id);
+        if (tracked == null) {
+            return false;
+        }
+        log.warn("Aborting {} stream {} on request", tracked.stream, id);
+        tracked.handle.fail(new RuntimeException("Stream aborted by operator"));
+        return true;
+    }
+
+    /**
+     * 巡检一次：终止空闲或超龄的流，清理泄漏的条目
+     */
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        for (Tracked tracked : streams.values()) {
+            try {
+                if (tracked.handle.isCancelled()) {
+                    // 已取消但超过一个空闲周期仍未注销：回调链路没有走到 close，视为泄漏
+                    if (now - tracked.lastActivityMillis > idleTimeoutMillis && streams.remove(tracked.id, tracked)) {
+                        log.warn("Reaped leaked {} stream {} (user {})", tracked.stream, tracked.id, tracked.userId);
+                    }
+                    continue;
+                }
+                long idle = now - tracked.lastActivityMillis;
+                if (tracked.sent && idleTimeoutMillis > 0 && idle > idleTimeoutMillis) {
+                    log.warn("Aborting {} stream {} of user {}: no tokens for {} s",
+                            tracked.stream, tracked.id, tracked.userId, idle / 1000);
+                    tracked.handle.fail(new TimeoutException("No tokens received for " + idle / 1000 + " s"));
+                } else if (maxAgeMillis > 0 && now - tracked.startedAt.toEpochMilli() > maxAgeMillis) {
+                    log.warn("Aborting {} stream {} of user {}: exceeded max age", tracked.stream, tracked.id, tracked.userId);
+                    tracked.handle.fail(new TimeoutException("Stream exceeded max age of "
+                            + Duration.ofMillis(maxAgeMillis).toMinutes() + " min"));
+                }
+            } catch (Exception e) {
+                log.error("Error supervising stream {}", tracked.id, e);
+            }
+        }
+    }
+
+    /**
+     * 一个被监督的流；增量在同一个回调线程上依次到达，字段只做单写多读
+     */
+    public final class Tracked {
+
+        private final long id;
+        private final String stream;
+        private final String model;
+        private final Long userId;
+        private final StreamHandle handle;
+        private final Instant startedAt = Instant.now();
+        private volatile boolean sent;
+        private volatile long lastActivityMillis = System.currentTimeMillis();
+        private volatile long tokens;
+        private volatile long chars;
+
+        private Tracked(long id, String stream, String model, Long userId, StreamHandle handle) {
+            this.id = id;
+            this.stream = stream;
+            this.model = model;
+            this.userId = userId;
+            this.handle = handle;
+        }
+
+        /**
+         * 请求已发往模型端点，开始计算空闲时间
+         */
+        public void sent() {
+            lastActivityMillis = System.currentTimeMillis();
+            sent = true;
+        }
+
+        public void token(int length) {
+            lastActivityMillis = System.currentTimeMillis();
+            tokens++;
+            chars += length;
+        }
+
+        public void close() {
+            streams.remove(id, this);
+        }
+
+        private StreamInfo info(long now) {
+            String state = handle.isCancelled() ? "cancelling" : sent ? "streaming" : "queued";
+            return new StreamInfo(id, stream, model, userId, state, startedAt,
+                    (now - startedAt.toEpochMilli()) / 1000, (now - lastActivityMillis) / 1000, tokens, chars);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * actuator 端点：查看本节点进行中的模型流（类型、模型、用户、状态、时长、空闲时间、增量数），或手动终止某个流
+ * <p>
+ * GET /actuator/streams；DELETE /actuator/streams/{id}。端点无鉴权，默认不暴露，只应在内网管理端口开启
+ */
+@Component
+@Endpoint(id = "streams")
+@RequiredArgsConstructor
+public class StreamsEndpoint {
+
+    private final StreamSupervisor streamSupervisor;
+
+    @ReadOperation
+    public List<StreamSupervisor.StreamInfo> streams() {
+        return streamSupervisor.snapshot();
+    }
+
+    @DeleteOperation
+    public boolean abort(@Selector long id) {
+        return streamSupervisor.abort(id);
+    }
+}
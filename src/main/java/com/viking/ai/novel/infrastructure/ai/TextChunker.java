@@ -0,0 +1,59 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本分块：按固定长度切分并保留重叠，尽量在句末标点或换行处断开，
+ * 使每块都在嵌入模型输入限制内，检索时也能命中具体段落而非整章。
+ */
+public final class TextChunker {
+
+    private static final String BREAK_CHARS = "。！？!?；;\n";
+
+    private TextChunker() {
+    }
+
+    /**
+     * 文本块
+     *
+     * @param index  块序号（从 0 开始）
+     * @param offset 块在原文中的起始字符位置
+     */
+    public record Chunk(int index, int offset, String text) {
+    }
+
+    public static List<Chunk> split(String content, int chunkSize, int overlap) {
+        List<Chunk> chunks = new ArrayList<>();
+        if (content == null || content.isBlank()) {
+            return chunks;
+        }
+        int size = Math.max(1, chunkSize);
+        int step = Math.max(1, size - Math.max(0, overlap));
+        int length = content.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + size);
+            if (end < length) {
+                // 在后 1/4 窗口内寻找最近的断句位置
+                int minEnd = start + Math.max(step, size * 3 / 4);
+                for (int i = end - 1; i >= minEnd; i--) {
+                    if (BREAK_CHARS.indexOf(content.charAt(i)) >= 0) {
+                        end = i + 1;
+                        break;
+                    }
+                }
+            }
+            String raw = content.substring(start, end);
+            String text = raw.strip();
+            if (!text.isEmpty()) {
+                chunks.add(new Chunk(chunks.size(), start + raw.indexOf(text), text));
+            }
+            if (end >= length) {
+                break;
+            }
+            start = Math.max(start + 1, end - Math.max(0, overlap));
+        }
+        return chunks;
+    }
+}
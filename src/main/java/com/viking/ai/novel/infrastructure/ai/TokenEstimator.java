@@ -0,0 +1,27 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+/**
+ * 粗略的 token 数估算：中文按每字约 1 token，ASCII 按每 4 个字符约 1 token。
+ * 仅用于限流、预算等场景，不追求与具体模型 tokenizer 完全一致。
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return other + (ascii + 3) / 4;
+    }
+}
@@ -0,0 +1,32 @@
+package com.viking.ai.novel.infrastructure.ai;
+
+/**
+ * 向量归属范围：某用户某部小说的章节向量，或某用户的资料库（novelId 为空）。
+ * 由 {@link QdrantLayout} 映射为具体集合与 payload 过滤条件。
+ */
+public record VectorScope(Long userId, Long novelId) {
+
+    public static final String KEY_USER_ID = "userId";
+    public static final String KEY_NOVEL_ID = "novelId";
+    public static final String KEY_CHAPTER_ID = "chapterId";
+    public static final String KEY_KIND = "kind";
+
+    public static final String KIND_CHAPTER = "chapter";
+    public static final String KIND_LIBRARY = "library";
+
+    public static VectorScope novel(Long userId, Long novelId) {
+        return new VectorScope(userId, novelId);
+    }
+
+    public static VectorScope library(Long userId) {
+        return new VectorScope(userId, null);
+    }
+
+    public boolean isLibrary() {
+        return novelId == null;
+    }
+
+    public String kind() {
+        return isLibrary() ? KIND_LIBRARY : KIND_CHAPTER;
+    }
+}
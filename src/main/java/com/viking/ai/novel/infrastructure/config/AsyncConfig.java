@@ -1,7 +1,9 @@
 package com.viking.ai.novel.infrastructure.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -10,13 +12,27 @@ import java.util.concurrent.Executor;
 @Configuration
 @EnableAsync
 public class AsyncConfig {
-    
+
+    /**
+     * 虚拟线程模式下每个 @Async 任务一个虚拟线程，仅以 virtual-concurrency-limit 限制并发（超出时提交方等待）；
+     * 否则使用有界的平台线程池
+     */
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public Executor taskExecutor(ExecutorFactory executorFactory,
+                                 @Value("${async.core-pool-size:5}") int corePoolSize,
+                                 @Value("${async.max-pool-size:10}") int maxPoolSize,
+                                 @Value("${async.queue-capacity:100}") int queueCapacity,
+                                 @Value("${async.virtual-concurrency-limit:1000}") int virtualConcurrencyLimit) {
+        if (executorFactory.isVirtualThreads()) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("novel-generator-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
         executor.setThreadNamePrefix("novel-generator-");
         executor.initialize();
         return executor;
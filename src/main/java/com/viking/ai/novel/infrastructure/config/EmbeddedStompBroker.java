@@ -0,0 +1,59 @@
+package com.viking.ai.novel.infrastructure.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 内嵌 STOMP 代理（ActiveMQ Artemis，非持久化、无认证），供本地开发和测试验证 relay 模式，生产环境应使用外部代理。
+ * <p>
+ * /topic/ 前缀的目的地按广播（multicast）投递，与简单代理的订阅语义一致。
+ */
+@Slf4j
+@Component
+@ConditionalOnClass(EmbeddedActiveMQ.class)
+@ConditionalOnProperty(name = "websocket.broker.embedded.enabled", havingValue = "true")
+public class EmbeddedStompBroker {
+
+    private final String host;
+    private final int port;
+    private EmbeddedActiveMQ server;
+
+    public EmbeddedStompBroker(@Value("${websocket.broker.embedded.host:127.0.0.1}") String host,
+                               @Value("${websocket.broker.embedded.port:${websocket.broker.relay.port:61613}}") int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() throws Exception {
+        Configuration config = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false)
+                .addAcceptorConfiguration("stomp", String.format(
+                        "tcp://%s:%d?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/", host, port));
+        server = new EmbeddedActiveMQ();
+        server.setConfiguration(config);
+        server.start();
+        log.info("Embedded STOMP broker listening on {}:{}", host, port);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
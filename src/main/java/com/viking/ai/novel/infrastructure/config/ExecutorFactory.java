@@ -0,0 +1,86 @@
+package com.viking.ai.novel.infrastructure.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务线程池工厂：按 spring.threads.virtual.enabled 统一选择平台线程或虚拟线程。
+ * <p>
+ * 虚拟线程模式下各线程池保留原有的并发上限与队列语义（并发上限本身是业务约束，如并行生成章节数），
+ * 但阻塞在模型 HTTP 调用、Qdrant future、JDBC 上的线程不再占用平台线程，上限可以放宽到平台线程下不可承受的规模。
+ * 虚拟线程需要 JDK 21+，更低版本运行时自动退回平台线程。
+ */
+@Component
+@Slf4j
+public class ExecutorFactory {
+
+    private final boolean virtualThreads;
+
+    public ExecutorFactory(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            log.warn("Virtual threads require JDK 21+, running on {}; falling back to platform threads",
+                    Runtime.version());
+            virtualThreads = false;
+        }
+        this.virtualThreads = virtualThreads;
+        log.info("Business executors use {} threads", virtualThreads ? "virtual" : "platform");
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 线程工厂：线程名为 {name}-{序号}，平台线程为守护线程
+     */
+    public ThreadFactory threadFactory(String name) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 固定并发、无界队列
+     */
+    public ExecutorService fixed(String name, int threads) {
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory(name));
+    }
+
+    /**
+     * 固定并发、有界队列；队列满时由提交方线程执行（背压）
+     */
+    public ExecutorService bounded(String name, int threads, int queueCapacity) {
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory(name),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 固定并发、有界队列；队列满时拒绝提交（RejectedExecutionException），由提交方降级处理
+     */
+    public ThreadPoolExecutor boundedRejecting(String name, int threads, int queueCapacity) {
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,127 @@
+package com.viking.ai.novel.infrastructure.config;
+
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按用户公平调度的固定并发执行器：等待中的任务放在 {@link WeightedFairQueue}，有空闲名额时才交给底层线程池，
+ * 单个用户一次提交大量任务不会占满全部名额而让其他用户排在其后。
+ * <p>
+ * - 交互式任务优先放行，后台任务最多占用 {@link FairSharePolicy#backgroundLimit(int)} 个名额；
+ * - 每个用户同时执行的后台任务不超过 {@link FairSharePolicy#getMaxJobsPerUser()}，交互式任务不受此限（但计入占用）。
+ */
+@Slf4j
+public class FairShareExecutor {
+
+    private record Job(Long userId, PriorityClassEnum priority, Runnable task, CompletableFuture<Void> future) {
+    }
+
+    private final ExecutorService workers;
+    private final int capacity;
+    private final FairSharePolicy policy;
+    private final WeightedFairQueue<Job> queue;
+    private final Map<Long, Integer> runningPerUser = new HashMap<>();
+    private int running;
+    private int runningBackground;
+
+    /**
+     * @param workers  实际执行任务的线程池，并发不低于 capacity
+     * @param capacity 同时执行的任务数
+     */
+    public FairShareExecutor(ExecutorService workers, int capacity, FairSharePolicy policy) {
+        this.workers = workers;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.queue = new WeightedFairQueue<>(policy::weight);
+    }
+
+    /**
+     * 提交任务，返回的 future 在任务执行结束后完成（任务抛出异常时异常完成）
+     */
+    public CompletableFuture<Void> submit(Long userId, PriorityClassEnum priority, Runnable task) {
+        Job job = new Job(userId, priority, task, new CompletableFuture<>());
+        synchronized (this) {
+            queue.add(userId, priority, job);
+        }
+        dispatch();
+        return job.future();
+    }
+
+    /**
+     * 当前等待中的任务数
+     */
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                if (running >= capacity) {
+                    return;
+                }
+                job = queue.poll(this::admissible);
+                if (job == null) {
+                    return;
+                }
+                running++;
+                runningPerUser.merge(job.userId(), 1, Integer::sum);
+                if (job.priority() == PriorityClassEnum.BACKGROUND) {
+                    runningBackground++;
+                }
+            }
+            try {
+                workers.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                finished(job);
+                job.future().completeExceptionally(e);
+                return;
+            }
+        }
+    }
+
+    private boolean admissible(Long userId, PriorityClassEnum priority) {
+        if (priority == PriorityClassEnum.INTERACTIVE) {
+            return true;
+        }
+        int cap = policy.getMaxJobsPerUser();
+        return runningBackground < policy.backgroundLimit(capacity)
+                && (cap == 0 || runningPerUser.getOrDefault(userId, 0) < cap);
+    }
+
+    private void run(Job job) {
+        Throwable failure = null;
+        try {
+            job.task().run();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        // 先归还名额再完成 future，依赖该任务的后续任务提交时即可放行
+        finished(job);
+        if (failure == null) {
+            job.future().complete(null);
+        } else {
+            job.future().completeExceptionally(failure);
+        }
+        dispatch();
+    }
+
+    private synchronized void finished(Job job) {
+        running--;
+        runningPerUser.computeIfPresent(job.userId(), (k, v) -> v > 1 ? v - 1 : null);
+        if (job.priority() == PriorityClassEnum.BACKGROUND) {
+            runningBackground--;
+        }
+    }
+}
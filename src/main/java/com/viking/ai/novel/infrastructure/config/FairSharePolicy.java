@@ -0,0 +1,78 @@
+package com.viking.ai.novel.infrastructure.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 多用户公平调度策略：用户权重、每用户并发上限、为交互式请求预留的名额。
+ * <p>
+ * 权重按 "userId:weight,userId:weight" 配置，未配置的用户为 default-weight；权重为 2 的用户在竞争时获得两倍的放行份额。
+ */
+@Component
+@Slf4j
+public class FairSharePolicy {
+
+    /**
+     * 权重均为 1、不限每用户并发、不预留名额（等价于按用户轮转）
+     */
+    public static final FairSharePolicy UNRESTRICTED = new FairSharePolicy("", 1, 0, 0, 0);
+
+    private final Map<Long, Double> userWeights = new HashMap<>();
+    private final double defaultWeight;
+    private final int maxJobsPerUser;
+    private final int maxStreamsPerUser;
+    private final int interactiveReserved;
+
+    public FairSharePolicy(@Value("${ai.scheduling.user-weights:}") String userWeights,
+                           @Value("${ai.scheduling.default-weight:1}") double defaultWeight,
+                           @Value("${ai.scheduling.max-jobs-per-user:2}") int maxJobsPerUser,
+                           @Value("${ai.scheduling.max-streams-per-user:0}") int maxStreamsPerUser,
+                           @Value("${ai.scheduling.interactive-reserved:1}") int interactiveReserved) {
+        this.defaultWeight = defaultWeight > 0 ? defaultWeight : 1;
+        this.maxJobsPerUser = Math.max(0, maxJobsPerUser);
+        this.maxStreamsPerUser = Math.max(0, maxStreamsPerUser);
+        this.interactiveReserved = Math.max(0, interactiveReserved);
+        if (userWeights != null && !userWeights.isBlank()) {
+            for (String pair : userWeights.split(",")) {
+                String[] parts = pair.trim().split(":");
+                try {
+                    double weight = Double.parseDouble(parts[1].trim());
+                    if (weight > 0) {
+                        this.userWeights.put(Long.parseLong(parts[0].trim()), weight);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Ignoring invalid user weight entry: {}", pair);
+                }
+            }
+        }
+    }
+
+    public double weight(Long userId) {
+        return userId == null ? defaultWeight : userWeights.getOrDefault(userId, defaultWeight);
+    }
+
+    /**
+     * 每个用户同时执行的后台生成作业数上限，0 表示不限
+     */
+    public int getMaxJobsPerUser() {
+        return maxJobsPerUser;
+    }
+
+    /**
+     * 每个用户在同一模型端点上的并发调用上限，0 表示不限
+     */
+    public int getMaxStreamsPerUser() {
+        return maxStreamsPerUser;
+    }
+
+    /**
+     * 容量为 capacity 的资源中后台请求最多占用的名额：预留给交互式请求的名额不超过 capacity - 1
+     */
+    public int backgroundLimit(int capacity) {
+        return capacity - Math.min(interactiveReserved, Math.max(0, capacity - 1));
+    }
+}
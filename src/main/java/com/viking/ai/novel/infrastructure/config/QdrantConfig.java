@@ -0,0 +1,51 @@
+package com.viking.ai.novel.infrastructure.config;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.QdrantGrpcClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Qdrant 客户端配置：全部向量操作共用一条 gRPC 连接（HTTP/2 多路复用），
+ * 不再为每个集合各建一条 channel
+ */
+@Configuration
+@Slf4j
+public class QdrantConfig {
+
+    @Bean(destroyMethod = "close")
+    public QdrantClient qdrantClient(@Value("${qdrant.host:localhost}") String host,
+                                     @Value("${qdrant.grpc-port:6334}") int grpcPort,
+                                     @Value("${qdrant.use-tls:false}") boolean useTls,
+                                     @Value("${qdrant.api-key:}") String apiKey,
+                                     @Value("${qdrant.timeout-seconds:30}") long timeoutSeconds,
+                                     @Value("${qdrant.keep-alive-seconds:60}") long keepAliveSeconds,
+                                     @Value("${qdrant.max-inbound-message-mb:32}") int maxInboundMessageMb) {
+        ManagedChannelBuilder<?> channelBuilder = ManagedChannelBuilder.forAddress(host, grpcPort)
+                .keepAliveTime(keepAliveSeconds, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .maxInboundMessageSize(maxInboundMessageMb * 1024 * 1024);
+        if (useTls) {
+            channelBuilder.useTransportSecurity();
+        } else {
+            channelBuilder.usePlaintext();
+        }
+        ManagedChannel channel = channelBuilder.build();
+
+        // 关闭 QdrantClient 时一并关闭 channel
+        QdrantGrpcClient.Builder grpcClientBuilder = QdrantGrpcClient.newBuilder(channel, true)
+                .withTimeout(Duration.ofSeconds(timeoutSeconds));
+        if (apiKey != null && !apiKey.isBlank()) {
+            grpcClientBuilder.withApiKey(apiKey);
+        }
+        log.info("Qdrant client initialized on {}:{} (tls={})", host, grpcPort, useTls);
+        return new QdrantClient(grpcClientBuilder.build());
+    }
+}
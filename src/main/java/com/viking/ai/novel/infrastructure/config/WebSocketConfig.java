@@ -1,18 +1,90 @@
 package com.viking.ai.novel.infrastructure.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP over WebSocket 配置
+ * <p>
+ * websocket.broker.mode：
+ * - simple（默认）：进程内简单代理，订阅只存在于当前节点，适合单节点部署
+ * - relay：/topic 消息经外部 STOMP 代理（RabbitMQ / ActiveMQ Artemis 等）中继，任一节点产生的增量都能推送给
+ *   连接在其他节点上的客户端；/user 目的地的解析与用户注册表也通过代理在节点间广播
+ */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    public static final String MODE_RELAY = "relay";
+
+    private final ExecutorFactory executorFactory;
+    private final int virtualPoolSize;
+
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.client-login:guest}")
+    private String clientLogin;
+
+    @Value("${websocket.broker.relay.client-passcode:guest}")
+    private String clientPasscode;
+
+    @Value("${websocket.broker.relay.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${websocket.broker.relay.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String virtualHost;
+
+    @Value("${websocket.broker.relay.heartbeat-ms:10000}")
+    private long relayHeartbeatMillis;
+
+    public WebSocketConfig(ExecutorFactory executorFactory,
+                           @Value("${websocket.virtual-pool-size:256}") int virtualPoolSize) {
+        this.executorFactory = executorFactory;
+        this.virtualPoolSize = virtualPoolSize;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic");
+        if (MODE_RELAY.equalsIgnoreCase(brokerMode)) {
+            StompBrokerRelayRegistration relay = registry.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(clientLogin)
+                    .setClientPasscode(clientPasscode)
+                    .setSystemLogin(systemLogin)
+                    .setSystemPasscode(systemPasscode)
+                    .setSystemHeartbeatSendInterval(relayHeartbeatMillis)
+                    .setSystemHeartbeatReceiveInterval(relayHeartbeatMillis)
+                    // 连接在其他节点上的用户：本节点解析不到的 /user 消息经代理广播，由持有该会话的节点投递
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!virtualHost.isBlank()) {
+                relay.setVirtualHost(virtualHost);
+            }
+            log.info("WebSocket broker relay enabled: {}:{}", relayHost, relayPort);
+        } else {
+            registry.enableSimpleBroker("/topic");
+        }
         registry.setApplicationDestinationPrefixes("/app");
     }
 
@@ -24,5 +96,73 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
-}
 
+    @Value("${websocket.inbound.core-pool-size:0}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:0}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.inbound.queue-capacity:0}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.outbound.core-pool-size:0}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:0}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:0}")
+    private int outboundQueueCapacity;
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (executorFactory.isVirtualThreads()) {
+            registration.taskExecutor(virtualChannelExecutor("ws-inbound"));
+        } else {
+            configurePlatformExecutor(registration, inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity);
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (executorFactory.isVirtualThreads()) {
+            registration.taskExecutor(virtualChannelExecutor("ws-outbound"));
+        } else {
+            configurePlatformExecutor(registration, outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity);
+        }
+    }
+
+    /**
+     * 平台线程模式下的通道线程池，未配置（0）的项保持 Spring 默认值（核心线程数 CPU 核数 * 2，最大线程数与队列不限）
+     */
+    private static void configurePlatformExecutor(ChannelRegistration registration, int corePoolSize,
+                                                  int maxPoolSize, int queueCapacity) {
+        if (corePoolSize <= 0 && maxPoolSize <= 0 && queueCapacity <= 0) {
+            return;
+        }
+        TaskExecutorRegistration executor = registration.taskExecutor();
+        if (corePoolSize > 0) {
+            executor.corePoolSize(corePoolSize);
+        }
+        if (maxPoolSize > 0) {
+            executor.maxPoolSize(Math.max(maxPoolSize, corePoolSize));
+        }
+        if (queueCapacity > 0) {
+            executor.queueCapacity(queueCapacity);
+        }
+    }
+
+    /**
+     * 虚拟线程模式下通道线程池使用虚拟线程，处理消息时的阻塞调用（查库、建流）不再受限于默认的 CPU 核数 * 2 个平台线程
+     */
+    private ThreadPoolTaskExecutor virtualChannelExecutor(String name) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadFactory(executorFactory.threadFactory(name));
+        executor.setCorePoolSize(virtualPoolSize);
+        executor.setMaxPoolSize(virtualPoolSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix(name + "-");
+        return executor;
+    }
+}
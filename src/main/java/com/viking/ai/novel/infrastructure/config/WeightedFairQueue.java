@@ -0,0 +1,118 @@
+package com.viking.ai.novel.infrastructure.config;
+
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 按用户加权公平的多优先级等待队列（非线程安全，由调用方加锁）。
+ * <p>
+ * 加权公平队列（WFQ）：入队时按 max(该用户上一个请求的完成标签, 当前虚拟时间) + 1 / 权重 打完成标签，
+ * 同一优先级内按标签（相同时按入队顺序）放行。大量入队的用户标签不断后移，新来的用户从当前虚拟时间起排，
+ * 不会排在前者全部请求之后；权重均为 1 时等价于按用户轮转。高优先级有可放行的请求时不放行低优先级请求。
+ */
+public class WeightedFairQueue<T> {
+
+    private record Entry<T>(T item, Long userId, PriorityClassEnum priority, double tag, long seq) {
+    }
+
+    private static final Comparator<Entry<?>> ORDER = Comparator.<Entry<?>>comparingDouble(Entry::tag)
+            .thenComparingLong(Entry::seq);
+
+    private final ToDoubleFunction<Long> weights;
+    private final List<TreeSet<Entry<T>>> classes = new ArrayList<>();
+    private final Map<Long, Double> lastTags = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+
+    public WeightedFairQueue(ToDoubleFunction<Long> weights) {
+        this.weights = weights;
+        for (int i = 0; i < PriorityClassEnum.values().length; i++) {
+            classes.add(new TreeSet<>(ORDER));
+        }
+    }
+
+    public void add(Long userId, PriorityClassEnum priority, T item) {
+        double tag = Math.max(lastTags.getOrDefault(userId, 0.0), virtualTime) + 1 / weights.applyAsDouble(userId);
+        lastTags.put(userId, tag);
+        classes.get(priority.getLevel()).add(new Entry<>(item, userId, priority, tag, sequence++));
+    }
+
+    /**
+     * 按优先级、标签顺序取出第一个 admissible(userId, priority) 为真的请求；没有可放行的请求时返回 null
+     */
+    public T poll(BiPredicate<Long, PriorityClassEnum> admissible) {
+        Entry<T> entry = first(admissible);
+        if (entry == null) {
+            return null;
+        }
+        classes.get(entry.priority().getLevel()).remove(entry);
+        virtualTime = Math.max(virtualTime, entry.tag());
+        if (lastTags.size() > 1024) {
+            // 已落后于虚拟时间的用户记录不再影响标签
+            lastTags.values().removeIf(t -> t <= virtualTime);
+        }
+        return entry.item();
+    }
+
+    /**
+     * 返回 {@link #poll(BiPredicate)} 将取出的请求但不移除
+     */
+    public T peek(BiPredicate<Long, PriorityClassEnum> admissible) {
+        Entry<T> entry = first(admissible);
+        return entry != null ? entry.item() : null;
+    }
+
+    private Entry<T> first(BiPredicate<Long, PriorityClassEnum> admissible) {
+        for (TreeSet<Entry<T>> entries : classes) {
+            for (Entry<T> entry : entries) {
+                if (admissible.test(entry.userId(), entry.priority())) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 移除满足条件的请求（如已取消），不影响其他请求的标签
+     */
+    public void removeIf(Predicate<T> filter) {
+        for (TreeSet<Entry<T>> entries : classes) {
+            entries.removeIf(e -> filter.test(e.item()));
+        }
+    }
+
+    /**
+     * 不考虑并发上限时的放行顺序，用于估算排队位置
+     */
+    public List<T> inOrder() {
+        List<T> order = new ArrayList<>(size());
+        for (TreeSet<Entry<T>> entries : classes) {
+            for (Entry<T> entry : entries) {
+                order.add(entry.item());
+            }
+        }
+        return order;
+    }
+
+    public int size() {
+        int size = 0;
+        for (TreeSet<Entry<T>> entries : classes) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
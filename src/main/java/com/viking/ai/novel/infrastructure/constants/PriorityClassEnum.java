@@ -0,0 +1,27 @@
+package com.viking.ai.novel.infrastructure.constants;
+
+/**
+ * 调度优先级：同一队列中交互式请求总是先于后台请求放行
+ */
+public enum PriorityClassEnum {
+
+    INTERACTIVE(0, "交互式（WebSocket 流、单章生成）"),
+    BACKGROUND(1, "后台（批量生成、摘要）"),
+    ;
+
+    private int level;
+    private String description;
+
+    PriorityClassEnum(int level, String description) {
+        this.level = level;
+        this.description = description;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,16 @@
+package com.viking.ai.novel.infrastructure.job;
+
+/**
+ * 异步生成作业派发：job.dispatch.type 选择实现，inline（默认）为进程内执行，local 为数据库作业表 + 本地工作线程，
+ * rocketmq 为 MQ 消费者。
+ * <p>
+ * 可在事务内调用，作业在调用方事务提交后才会被执行；事务回滚时作业一并丢弃。
+ */
+public interface GenerationJobDispatcher {
+
+    void dispatchNovelStructure(Long novelId, Long taskId, Long userId);
+
+    void dispatchChapterOutline(Long novelId, Long taskId);
+
+    void dispatchChapterContent(Long novelId, Long chapterId, Long taskId);
+}
@@ -0,0 +1,7 @@
+package com.viking.ai.novel.infrastructure.job;
+
+/**
+ * 本地作业入队事件，事务提交后唤醒工作线程立即认领，不必等待下一次轮询
+ */
+public record GenerationJobEnqueued(Long jobId) {
+}
@@ -0,0 +1,89 @@
+package com.viking.ai.novel.infrastructure.job;
+
+import com.viking.ai.novel.application.service.ChapterGenerationTaskService;
+import com.viking.ai.novel.application.service.NovelGenerationTaskService;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 进程内作业派发（默认）：不依赖作业表或 MQ，事务提交后在本进程执行。
+ * 小说结构、章节大纲交给本派发器的线程池生成，不占用请求线程；章节内容交给章节生成线程池，节点重启时未完成的作业不会恢复。
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "job.dispatch.type", havingValue = "inline", matchIfMissing = true)
+public class InlineJobDispatcher implements GenerationJobDispatcher {
+
+    // NovelGenerationTaskService 依赖 ChapterService，而 ChapterService 依赖本派发器，延迟获取以避免循环依赖
+    private final ObjectProvider<NovelGenerationTaskService> novelGenerationTaskService;
+    private final ChapterGenerationTaskService chapterGenerationTaskService;
+    // 小说结构、章节大纲生成线程池
+    private final ExecutorService novelJobExecutor;
+
+    public InlineJobDispatcher(ObjectProvider<NovelGenerationTaskService> novelGenerationTaskService,
+                               ChapterGenerationTaskService chapterGenerationTaskService,
+                               ExecutorFactory executorFactory,
+                               @Value("${job.inline.novel-concurrency:2}") int novelConcurrency) {
+        this.novelGenerationTaskService = novelGenerationTaskService;
+        this.chapterGenerationTaskService = chapterGenerationTaskService;
+        this.novelJobExecutor = executorFactory.fixed("inline-novel-job", novelConcurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        novelJobExecutor.shutdownNow();
+    }
+
+    @Override
+    public void dispatchNovelStructure(Long novelId, Long taskId, Long userId) {
+        afterCommit(() -> submit("structure", novelId,
+                () -> novelGenerationTaskService.getObject().doGenerateNovelStructure(novelId, taskId, userId)));
+    }
+
+    @Override
+    public void dispatchChapterOutline(Long novelId, Long taskId) {
+        afterCommit(() -> submit("outline", novelId,
+                () -> novelGenerationTaskService.getObject().doGenerateChapterOutline(novelId, taskId)));
+    }
+
+    @Override
+    public void dispatchChapterContent(Long novelId, Long chapterId, Long taskId) {
+        afterCommit(() -> chapterGenerationTaskService.generateChapters(novelId, List.of(chapterId), taskId));
+    }
+
+    /**
+     * 失败已记录在任务上，这里只记录日志
+     */
+    private void submit(String jobType, Long novelId, Runnable job) {
+        novelJobExecutor.execute(() -> {
+            try {
+                job.run();
+            } catch (Exception e) {
+                log.warn("Inline {} job for novel {} failed: {}", jobType, novelId, e.getMessage());
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
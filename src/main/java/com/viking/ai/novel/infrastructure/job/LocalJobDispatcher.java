@@ -0,0 +1,58 @@
+package com.viking.ai.novel.infrastructure.job;
+
+import com.viking.ai.novel.domain.model.GenerationJob;
+import com.viking.ai.novel.domain.repository.GenerationJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地作业派发：作业写入 generation_job 表，与调用方的业务数据在同一事务内提交，由 {@link LocalJobWorker} 认领执行
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "job.dispatch.type", havingValue = "local")
+public class LocalJobDispatcher implements GenerationJobDispatcher {
+
+    private final GenerationJobRepository generationJobRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void dispatchNovelStructure(Long novelId, Long taskId, Long userId) {
+        enqueue(GenerationJob.builder()
+                .jobType(GenerationJob.TYPE_NOVEL_STRUCTURE)
+                .novelId(novelId)
+                .taskId(taskId)
+                .userId(userId)
+                .build());
+    }
+
+    @Override
+    public void dispatchChapterOutline(Long novelId, Long taskId) {
+        enqueue(GenerationJob.builder()
+                .jobType(GenerationJob.TYPE_CHAPTER_OUTLINE)
+                .novelId(novelId)
+                .taskId(taskId)
+                .build());
+    }
+
+    @Override
+    public void dispatchChapterContent(Long novelId, Long chapterId, Long taskId) {
+        enqueue(GenerationJob.builder()
+                .jobType(GenerationJob.TYPE_CHAPTER_CONTENT)
+                .novelId(novelId)
+                .chapterId(chapterId)
+                .taskId(taskId)
+                .build());
+    }
+
+    private void enqueue(GenerationJob job) {
+        GenerationJob saved = generationJobRepository.save(job);
+        log.info("Enqueued {} job {}: novelId={}, chapterId={}, taskId={}",
+                saved.getJobType(), saved.getId(), saved.getNovelId(), saved.getChapterId(), saved.getTaskId());
+        eventPublisher.publishEvent(new GenerationJobEnqueued(saved.getId()));
+    }
+}
@@ -0,0 +1,232 @@
+package com.viking.ai.novel.infrastructure.job;
+
+import com.viking.ai.novel.application.service.ChapterGenerationTaskService;
+import com.viking.ai.novel.application.service.NovelGenerationTaskService;
+import com.viking.ai.novel.domain.model.GenerationJob;
+import com.viking.ai.novel.domain.repository.GenerationJobRepository;
+import com.viking.ai.novel.domain.repository.TaskRepository;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地作业执行：轮询 generation_job 表认领到期作业（SELECT ... FOR UPDATE SKIP LOCKED），交给固定大小的工作线程池执行。
+ * <p>
+ * - 认领数不超过空闲工作线程数，多个节点并发轮询时各自认领不同的行；
+ * - 执行中的作业定期续约，续约超过 lease-seconds 未更新（节点崩溃）的作业放回待执行，由任一节点重新认领；
+ * - 执行抛出异常时按指数退避重试，达到 max-attempts 后标记失败并把原因写入关联任务。
+ * - 启动时检查作业表可用（需 MySQL 8.0+），不可用时启动失败并提示改用 inline 派发。
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "job.dispatch.type", havingValue = "local")
+public class LocalJobWorker {
+
+    private final GenerationJobRepository generationJobRepository;
+    private final TaskRepository taskRepository;
+    private final NovelGenerationTaskService novelGenerationTaskService;
+    private final ChapterGenerationTaskService chapterGenerationTaskService;
+    private final ExecutorFactory executorFactory;
+    private final String nodeId;
+    private final int concurrency;
+    private final long pollIntervalMillis;
+    private final long leaseSeconds;
+    private final int maxAttempts;
+    private final long retryBackoffSeconds;
+
+    private final Semaphore slots;
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "generation-job-poller");
+        t.setDaemon(true);
+        return t;
+    });
+    private ExecutorService workers;
+
+    public LocalJobWorker(GenerationJobRepository generationJobRepository,
+                          TaskRepository taskRepository,
+                          NovelGenerationTaskService novelGenerationTaskService,
+                          ChapterGenerationTaskService chapterGenerationTaskService,
+                          ExecutorFactory executorFactory,
+                          @Value("${stream.registry.node-id:}") String nodeId,
+                          @Value("${job.local.concurrency:4}") int concurrency,
+                          @Value("${job.local.poll-interval-ms:1000}") long pollIntervalMillis,
+                          @Value("${job.local.lease-seconds:60}") long leaseSeconds,
+                          @Value("${job.local.max-attempts:3}") int maxAttempts,
+                          @Value("${job.local.retry-backoff-seconds:30}") long retryBackoffSeconds) {
+        this.generationJobRepository = generationJobRepository;
+        this.taskRepository = taskRepository;
+        this.novelGenerationTaskService = novelGenerationTaskService;
+        this.chapterGenerationTaskService = chapterGenerationTaskService;
+        this.executorFactory = executorFactory;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.concurrency = Math.max(1, concurrency);
+        this.pollIntervalMillis = Math.max(100, pollIntervalMillis);
+        this.leaseSeconds = Math.max(3, leaseSeconds);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffSeconds = Math.max(0, retryBackoffSeconds);
+        this.slots = new Semaphore(this.concurrency);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            generationJobRepository.probe();
+        } catch (Exception e) {
+            throw new RuntimeException("job.dispatch.type=local requires the generation_job table "
+                    + "(see docs/create_tables.sql) on MySQL 8.0+; create it or set job.dispatch.type=inline", e);
+        }
+        workers = executorFactory.fixed("generation-job", concurrency);
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        long heartbeatSeconds = Math.max(1, leaseSeconds / 3);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        log.info("Local generation job worker started: node={}, concurrency={}", nodeId, concurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * 作业所在事务提交后立即轮询一次
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEnqueued(GenerationJobEnqueued event) {
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        try {
+            scheduler.execute(this::poll);
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 轮询一次：按空闲工作线程数认领并提交作业
+     */
+    public void poll() {
+        try {
+            int free = slots.availablePermits();
+            if (free == 0) {
+                return;
+            }
+            List<GenerationJob> jobs = generationJobRepository.claim(nodeId, free);
+            for (GenerationJob job : jobs) {
+                slots.acquireUninterruptibly();
+                running.add(job.getId());
+                workers.execute(() -> run(job));
+            }
+        } catch (Exception e) {
+            log.error("Error polling generation jobs", e);
+        }
+    }
+
+    /**
+     * 续约本节点执行中的作业，回收其他节点遗留的过期作业
+     */
+    public void heartbeat() {
+        try {
+            generationJobRepository.touch(nodeId, Set.copyOf(running));
+            int released = generationJobRepository.releaseExpired(LocalDateTime.now().minusSeconds(leaseSeconds));
+            if (released > 0) {
+                log.warn("Released {} generation jobs with expired lease", released);
+                wakeUp();
+            }
+        } catch (Exception e) {
+            log.error("Error renewing generation job leases", e);
+        }
+    }
+
+    private void run(GenerationJob job) {
+        try {
+            log.info("Run {} job {} (attempt {}): novelId={}, chapterId={}, taskId={}", job.getJobType(), job.getId(),
+                    job.getAttempts(), job.getNovelId(), job.getChapterId(), job.getTaskId());
+            execute(job);
+            job.setStatus(2);
+            job.setLastError(null);
+            generationJobRepository.save(job);
+        } catch (Exception e) {
+            failed(job, e);
+        } finally {
+            running.remove(job.getId());
+            slots.release();
+            wakeUp();
+        }
+    }
+
+    private void execute(GenerationJob job) {
+        switch (job.getJobType()) {
+            case GenerationJob.TYPE_NOVEL_STRUCTURE ->
+                    novelGenerationTaskService.doGenerateNovelStructure(job.getNovelId(), job.getTaskId(), job.getUserId());
+            case GenerationJob.TYPE_CHAPTER_OUTLINE ->
+                    novelGenerationTaskService.doGenerateChapterOutline(job.getNovelId(), job.getTaskId());
+            case GenerationJob.TYPE_CHAPTER_CONTENT ->
+                    chapterGenerationTaskService.doGenerateChapterContent(job.getNovelId(), job.getChapterId(), job.getTaskId());
+            default -> throw new RuntimeException("Unknown generation job type: " + job.getJobType());
+        }
+    }
+
+    private void failed(GenerationJob job, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        if (error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+        job.setLastError(error);
+        int attempts = job.getAttempts() != null ? job.getAttempts() : 1;
+        try {
+            if (attempts >= maxAttempts) {
+                log.error("Generation job {} failed after {} attempts", job.getId(), attempts, e);
+                job.setStatus(3);
+                generationJobRepository.save(job);
+                markTaskFailed(job, error);
+            } else {
+                long delay = retryBackoffSeconds << Math.min(attempts - 1, 10);
+                log.warn("Generation job {} failed (attempt {}), retry in {} s: {}", job.getId(), attempts, delay, error);
+                job.setStatus(0);
+                job.setLockedBy(null);
+                job.setAvailableAt(LocalDateTime.now().plusSeconds(delay));
+                generationJobRepository.save(job);
+            }
+        } catch (Exception saveError) {
+            // 状态未写回时作业保持执行中，续约停止后按过期作业重新认领
+            log.error("Error saving failed generation job {}", job.getId(), saveError);
+        }
+    }
+
+    private void markTaskFailed(GenerationJob job, String error) {
+        if (job.getTaskId() == null) {
+            return;
+        }
+        taskRepository.findById(job.getTaskId()).ifPresent(task -> {
+            if (task.getTaskStatus() != null && task.getTaskStatus() == 2) {
+                return;
+            }
+            task.setTaskStatus(3);
+            task.setErrorMessage(error);
+            taskRepository.save(task);
+        });
+    }
+}
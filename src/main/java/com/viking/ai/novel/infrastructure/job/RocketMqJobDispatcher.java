@@ -0,0 +1,47 @@
+package com.viking.ai.novel.infrastructure.job;
+
+import com.viking.ai.novel.infrastructure.mq.AiGenerateProducer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * RocketMQ 作业派发：事务提交后发送消息，由 mq 包下的消费者执行（需同时开启 rocketmq.enabled）
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "job.dispatch.type", havingValue = "rocketmq")
+public class RocketMqJobDispatcher implements GenerationJobDispatcher {
+
+    private final AiGenerateProducer aiGenerateProducer;
+
+    @Override
+    public void dispatchNovelStructure(Long novelId, Long taskId, Long userId) {
+        afterCommit(() -> aiGenerateProducer.sendNovelStructure(novelId, taskId, userId));
+    }
+
+    @Override
+    public void dispatchChapterOutline(Long novelId, Long taskId) {
+        afterCommit(() -> aiGenerateProducer.sendChapterOutline(novelId, taskId));
+    }
+
+    @Override
+    public void dispatchChapterContent(Long novelId, Long chapterId, Long taskId) {
+        afterCommit(() -> aiGenerateProducer.sendChapterContent(novelId, chapterId, taskId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
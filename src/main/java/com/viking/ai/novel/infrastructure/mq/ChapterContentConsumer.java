@@ -12,9 +12,9 @@ import org.springframework.stereotype.Component;
  * 章节内容生成 MQ 消费者：收到消息后执行 AI 生成
  */
 @Slf4j
-//@Component
+@Component
 @RequiredArgsConstructor
-@ConditionalOnProperty(name = "rocketmq.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "job.dispatch.type", havingValue = "rocketmq")
 @RocketMQMessageListener(
         topic = AiGenerateProducer.TOPIC_CHAPTER_CONTENT,
         consumerGroup = "ai-novel-chapter-consumer"
@@ -0,0 +1,216 @@
+package com.viking.ai.novel.infrastructure.mq;
+
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点流注册表：各节点通过 RocketMQ 广播消费同步流的归属。
+ * <p>
+ * 开始流时先查本地视图，集群内已有同 key 的流则拒绝，否则登记并广播 CLAIM；结束时广播 RELEASE。
+ * 停止命令广播 STOP，只有流所在节点执行取消。
+ * <p>
+ * 广播有延迟，两个节点几乎同时开始同一个流时都会通过本地检查；收到对方 CLAIM 后按
+ * （开始时间，节点 ID）较小者保留，另一方立即取消自己的流，因此重复调用模型的时间不超过一次广播延迟。
+ * 节点定时重发 CLAIM 续约，超过 3 个心跳周期未续约的远端流视为所在节点已下线。
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stream.registry.type", havingValue = "rocketmq")
+public class RocketMqStreamRegistry implements StreamRegistry {
+
+    public static final String TOPIC_STREAM_REGISTRY = "ai-novel-stream-registry";
+
+    private record LocalStream(StreamHandle handle, Instant startedAt) {
+    }
+
+    private record RemoteStream(String nodeId, Instant startedAt, long lastSeenMillis) {
+    }
+
+    private final RocketMQTemplate rocketMQTemplate;
+    private final String nodeId;
+    private final long heartbeatMillis;
+
+    private final Map<String, LocalStream> localStreams = new ConcurrentHashMap<>();
+    private final Map<String, RemoteStream> remoteStreams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stream-registry-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RocketMqStreamRegistry(RocketMQTemplate rocketMQTemplate,
+                                  @Value("${stream.registry.node-id:}") String nodeId,
+                                  @Value("${stream.registry.heartbeat-seconds:10}") long heartbeatSeconds) {
+        this.rocketMQTemplate = rocketMQTemplate;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.heartbeatMillis = TimeUnit.SECONDS.toMillis(Math.max(1, heartbeatSeconds));
+    }
+
+    @PostConstruct
+    public void init() {
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Stream registry node {} joined via RocketMQ broadcast", nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatScheduler.shutdownNow();
+        localStreams.keySet().forEach(key -> broadcast(StreamRegistryMessage.RELEASE, key, null));
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean register(String streamKey, StreamHandle handle) {
+        if (liveRemote(streamKey).isPresent()) {
+            return false;
+        }
+        Instant startedAt = Instant.now();
+        if (localStreams.putIfAbsent(streamKey, new LocalStream(handle, startedAt)) != null) {
+            return false;
+        }
+        broadcast(StreamRegistryMessage.CLAIM, streamKey, startedAt);
+        return true;
+    }
+
+    @Override
+    public void unregister(String streamKey, StreamHandle handle) {
+        LocalStream local = localStreams.get(streamKey);
+        if (local != null && local.handle() == handle && localStreams.remove(streamKey, local)) {
+            broadcast(StreamRegistryMessage.RELEASE, streamKey, null);
+        }
+    }
+
+    @Override
+    public boolean stop(String streamKey) {
+        LocalStream local = localStreams.get(streamKey);
+        if (local != null) {
+            local.handle().cancel();
+            return true;
+        }
+        Optional<RemoteStream> remote = liveRemote(streamKey);
+        if (remote.isEmpty()) {
+            return false;
+        }
+        send(new StreamRegistryMessage(StreamRegistryMessage.STOP, remote.get().nodeId(), streamKey, null));
+        log.info("Routed stop of stream {} to node {}", streamKey, remote.get().nodeId());
+        return true;
+    }
+
+    @Override
+    public Optional<StreamStatus> status(String streamKey) {
+        LocalStream local = localStreams.get(streamKey);
+        if (local != null) {
+            return Optional.of(new StreamStatus(streamKey, nodeId, local.startedAt(), true));
+        }
+        return liveRemote(streamKey).map(r -> new StreamStatus(streamKey, r.nodeId(), r.startedAt(), false));
+    }
+
+    /**
+     * 处理广播消息（含本节点自己发出的）
+     */
+    public void onMessage(StreamRegistryMessage message) {
+        String key = message.getStreamKey();
+        switch (message.getType()) {
+            case StreamRegistryMessage.CLAIM -> {
+                if (nodeId.equals(message.getNodeId())) {
+                    return;
+                }
+                Instant startedAt = Instant.ofEpochMilli(message.getStartedAt());
+                remoteStreams.put(key, new RemoteStream(message.getNodeId(), startedAt, System.currentTimeMillis()));
+                resolveConflict(key, message.getNodeId(), startedAt);
+            }
+            case StreamRegistryMessage.RELEASE -> {
+                if (!nodeId.equals(message.getNodeId())) {
+                    remoteStreams.computeIfPresent(key, (k, r) -> r.nodeId().equals(message.getNodeId()) ? null : r);
+                }
+            }
+            case StreamRegistryMessage.STOP -> {
+                if (nodeId.equals(message.getNodeId())) {
+                    LocalStream local = localStreams.get(key);
+                    if (local != null) {
+                        log.info("Stopping stream {} on request from another node", key);
+                        local.handle().cancel();
+                    }
+                }
+            }
+            default -> log.warn("Unknown stream registry message: {}", message);
+        }
+    }
+
+    /**
+     * 同一个流被两个节点同时开始：较晚（或节点 ID 较大）的一方让出自己的流（{@link StreamHandle#yieldToDuplicate()}），
+     * 不写回状态、不在共享主题上发送 stopped
+     */
+    private void resolveConflict(String streamKey, String otherNode, Instant otherStartedAt) {
+        LocalStream local = localStreams.get(streamKey);
+        if (local == null) {
+            return;
+        }
+        int order = local.startedAt().compareTo(otherStartedAt);
+        boolean otherWins = order > 0 || (order == 0 && otherNode.compareTo(nodeId) < 0);
+        if (otherWins && localStreams.remove(streamKey, local)) {
+            log.warn("Stream {} was also started on node {}, yielding the local duplicate", streamKey, otherNode);
+            local.handle().yieldToDuplicate();
+        }
+    }
+
+    private Optional<RemoteStream> liveRemote(String streamKey) {
+        RemoteStream remote = remoteStreams.get(streamKey);
+        if (remote == null) {
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() - remote.lastSeenMillis() > heartbeatMillis * 3) {
+            remoteStreams.remove(streamKey, remote);
+            return Optional.empty();
+        }
+        return Optional.of(remote);
+    }
+
+    private void heartbeat() {
+        localStreams.forEach((key, local) -> broadcast(StreamRegistryMessage.CLAIM, key, local.startedAt()));
+        remoteStreams.keySet().forEach(this::liveRemote);
+    }
+
+    private void broadcast(String type, String streamKey, Instant startedAt) {
+        send(new StreamRegistryMessage(type, nodeId, streamKey, startedAt != null ? startedAt.toEpochMilli() : null));
+    }
+
+    private void send(StreamRegistryMessage message) {
+        try {
+            rocketMQTemplate.asyncSend(TOPIC_STREAM_REGISTRY, message, new SendCallback() {
+                @Override
+                public void onSuccess(SendResult sendResult) {
+                }
+
+                @Override
+                public void onException(Throwable e) {
+                    log.warn("Failed to broadcast stream registry message {}", message, e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to broadcast stream registry message {}", message, e);
+        }
+    }
+}
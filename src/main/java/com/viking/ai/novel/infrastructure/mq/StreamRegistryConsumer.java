@@ -0,0 +1,29 @@
+package com.viking.ai.novel.infrastructure.mq;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.rocketmq.spring.annotation.MessageModel;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流注册表广播消费者：每个节点都收到全部消息
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stream.registry.type", havingValue = "rocketmq")
+@RocketMQMessageListener(
+        topic = RocketMqStreamRegistry.TOPIC_STREAM_REGISTRY,
+        consumerGroup = "ai-novel-stream-registry",
+        messageModel = MessageModel.BROADCASTING
+)
+public class StreamRegistryConsumer implements RocketMQListener<StreamRegistryMessage> {
+
+    private final RocketMqStreamRegistry streamRegistry;
+
+    @Override
+    public void onMessage(StreamRegistryMessage message) {
+        streamRegistry.onMessage(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.viking.ai.novel.infrastructure.mq;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 流注册表广播消息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamRegistryMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String CLAIM = "CLAIM";
+    public static final String RELEASE = "RELEASE";
+    public static final String STOP = "STOP";
+
+    private String type; // CLAIM: 开始或心跳续约 / RELEASE: 结束 / STOP: 停止命令（发往 nodeId 所在节点）
+    private String nodeId;
+    private String streamKey;
+    private Long startedAt;
+}
@@ -33,6 +33,11 @@ public class ChapterRepositoryImpl implements ChapterRepository {
         return jpaChapterRepository.findByNovelIdAndChapterNumber(novelId, chapterNumber);
     }
 
+    @Override
+    public List<Chapter> findByStatus(Integer status) {
+        return jpaChapterRepository.findByStatus(status);
+    }
+
     @Override
     public void deleteById(Long id) {
         jpaChapterRepository.deleteById(id);
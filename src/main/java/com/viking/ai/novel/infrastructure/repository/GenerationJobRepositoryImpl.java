@@ -0,0 +1,61 @@
+package com.viking.ai.novel.infrastructure.repository;
+
+import com.viking.ai.novel.domain.model.GenerationJob;
+import com.viking.ai.novel.domain.repository.GenerationJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+public class GenerationJobRepositoryImpl implements GenerationJobRepository {
+    private final JpaGenerationJobRepository jpaGenerationJobRepository;
+
+    @Override
+    public GenerationJob save(GenerationJob job) {
+        return jpaGenerationJobRepository.save(job);
+    }
+
+    @Override
+    public Optional<GenerationJob> findById(Long id) {
+        return jpaGenerationJobRepository.findById(id);
+    }
+
+    @Override
+    @Transactional
+    public void probe() {
+        jpaGenerationJobRepository.lockPending(LocalDateTime.now(), 0);
+    }
+
+    @Override
+    @Transactional
+    public List<GenerationJob> claim(String nodeId, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = jpaGenerationJobRepository.lockPending(now, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        jpaGenerationJobRepository.markClaimed(ids, nodeId, now);
+        return jpaGenerationJobRepository.findAllById(ids);
+    }
+
+    @Override
+    @Transactional
+    public int touch(String nodeId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jpaGenerationJobRepository.touch(ids, nodeId, LocalDateTime.now());
+    }
+
+    @Override
+    @Transactional
+    public int releaseExpired(LocalDateTime expiredBefore) {
+        return jpaGenerationJobRepository.releaseExpired(expiredBefore, LocalDateTime.now());
+    }
+}
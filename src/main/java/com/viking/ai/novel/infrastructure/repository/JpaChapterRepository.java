@@ -11,5 +11,6 @@ import java.util.Optional;
 public interface JpaChapterRepository extends JpaRepository<Chapter, Long> {
     List<Chapter> findByNovelId(Long novelId);
     Optional<Chapter> findByNovelIdAndChapterNumber(Long novelId, Integer chapterNumber);
+    List<Chapter> findByStatus(Integer status);
     void deleteByNovelId(Long novelId);
 }
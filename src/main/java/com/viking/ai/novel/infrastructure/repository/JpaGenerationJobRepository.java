@@ -0,0 +1,34 @@
+package com.viking.ai.novel.infrastructure.repository;
+
+import com.viking.ai.novel.domain.model.GenerationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface JpaGenerationJobRepository extends JpaRepository<GenerationJob, Long> {
+
+    @Query(value = "SELECT id FROM generation_job WHERE status = 0 AND available_at <= :now "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockPending(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE GenerationJob j SET j.status = 1, j.lockedBy = :nodeId, j.lockedAt = :now, "
+            + "j.attempts = j.attempts + 1, j.updatedAt = :now WHERE j.id IN :ids")
+    int markClaimed(@Param("ids") Collection<Long> ids, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE GenerationJob j SET j.lockedAt = :now WHERE j.id IN :ids AND j.lockedBy = :nodeId AND j.status = 1")
+    int touch(@Param("ids") Collection<Long> ids, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE GenerationJob j SET j.status = 0, j.lockedBy = null, j.updatedAt = :now "
+            + "WHERE j.status = 1 AND j.lockedAt < :expiredBefore")
+    int releaseExpired(@Param("expiredBefore") LocalDateTime expiredBefore, @Param("now") LocalDateTime now);
+}
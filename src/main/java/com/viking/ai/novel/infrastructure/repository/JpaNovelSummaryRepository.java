@@ -0,0 +1,15 @@
+package com.viking.ai.novel.infrastructure.repository;
+
+import com.viking.ai.novel.domain.model.NovelSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface JpaNovelSummaryRepository extends JpaRepository<NovelSummary, Long> {
+    List<NovelSummary> findByNovelIdAndLevel(Long novelId, Integer level);
+    Optional<NovelSummary> findByNovelIdAndLevelAndVolumeIndex(Long novelId, Integer level, Integer volumeIndex);
+    void deleteByNovelId(Long novelId);
+}
@@ -2,8 +2,13 @@ package com.viking.ai.novel.infrastructure.repository;
 
 import com.viking.ai.novel.domain.model.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +16,19 @@ public interface JpaTaskRepository extends JpaRepository<Task, Long> {
     List<Task> findByTaskTypeAndTaskStatus(String taskType, Integer taskStatus);
     List<Task> findByTaskRelationId(Long taskRelationId);
     List<Task> findByTaskStatusIn(List<Integer> statuses);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Task t SET t.lockedBy = :nodeId, t.lockedAt = :now WHERE t.id = :id "
+            + "AND (t.taskStatus IS NULL OR t.taskStatus <> 2) "
+            + "AND (t.lockedBy IS NULL OR t.lockedBy = :nodeId OR t.lockedAt < :expiredBefore)")
+    int claim(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now,
+              @Param("expiredBefore") LocalDateTime expiredBefore);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Task t SET t.lockedAt = :now WHERE t.id IN :ids AND t.lockedBy = :nodeId")
+    int touch(@Param("ids") Collection<Long> ids, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Task t SET t.lockedBy = null, t.lockedAt = null WHERE t.id = :id AND t.lockedBy = :nodeId")
+    int release(@Param("id") Long id, @Param("nodeId") String nodeId);
 }
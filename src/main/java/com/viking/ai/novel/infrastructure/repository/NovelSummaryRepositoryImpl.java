@@ -0,0 +1,35 @@
+package com.viking.ai.novel.infrastructure.repository;
+
+import com.viking.ai.novel.domain.model.NovelSummary;
+import com.viking.ai.novel.domain.repository.NovelSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+public class NovelSummaryRepositoryImpl implements NovelSummaryRepository {
+    private final JpaNovelSummaryRepository jpaNovelSummaryRepository;
+
+    @Override
+    public NovelSummary save(NovelSummary summary) {
+        return jpaNovelSummaryRepository.save(summary);
+    }
+
+    @Override
+    public List<NovelSummary> findByNovelIdAndLevel(Long novelId, Integer level) {
+        return jpaNovelSummaryRepository.findByNovelIdAndLevel(novelId, level);
+    }
+
+    @Override
+    public Optional<NovelSummary> findByNovelIdAndLevelAndVolumeIndex(Long novelId, Integer level, Integer volumeIndex) {
+        return jpaNovelSummaryRepository.findByNovelIdAndLevelAndVolumeIndex(novelId, level, volumeIndex);
+    }
+
+    @Override
+    public void deleteByNovelId(Long novelId) {
+        jpaNovelSummaryRepository.deleteByNovelId(novelId);
+    }
+}
@@ -4,7 +4,10 @@ import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.domain.repository.TaskRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,4 +40,25 @@ public class TaskRepositoryImpl implements TaskRepository {
     public List<Task> findByTaskStatusIn(List<Integer> statuses) {
         return jpaTaskRepository.findByTaskStatusIn(statuses);
     }
+
+    @Override
+    @Transactional
+    public boolean claim(Long id, String nodeId, LocalDateTime expiredBefore) {
+        return jpaTaskRepository.claim(id, nodeId, LocalDateTime.now(), expiredBefore) > 0;
+    }
+
+    @Override
+    @Transactional
+    public int touch(String nodeId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jpaTaskRepository.touch(ids, nodeId, LocalDateTime.now());
+    }
+
+    @Override
+    @Transactional
+    public void release(Long id, String nodeId) {
+        jpaTaskRepository.release(id, nodeId);
+    }
 }
@@ -0,0 +1,51 @@
+package com.viking.ai.novel.infrastructure.stream;
+
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单节点流注册表：进程内 Map
+ */
+@Component
+@ConditionalOnProperty(name = "stream.registry.type", havingValue = "local", matchIfMissing = true)
+public class LocalStreamRegistry implements StreamRegistry {
+
+    public static final String LOCAL_NODE = "local";
+
+    private record Entry(StreamHandle handle, Instant startedAt) {
+    }
+
+    private final Map<String, Entry> streams = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean register(String streamKey, StreamHandle handle) {
+        return streams.putIfAbsent(streamKey, new Entry(handle, Instant.now())) == null;
+    }
+
+    @Override
+    public void unregister(String streamKey, StreamHandle handle) {
+        streams.computeIfPresent(streamKey, (k, e) -> e.handle() == handle ? null : e);
+    }
+
+    @Override
+    public boolean stop(String streamKey) {
+        Entry entry = streams.get(streamKey);
+        if (entry == null) {
+            return false;
+        }
+        entry.handle().cancel();
+        return true;
+    }
+
+    @Override
+    public Optional<StreamStatus> status(String streamKey) {
+        return Optional.ofNullable(streams.get(streamKey))
+                .map(e -> new StreamStatus(streamKey, LOCAL_NODE, e.startedAt(), true));
+    }
+}
@@ -0,0 +1,58 @@
+package com.viking.ai.novel.infrastructure.stream;
+
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * 流式生成注册表：登记正在生成的流，保证同一个流在集群内只有一个节点在调用模型，
+ * 并把停止、状态查询路由到流所在的节点。
+ * <p>
+ * 实现由 stream.registry.type 选择：local（单节点，默认）/ rocketmq（多节点，广播同步）。
+ */
+public interface StreamRegistry {
+
+    /**
+     * 章节内容流的 key（WebSocket 流与批量生成共用，两者互斥）
+     */
+    static String chapterKey(Long novelId, Integer chapterNumber) {
+        return "chapter:" + novelId + ":" + chapterNumber;
+    }
+
+    /**
+     * 小说级流（structure / outline）的 key
+     */
+    static String novelKey(Long novelId, String streamType) {
+        return "novel:" + novelId + ":" + streamType;
+    }
+
+    /**
+     * 流状态
+     *
+     * @param nodeId 流所在节点
+     * @param local  是否在当前节点
+     */
+    record StreamStatus(String streamKey, String nodeId, Instant startedAt, boolean local) {
+    }
+
+    /**
+     * 登记在本节点开始的流；集群内已有同 key 的流时返回 false，调用方不应再调用模型
+     */
+    boolean register(String streamKey, StreamHandle handle);
+
+    /**
+     * 流结束（完成、出错、取消）后注销；handle 与登记时不一致时忽略
+     */
+    void unregister(String streamKey, StreamHandle handle);
+
+    /**
+     * 停止流：在本节点时直接取消，在其他节点时把停止命令发往所属节点；没有该流时返回 false
+     */
+    boolean stop(String streamKey);
+
+    /**
+     * 查询流状态，没有进行中的流时返回空
+     */
+    Optional<StreamStatus> status(String streamKey);
+}
@@ -1,7 +1,21 @@
 package com.viking.ai.novel.infrastructure.utils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 public class BasicUtils {
     public static String getCollectionName(Long userId, Long novelId) {
         return String.format("novel-chapters-%s-%s", userId, novelId);
     }
+
+    public static String sha256Hex(String raw) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package com.viking.ai.novel.interfaces.aop;
+
+import java.lang.annotation.*;
+
+/**
+ * 校验任务归属：方法参数中指定索引的值为 taskId，任务关联的小说（单章生成任务为关联章节所属小说）必须属于当前用户。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CheckTaskOwner {
+    /** 参数索引（0-based），该参数为任务 ID */
+    int paramIndex() default 0;
+}
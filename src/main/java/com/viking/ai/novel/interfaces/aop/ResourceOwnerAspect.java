@@ -4,10 +4,12 @@ import com.viking.ai.novel.application.service.ChapterService;
 import com.viking.ai.novel.application.service.CurrentUserService;
 import com.viking.ai.novel.application.service.NovelService;
 import com.viking.ai.novel.application.service.NovelVectorService;
+import com.viking.ai.novel.application.service.TaskService;
 import com.viking.ai.novel.application.service.UserVectorService;
 import com.viking.ai.novel.domain.model.Chapter;
 import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.NovelVector;
+import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.domain.model.UserVector;
 import com.viking.ai.novel.infrastructure.excep.ForbiddenException;
 import com.viking.ai.novel.infrastructure.excep.NotLoggedInException;
@@ -42,6 +44,7 @@ public class ResourceOwnerAspect {
     private final ChapterService chapterService;
     private final UserVectorService userVectorService;
     private final NovelVectorService novelVectorService;
+    private final TaskService taskService;
 
     @Before("""
         @annotation(com.viking.ai.novel.interfaces.aop.RequireLogin) ||
@@ -51,7 +54,8 @@ public class ResourceOwnerAspect {
         @annotation(com.viking.ai.novel.interfaces.aop.CheckNovelIdOwner) ||
         @annotation(com.viking.ai.novel.interfaces.aop.CheckRequestNovelId) ||
         @annotation(com.viking.ai.novel.interfaces.aop.CheckUserVectorOwner) ||
-        @annotation(com.viking.ai.novel.interfaces.aop.CheckNovelVectorOwner)
+        @annotation(com.viking.ai.novel.interfaces.aop.CheckNovelVectorOwner) ||
+        @annotation(com.viking.ai.novel.interfaces.aop.CheckTaskOwner)
         """)
     public void checkResourceOwner(JoinPoint joinPoint) {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
@@ -110,6 +114,13 @@ public class ResourceOwnerAspect {
                 throw new ForbiddenException("无权限操作该关联");
             }
         }
+        if (method.isAnnotationPresent(CheckTaskOwner.class)) {
+            CheckTaskOwner ann = method.getAnnotation(CheckTaskOwner.class);
+            Long taskId = getLongArg(args, ann.paramIndex());
+            if (taskId != null && !taskBelongsTo(taskId, currentUserId)) {
+                throw new ForbiddenException("无权限操作该任务");
+            }
+        }
     }
 
     private static HttpSession getSession() {
@@ -163,6 +174,16 @@ public class ResourceOwnerAspect {
                 .orElse(false);
     }
 
+    private boolean taskBelongsTo(Long taskId, long userId) {
+        Optional<Task> task = taskService.getTaskById(taskId);
+        if (task.isEmpty()) return false;
+        // 单章生成任务关联章节 ID，其余任务关联小说 ID
+        if (TaskService.TASK_TYPE_GENERATE_CHAPTER.equals(task.get().getTaskType())) {
+            return chapterBelongsToCurrentUser(task.get().getTaskRelationId(), userId);
+        }
+        return novelBelongsTo(task.get().getTaskRelationId(), userId);
+    }
+
     private boolean novelVectorBelongsTo(Long nvId, long userId) {
         Optional<NovelVector> nv = novelVectorService.getById(nvId);
         if (nv.isEmpty()) return false;
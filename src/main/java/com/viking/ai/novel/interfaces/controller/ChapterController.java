@@ -3,13 +3,19 @@ package com.viking.ai.novel.interfaces.controller;
 import com.viking.ai.novel.application.service.ChapterService;
 import com.viking.ai.novel.application.service.CurrentUserService;
 import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.interfaces.aop.CheckChapterOwner;
 import com.viking.ai.novel.interfaces.aop.CheckNovelIdOwner;
 import com.viking.ai.novel.interfaces.aop.CheckRequestNovelId;
 import com.viking.ai.novel.interfaces.aop.RequireLogin;
 import com.viking.ai.novel.interfaces.dto.ChapterDTO;
 import com.viking.ai.novel.interfaces.dto.CreateChapterRequest;
+import com.viking.ai.novel.interfaces.dto.GenerateChaptersRequest;
+import com.viking.ai.novel.interfaces.dto.StreamDraftDTO;
+import com.viking.ai.novel.interfaces.dto.TaskDTO;
 import com.viking.ai.novel.interfaces.mapper.ChapterMapper;
+import com.viking.ai.novel.interfaces.mapper.TaskMapper;
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -19,6 +25,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -29,7 +36,9 @@ public class ChapterController {
 
     private final ChapterService chapterService;
     private final CurrentUserService currentUserService;
+    private final StreamJournal streamJournal;
     private final ChapterMapper chapterMapper = ChapterMapper.INSTANCE;
+    private final TaskMapper taskMapper = TaskMapper.INSTANCE;
 
     @PostMapping
     @RequireLogin
@@ -45,6 +54,21 @@ public class ChapterController {
         return ResponseEntity.status(HttpStatus.CREATED).body(chapterMapper.toDTO(chapter));
     }
 
+    /**
+     * 批量生成章节内容，进度推送到 /topic/novels/{novelId}/generation
+     */
+    @PostMapping("/batch")
+    @RequireLogin
+    @CheckRequestNovelId(paramIndex = 0, field = "novelId")
+    public ResponseEntity<TaskDTO> generateChapters(@Valid @RequestBody GenerateChaptersRequest request) {
+        Task task = chapterService.generateChapters(
+                request.getNovelId(),
+                request.getFromChapter(),
+                request.getToChapter()
+        );
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(taskMapper.toDTO(task));
+    }
+
     @GetMapping("/{id}")
     @RequireLogin
     @CheckChapterOwner(paramIndex = 0)
@@ -82,4 +106,46 @@ public class ChapterController {
         chapterService.deleteChapter(id);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * 章节流式生成被停止、出错或进程中断后留下的草稿
+     */
+    @GetMapping("/{id}/draft")
+    @RequireLogin
+    @CheckChapterOwner(paramIndex = 0)
+    public ResponseEntity<StreamDraftDTO> getDraft(@PathVariable Long id) {
+        return findDraft(id)
+                .map(draft -> ResponseEntity.ok(StreamDraftDTO.from(draft)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 把草稿保存为章节正文（重新向量入库），随后删除草稿
+     */
+    @PostMapping("/{id}/draft/apply")
+    @RequireLogin
+    @CheckChapterOwner(paramIndex = 0)
+    public ResponseEntity<ChapterDTO> applyDraft(@PathVariable Long id) {
+        Optional<StreamJournal.Draft> draft = findDraft(id);
+        if (draft.isEmpty() || draft.get().status() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Chapter chapter = chapterService.updateChapter(id, null, draft.get().content());
+        streamJournal.discard(draft.get().key());
+        return ResponseEntity.ok(chapterMapper.toDTO(chapter));
+    }
+
+    @DeleteMapping("/{id}/draft")
+    @RequireLogin
+    @CheckChapterOwner(paramIndex = 0)
+    public ResponseEntity<Void> discardDraft(@PathVariable Long id) {
+        findDraft(id).ifPresent(draft -> streamJournal.discard(draft.key()));
+        return ResponseEntity.noContent().build();
+    }
+
+    private Optional<StreamJournal.Draft> findDraft(Long chapterId) {
+        return chapterService.getChapterById(chapterId)
+                .flatMap(chapter -> streamJournal.readDraft(
+                        StreamJournal.chapterKey(chapter.getNovelId(), chapter.getChapterNumber())));
+    }
 }
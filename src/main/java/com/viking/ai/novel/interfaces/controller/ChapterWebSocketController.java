@@ -1,5 +1,7 @@
 package com.viking.ai.novel.interfaces.controller;
 
+import com.viking.ai.novel.application.service.ChapterCompletionPipeline;
+import com.viking.ai.novel.application.service.ChapterContextBuilder;
 import com.viking.ai.novel.domain.model.Chapter;
 import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.UserModel;
@@ -7,14 +9,17 @@ import com.viking.ai.novel.domain.repository.ChapterRepository;
 import com.viking.ai.novel.domain.repository.NovelRepository;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
 import com.viking.ai.novel.infrastructure.ai.AiModelService;
-import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
 import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
-import com.viking.ai.novel.infrastructure.utils.BasicUtils;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
 import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
 import com.viking.ai.novel.interfaces.dto.ChapterStreamRequest;
+import com.viking.ai.novel.interfaces.dto.ResumeStreamRequest;
 import com.viking.ai.novel.interfaces.dto.StopStreamRequest;
-import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.store.embedding.EmbeddingMatch;
+import com.viking.ai.novel.interfaces.stream.CoalescingStreamWriter;
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
+import com.viking.ai.novel.interfaces.stream.StreamSetupExecutor;
+import com.viking.ai.novel.interfaces.stream.StreamWriterFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -22,12 +27,9 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * 章节内容 WebSocket 流式生成
@@ -35,7 +37,9 @@ import java.util.stream.Collectors;
  * 客户端：
  * - 连接 /ws
  * - 订阅 /topic/chapters/{novelId}/{chapterNumber}
- * - 发送消息到 /app/chapters/stream 触发生成
+ * - 发送消息到 /app/chapters/stream 触发生成；同一章节已在生成时接入现有流，收到 attached 及补发的已推送内容
+ * - 发送消息到 /app/chapters/status 查询是否正在生成（集群内任一节点）
+ * - 重连后订阅 /user/topic/chapters/{novelId}/{chapterNumber} 并发送 /app/chapters/resume 补发缺失消息
  */
 @Controller
 @RequiredArgsConstructor
@@ -46,11 +50,12 @@ public class ChapterWebSocketController {
     private final NovelRepository novelRepository;
     private final ChapterRepository chapterRepository;
     private final UserModelRepository userModelRepository;
-    private final QdrantService qdrantService;
     private final AiModelService aiModelService;
-
-    // 存储正在进行的章节流式生成任务，key: "novelId:chapterNumber"
-    private final ConcurrentHashMap<String, AtomicBoolean> activeChapterStreams = new ConcurrentHashMap<>();
+    private final StreamWriterFactory streamWriterFactory;
+    private final ChapterContextBuilder chapterContextBuilder;
+    private final ChapterCompletionPipeline chapterCompletionPipeline;
+    private final StreamRegistry streamRegistry;
+    private final StreamSetupExecutor streamSetupExecutor;
 
     @MessageMapping("/chapters/stream")
     public void streamChapter(ChapterStreamRequest request, Principal principal) {
@@ -67,20 +72,56 @@ public class ChapterWebSocketController {
 
         Long novelId = request.getNovelId();
         Integer chapterNumber = request.getChapterNumber();
+        // 登记流与创建写出器之前校验归属，越权请求不占用流 key，也不替换该章节的写出器
+        if (!ownsNovel(currentUserId, novelId)) {
+            messagingTemplate.convertAndSendToUser(principal.getName(), destination,
+                    new ChapterStreamPayload("error", "无权限操作该小说"));
+            return;
+        }
+
+        // 集群内登记（single-flight）：同一章节已在生成时，重复请求接入现有流，不再调用模型
+        String streamKey = StreamRegistry.chapterKey(novelId, chapterNumber);
+        StreamHandle handle = new StreamHandle();
+        if (!streamRegistry.register(streamKey, handle)) {
+            attachToRunningStream(streamKey, destination, principal);
+            return;
+        }
+
+        // 写出器在受理时创建，准备期间到达的重复请求也能接入
+        CoalescingStreamWriter writer = streamWriterFactory.create(destination,
+                StreamJournal.chapterKey(novelId, chapterNumber));
+        // 查库、构造前文、向量检索放到准备线程池，入站通道线程立即返回；请求方先收到 accepted（content 为前面排队的请求数）
+        int ahead = streamSetupExecutor.submit(() -> startChapterStream(request, writer, streamKey, handle));
+        if (ahead < 0) {
+            streamRegistry.unregister(streamKey, handle);
+            writer.finish("error", "服务繁忙，请稍后重试");
+            return;
+        }
+        messagingTemplate.convertAndSendToUser(principal.getName(), destination,
+                new ChapterStreamPayload(CoalescingStreamWriter.TYPE_ACCEPTED, String.valueOf(ahead)));
+    }
 
-        // 创建停止标记
-        String streamKey = String.format("%d:%d", novelId, chapterNumber);
-        AtomicBoolean stopped = new AtomicBoolean(false);
-        activeChapterStreams.put(streamKey, stopped);
+    /**
+     * 在准备线程池上执行：加载章节上下文并开始调用模型
+     */
+    private void startChapterStream(ChapterStreamRequest request, CoalescingStreamWriter writer,
+                                    String streamKey, StreamHandle handle) {
+        Long novelId = request.getNovelId();
+        Integer chapterNumber = request.getChapterNumber();
+        if (handle.isCancelled()) {
+            // 排队期间已被停止（或让出给其他节点），不再准备上下文
+            streamRegistry.unregister(streamKey, handle);
+            if (handle.isYielded()) {
+                writer.abandon();
+            } else {
+                writer.finish("stopped", null);
+            }
+            return;
+        }
 
         try {
             Novel novel = novelRepository.findById(novelId)
                     .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
-            if (!currentUserId.equals(novel.getUserId())) {
-                activeChapterStreams.remove(streamKey);
-                messagingTemplate.convertAndSend(destination, new ChapterStreamPayload("error", "无权限操作该小说"));
-                return;
-            }
             UserModel model = userModelRepository.findByUserIdAndType(
                             novel.getUserId(), ModelTypeEnum.NORMAL.getType())
                     .orElseThrow(() -> new RuntimeException("User model not found: " + novel.getUserId()));
@@ -96,25 +137,17 @@ public class ChapterWebSocketController {
                         .novelId(novelId)
                         .chapterNumber(chapterNumber)
                         .title(request.getTitle())
-                        .abstractContent(request.getAbstractContent())
+                        .plannedOutline(request.getAbstractContent())
                         .status(1)
                         .build();
                 return chapterRepository.save(ch);
             });
 
-            // 构造前文摘要
-            List<Chapter> previousChapters = chapterRepository.findByNovelId(novelId)
-                    .stream()
-                    .filter(c -> c.getChapterNumber() < chapterNumber)
-                    .sorted((a, b) -> Integer.compare(a.getChapterNumber(), b.getChapterNumber()))
-                    .collect(Collectors.toList());
-            List<String> previousAbstracts = previousChapters.stream()
-                    .map(Chapter::getAbstractContent)
-                    .filter(abstractContent -> abstractContent != null && !abstractContent.isEmpty())
-                    .collect(Collectors.toList());
+            // 构造前文摘要（按 token 预算分层裁剪）
+            String previousContext = chapterContextBuilder.buildPreviousContext(novelId, chapterNumber);
 
             // 查询向量数据库获取最相关的top3片段
-            List<String> relevantSnippets = queryRelevantSnippets(novel, chapter);
+            List<String> relevantSnippets = chapterContextBuilder.queryRelevantSnippets(novel, chapter, embeddingModel, 3);
 
             // 标记处理中
             chapter.setStatus(1);
@@ -126,77 +159,169 @@ public class ChapterWebSocketController {
                     novel.getSettingText(),
                     novel.getStructure(),
                     chapter.getTitle(),
-                    chapter.getAbstractContent(),
-                    previousAbstracts,
+                    ChapterContextBuilder.chapterBrief(chapter),
+                    previousContext,
                     novel.getChapterWordCount(),
                     relevantSnippets,
                     model,
                     new AiModelService.ChapterStreamCallback() {
                         @Override
                         public void onDelta(String text) {
-                            if (stopped.get()) {
+                            if (handle.isCancelled()) {
                                 return;
                             }
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("delta", text));
+                            writer.delta(text);
                         }
 
                         @Override
                         public void onComplete(String fullText) {
-                            activeChapterStreams.remove(streamKey);
-                            if (stopped.get()) {
-                                messagingTemplate.convertAndSend(destination,
-                                        new ChapterStreamPayload("stopped", null));
+                            streamRegistry.unregister(streamKey, handle);
+                            // 先把已合并的增量推送完，保存、摘要、向量交给落库流水线，不占用模型回调线程
+                            writer.flush();
+                            chapterCompletionPipeline.submit(novel, chapter, fullText, model, embeddingModel,
+                                    completionListener(writer));
+                        }
+
+                        @Override
+                        public void onQueued(int position) {
+                            writer.send("queued", String.valueOf(position));
+                        }
+
+                        @Override
+                        public void onCancelled(String partialText) {
+                            streamRegistry.unregister(streamKey, handle);
+                            if (handle.isYielded()) {
+                                // 其他节点在生成同一章，章节状态与主题上的消息归胜出方
+                                writer.abandon();
                                 return;
                             }
-                            try {
-                                // 生成完成，保存章节、生成摘要、入库向量、创建向量关联
-                                saveChapter(novel, chapter, fullText, model, embeddingModel);
-
-                                messagingTemplate.convertAndSend(destination,
-                                        new ChapterStreamPayload("complete", null));
-                            } catch (Exception e) {
-                                log.error("Error finishing streamed chapter {}", chapter.getId(), e);
-                                messagingTemplate.convertAndSend(destination,
-                                        new ChapterStreamPayload("error", e.getMessage()));
-                            }
+                            markGeneratingChapter(chapter.getId(), 3);
+                            // 已生成的部分保留在流式日志中作为草稿
+                            writer.finish("stopped", null);
                         }
 
                         @Override
                         public void onError(Throwable t) {
-                            activeChapterStreams.remove(streamKey);
+                            streamRegistry.unregister(streamKey, handle);
                             log.error("Error streaming chapter content", t);
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("error", t.getMessage()));
+                            // 出错或被监督器判定空闲超时：章节回到待处理，可重新生成
+                            markGeneratingChapter(chapter.getId(), 0);
+                            writer.finish("error", t.getMessage());
                         }
-                    }
+                    },
+                    handle
             );
         } catch (Exception e) {
-            activeChapterStreams.remove(streamKey);
+            streamRegistry.unregister(streamKey, handle);
             log.error("Error starting chapter stream", e);
-            messagingTemplate.convertAndSend(destination,
-                    new ChapterStreamPayload("error", e.getMessage()));
+            writer.finish("error", e.getMessage());
+        }
+    }
+
+    /**
+     * 重复的生成请求（双击、多个标签页）：本节点上的流补发已推送内容后继续由主题推送；
+     * 流在其他节点时实时消息经代理中继送达，只回复 attached；批量任务生成中的章节没有流可接入，回复错误
+     */
+    private void attachToRunningStream(String streamKey, String destination, Principal principal) {
+        Consumer<ChapterStreamPayload> sink = payload ->
+                messagingTemplate.convertAndSendToUser(principal.getName(), destination, payload);
+        if (streamWriterFactory.attach(destination, sink)) {
+            log.info("Attached duplicate request to running chapter stream: {}", streamKey);
+            return;
+        }
+        boolean remote = streamRegistry.status(streamKey).map(status -> !status.local()).orElse(false);
+        if (remote) {
+            log.info("Attached duplicate request to chapter stream on another node: {}", streamKey);
+            sink.accept(new ChapterStreamPayload(CoalescingStreamWriter.TYPE_ATTACHED, null));
+        } else {
+            log.info("Rejected duplicate chapter stream: {}", streamKey);
+            sink.accept(new ChapterStreamPayload("error", "该章节正在生成中"));
+        }
+    }
+
+    /**
+     * 重连或迟到的客户端请求补发：补发消息只发给请求方（订阅 /user/topic/chapters/{novelId}/{chapterNumber}），
+     * 客户端按 seq 去重后与主题上的实时消息合并
+     */
+    @MessageMapping("/chapters/resume")
+    public void resumeChapterStream(ResumeStreamRequest request, Principal principal) {
+        if (request.getNovelId() == null || request.getChapterNumber() == null) {
+            log.warn("Invalid resume chapter stream request: {}", request);
+            return;
         }
+        if (!ownsNovel(principalToUserId(principal), request.getNovelId())) {
+            log.warn("Rejected resume chapter stream request: {}", request);
+            return;
+        }
+        String destination = String.format("/topic/chapters/%d/%d", request.getNovelId(), request.getChapterNumber());
+        Consumer<ChapterStreamPayload> sink = payload ->
+                messagingTemplate.convertAndSendToUser(principal.getName(), destination, payload);
+        streamWriterFactory.find(destination).ifPresentOrElse(
+                writer -> writer.replay(request.getStreamId(), request.getLastSeq(), sink),
+                () -> sink.accept(new ChapterStreamPayload(CoalescingStreamWriter.TYPE_REPLAY_MISSING, null)));
     }
 
     @MessageMapping("/chapters/stop")
-    public void stopChapterStream(StopStreamRequest request) {
+    public void stopChapterStream(StopStreamRequest request, Principal principal) {
         if (request.getNovelId() == null || request.getChapterNumber() == null) {
             log.warn("Invalid stop chapter stream request: {}", request);
             return;
         }
+        if (!ownsNovel(principalToUserId(principal), request.getNovelId())) {
+            log.warn("Rejected stop chapter stream request: {}", request);
+            return;
+        }
 
-        String streamKey = String.format("%d:%d", request.getNovelId(), request.getChapterNumber());
-        AtomicBoolean stopped = activeChapterStreams.get(streamKey);
-
-        if (stopped != null) {
-            stopped.set(true);
+        String streamKey = StreamRegistry.chapterKey(request.getNovelId(), request.getChapterNumber());
+        // 取消上游请求并释放连接，章节标记为已取消；流在其他节点时由注册表转发
+        if (streamRegistry.stop(streamKey)) {
             log.info("Stopped chapter stream: {}", streamKey);
         } else {
             log.warn("Chapter stream not found: {}", streamKey);
         }
     }
 
+    /**
+     * 查询章节是否正在生成（任一节点），结果以 status 消息（running / idle）发给请求方
+     */
+    @MessageMapping("/chapters/status")
+    public void chapterStreamStatus(StopStreamRequest request, Principal principal) {
+        if (request.getNovelId() == null || request.getChapterNumber() == null || principal == null) {
+            log.warn("Invalid chapter stream status request: {}", request);
+            return;
+        }
+        String destination = String.format("/topic/chapters/%d/%d", request.getNovelId(), request.getChapterNumber());
+        boolean running = streamRegistry.status(
+                StreamRegistry.chapterKey(request.getNovelId(), request.getChapterNumber())).isPresent();
+        messagingTemplate.convertAndSendToUser(principal.getName(), destination,
+                new ChapterStreamPayload("status", running ? "running" : "idle"));
+    }
+
+    /**
+     * 小说是否属于当前用户（按主键查询）
+     */
+    private boolean ownsNovel(Long currentUserId, Long novelId) {
+        return currentUserId != null && novelRepository.findById(novelId)
+                .map(novel -> currentUserId.equals(novel.getUserId()))
+                .orElse(false);
+    }
+
+    /**
+     * 仍处于生成中（1）的章节改为指定状态：3 已取消，0 待处理（出错）
+     */
+    private void markGeneratingChapter(Long chapterId, int status) {
+        try {
+            chapterRepository.findById(chapterId).ifPresent(c -> {
+                if (c.getStatus() != null && c.getStatus() == 1) {
+                    c.setStatus(status);
+                    chapterRepository.save(c);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Error marking chapter {} as {}", chapterId, status, e);
+        }
+    }
+
     private static Long principalToUserId(Principal principal) {
         if (principal == null || principal.getName() == null) return null;
         try {
@@ -207,75 +332,39 @@ public class ChapterWebSocketController {
     }
 
     /**
-     * 查询相关片段
+     * 落库流水线事件转为推送消息：正文落库即发送 complete，摘要与向量结果随后以 abstract / indexed 推送，
+     * 全部写回后发送 saved
      */
-    private List<String> queryRelevantSnippets(Novel novel, Chapter chapter) {
-        List<String> relevantSnippets = new ArrayList<>();
-        try {
-            // 构建查询文本：章节标题 + 章节摘要 + 世界观设定
-            StringBuilder queryBuilder = new StringBuilder();
-            if (chapter.getTitle() != null && !chapter.getTitle().isEmpty()) {
-                queryBuilder.append("章节标题：").append(chapter.getTitle()).append("\n");
+    private static ChapterCompletionPipeline.Listener completionListener(CoalescingStreamWriter writer) {
+        return new ChapterCompletionPipeline.Listener() {
+            @Override
+            public void onTextPersisted(Chapter chapter) {
+                writer.finish("complete", null);
             }
-            if (chapter.getAbstractContent() != null && !chapter.getAbstractContent().isEmpty()) {
-                queryBuilder.append("章节摘要：").append(chapter.getAbstractContent()).append("\n");
+
+            @Override
+            public void onAbstract(String abstractContent) {
+                writer.send("abstract", abstractContent);
             }
-            if (novel.getSettingText() != null && !novel.getSettingText().isEmpty()) {
-                queryBuilder.append("世界观设定：").append(novel.getSettingText());
+
+            @Override
+            public void onVectors(int chunkCount) {
+                writer.send("indexed", String.valueOf(chunkCount));
             }
 
-            String queryText = queryBuilder.toString();
-            if (!queryText.isEmpty()) {
-                // 获取用户的向量模型（用于embedding）
-                UserModel vectorModel = userModelRepository.findByUserIdAndType(
-                                novel.getUserId(), ModelTypeEnum.VECTOR.getType())
-                        .orElse(null);
-
-                if (vectorModel != null) {
-                    // 查询向量数据库，获取top3相关片段
-                    String collectionName = BasicUtils.getCollectionName(novel.getUserId(), novel.getId());
-                    List<EmbeddingMatch<TextSegment>> matches = qdrantService.searchSimilar(queryText, 3, vectorModel, collectionName);
-                    for (EmbeddingMatch<TextSegment> match : matches) {
-                        TextSegment segment = match.embedded();
-                        if (segment != null && segment.text() != null) {
-                            String text = segment.text().trim();
-                            if (!text.isEmpty()) {
-                                relevantSnippets.add(text);
-                            }
-                        }
-                    }
-                    log.info("Found {} relevant snippets for chapter {} of novel {}",
-                            relevantSnippets.size(), chapter.getChapterNumber(), novel.getId());
+            @Override
+            public void onStageFailed(String stage, Throwable t) {
+                if (ChapterCompletionPipeline.STAGE_PERSIST.equals(stage)) {
+                    writer.finish("error", t.getMessage());
                 } else {
-                    log.warn("Vector model not found for user {}, skipping RAG search", novel.getUserId());
+                    writer.send("stage_error", stage + ": " + t.getMessage());
                 }
             }
-        } catch (Exception e) {
-            log.error("Error searching relevant snippets from vector database", e);
-            // 不中断流程，继续生成章节内容
-        }
-        return relevantSnippets;
-    }
-
-    private void saveChapter(Novel novel, Chapter chapter, String fullText, UserModel model, UserModel embeddingModel) {
-        chapter.setContent(fullText);
-        if (chapter.getAbstractContent() == null || chapter.getAbstractContent().isEmpty()) {
-            String abstractContent = aiModelService.generateChapterAbstract(fullText, model);
-            chapter.setAbstractContent(abstractContent);
-        }
 
-        try {
-            if (chapter.getVectorId() != null) {
-                qdrantService.deleteVector(chapter.getVectorId());
+            @Override
+            public void onFinished(Chapter chapter) {
+                writer.send("saved", null);
             }
-            String vectorId = qdrantService.storeChapter(
-                    chapter.getId().toString(), fullText, embeddingModel, BasicUtils.getCollectionName(novel.getUserId(), novel.getId()));
-            chapter.setVectorId(vectorId);
-        } catch (Exception e) {
-            log.error("Error storing chapter to Qdrant", e);
-        }
-        chapter.setStatus(2);
-        chapterRepository.save(chapter);
+        };
     }
 }
-
@@ -2,14 +2,20 @@ package com.viking.ai.novel.interfaces.controller;
 
 import com.viking.ai.novel.application.service.CurrentUserService;
 import com.viking.ai.novel.application.service.NovelExportService;
+import com.viking.ai.novel.application.service.NovelGenerationTaskService;
 import com.viking.ai.novel.application.service.NovelService;
 import com.viking.ai.novel.domain.model.Novel;
+import com.viking.ai.novel.domain.model.Task;
 import com.viking.ai.novel.interfaces.aop.CheckNovelOwner;
 import com.viking.ai.novel.interfaces.aop.CheckUserId;
 import com.viking.ai.novel.interfaces.aop.RequireLogin;
 import com.viking.ai.novel.interfaces.dto.CreateNovelRequest;
 import com.viking.ai.novel.interfaces.dto.NovelDTO;
+import com.viking.ai.novel.interfaces.dto.StreamDraftDTO;
+import com.viking.ai.novel.interfaces.dto.TaskDTO;
 import com.viking.ai.novel.interfaces.mapper.NovelMapper;
+import com.viking.ai.novel.interfaces.mapper.TaskMapper;
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -34,7 +40,10 @@ public class NovelController {
     private final NovelService novelService;
     private final NovelExportService novelExportService;
     private final CurrentUserService currentUserService;
+    private final NovelGenerationTaskService novelGenerationTaskService;
+    private final StreamJournal streamJournal;
     private final NovelMapper novelMapper = NovelMapper.INSTANCE;
+    private final TaskMapper taskMapper = TaskMapper.INSTANCE;
 
     @PostMapping
     @RequireLogin
@@ -130,4 +139,35 @@ public class NovelController {
         Novel novel = novelService.generateChapterOutline(id, async);
         return ResponseEntity.ok(novelMapper.toDTO(novel));
     }
+
+    /**
+     * 按章节大纲生成整本小说；已有未完成的整本生成任务时从检查点续跑，不重新生成已完成章节
+     */
+    @PostMapping("/{id}/generate-all")
+    @RequireLogin
+    @CheckNovelOwner(paramIndex = 0)
+    public ResponseEntity<TaskDTO> generateAllChapters(@PathVariable Long id) {
+        Task task = novelGenerationTaskService.startNovelGeneration(id);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(taskMapper.toDTO(task));
+    }
+
+    /**
+     * 小说结构 / 章节大纲流式生成中断后留下的草稿，streamType 为 structure 或 outline
+     */
+    @GetMapping("/{id}/drafts/{streamType}")
+    @RequireLogin
+    @CheckNovelOwner(paramIndex = 0)
+    public ResponseEntity<StreamDraftDTO> getStreamDraft(@PathVariable Long id, @PathVariable String streamType) {
+        return streamJournal.readDraft(StreamJournal.novelKey(id, streamType))
+                .map(draft -> ResponseEntity.ok(StreamDraftDTO.from(draft)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}/drafts/{streamType}")
+    @RequireLogin
+    @CheckNovelOwner(paramIndex = 0)
+    public ResponseEntity<Void> discardStreamDraft(@PathVariable Long id, @PathVariable String streamType) {
+        streamJournal.discard(StreamJournal.novelKey(id, streamType));
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -4,11 +4,18 @@ import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.UserModel;
 import com.viking.ai.novel.domain.repository.NovelRepository;
 import com.viking.ai.novel.domain.repository.UserModelRepository;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
 import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
 import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
 import com.viking.ai.novel.interfaces.dto.NovelStreamRequest;
+import com.viking.ai.novel.interfaces.dto.ResumeStreamRequest;
 import com.viking.ai.novel.interfaces.dto.StopStreamRequest;
 import com.viking.ai.novel.interfaces.strategy.NovelStreamStrategy;
+import com.viking.ai.novel.interfaces.stream.CoalescingStreamWriter;
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
+import com.viking.ai.novel.interfaces.stream.StreamSetupExecutor;
+import com.viking.ai.novel.interfaces.stream.StreamWriterFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -17,8 +24,7 @@ import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * 小说结构和章节大纲 WebSocket 流式生成
@@ -26,8 +32,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 客户端：
  * - 连接 /ws
  * - 订阅 /topic/novels/{novelId}/structure 或 /topic/novels/{novelId}/outline
- * - 发送消息到 /app/novels/stream 触发生成
+ * - 发送消息到 /app/novels/stream 触发生成；同类生成已在进行时接入现有流，收到 attached 及补发的已推送内容
  * - 发送消息到 /app/novels/stop 停止生成
+ * - 发送消息到 /app/novels/status 查询是否正在生成（集群内任一节点）
+ * - 重连后订阅 /user/topic/novels/{novelId}/{streamType} 并发送 /app/novels/resume 补发缺失消息
  */
 @Controller
 @RequiredArgsConstructor
@@ -38,9 +46,9 @@ public class NovelWebSocketController {
     private final NovelRepository novelRepository;
     private final UserModelRepository userModelRepository;
     private final List<NovelStreamStrategy> streamStrategies;
-
-    // 存储正在进行的流式生成任务，key: "novelId:streamType"
-    private final ConcurrentHashMap<String, AtomicBoolean> activeStreams = new ConcurrentHashMap<>();
+    private final StreamWriterFactory streamWriterFactory;
+    private final StreamRegistry streamRegistry;
+    private final StreamSetupExecutor streamSetupExecutor;
 
     @MessageMapping("/novels/stream")
     public void streamNovel(NovelStreamRequest request, Principal principal) {
@@ -65,50 +73,153 @@ public class NovelWebSocketController {
         }
 
         String destination = strategy.buildDestination(novelId);
+        // 登记流与创建写出器之前校验归属，越权请求不占用流 key，也不替换该小说的写出器
+        if (!ownsNovel(currentUserId, novelId)) {
+            messagingTemplate.convertAndSendToUser(principal.getName(), destination,
+                    new ChapterStreamPayload("error", "无权限操作该小说"));
+            return;
+        }
 
-        String streamKey = String.format("%d:%s", novelId, streamType);
-        AtomicBoolean stopped = new AtomicBoolean(false);
-        activeStreams.put(streamKey, stopped);
+        String streamKey = StreamRegistry.novelKey(novelId, streamType);
+        StreamHandle handle = new StreamHandle();
+        // single-flight：同一小说的同类生成已在进行时，重复请求接入现有流，不再调用模型
+        if (!streamRegistry.register(streamKey, handle)) {
+            attachToRunningStream(streamKey, destination, principal);
+            return;
+        }
+
+        // 写出器在受理时创建，准备期间到达的重复请求也能接入
+        CoalescingStreamWriter writer = streamWriterFactory.create(destination,
+                StreamJournal.novelKey(novelId, strategy.getType()));
+        // 查库与构造提示词放到准备线程池，入站通道线程立即返回；请求方先收到 accepted（content 为前面排队的请求数）
+        int ahead = streamSetupExecutor.submit(() -> startNovelStream(request, strategy, writer, streamKey, handle));
+        if (ahead < 0) {
+            streamRegistry.unregister(streamKey, handle);
+            writer.finish("error", "服务繁忙，请稍后重试");
+            return;
+        }
+        messagingTemplate.convertAndSendToUser(principal.getName(), destination,
+                new ChapterStreamPayload(CoalescingStreamWriter.TYPE_ACCEPTED, String.valueOf(ahead)));
+    }
 
+    /**
+     * 在准备线程池上执行：加载小说与模型配置并交给策略开始生成
+     */
+    private void startNovelStream(NovelStreamRequest request, NovelStreamStrategy strategy,
+                                  CoalescingStreamWriter writer, String streamKey, StreamHandle handle) {
+        Long novelId = request.getNovelId();
+        if (handle.isCancelled()) {
+            // 排队期间已被停止；让出给其他节点时不发送 stopped
+            streamRegistry.unregister(streamKey, handle);
+            if (handle.isYielded()) {
+                writer.abandon();
+            } else {
+                writer.finish("stopped", null);
+            }
+            return;
+        }
         try {
             Novel novel = novelRepository.findById(novelId)
                     .orElseThrow(() -> new RuntimeException("Novel not found: " + novelId));
-            if (!currentUserId.equals(novel.getUserId())) {
-                activeStreams.remove(streamKey);
-                messagingTemplate.convertAndSend(destination, new ChapterStreamPayload("error", "无权限操作该小说"));
-                return;
-            }
             UserModel model = userModelRepository.findByUserIdAndType(
                             novel.getUserId(), ModelTypeEnum.NORMAL.getType())
                     .orElseThrow(() -> new RuntimeException("User model not found: " + novel.getUserId()));
 
-            strategy.stream(novel, model, messagingTemplate, stopped, request, () -> activeStreams.remove(streamKey));
+            strategy.stream(novel, model, writer, handle, request, () -> streamRegistry.unregister(streamKey, handle));
         } catch (Exception e) {
-            activeStreams.remove(streamKey);
+            streamRegistry.unregister(streamKey, handle);
             log.error("Error starting novel stream", e);
-            messagingTemplate.convertAndSend(destination,
-                    new ChapterStreamPayload("error", e.getMessage()));
+            writer.finish("error", e.getMessage());
         }
     }
 
     @MessageMapping("/novels/stop")
-    public void stopNovelStream(StopStreamRequest request) {
+    public void stopNovelStream(StopStreamRequest request, Principal principal) {
         if (request.getNovelId() == null || request.getStreamType() == null) {
             log.warn("Invalid stop stream request: {}", request);
             return;
         }
+        if (!ownsNovel(principalToUserId(principal), request.getNovelId())) {
+            log.warn("Rejected stop stream request: {}", request);
+            return;
+        }
 
-        String streamKey = String.format("%d:%s", request.getNovelId(), request.getStreamType());
-        AtomicBoolean stopped = activeStreams.get(streamKey);
-        
-        if (stopped != null) {
-            stopped.set(true);
+        String streamKey = StreamRegistry.novelKey(request.getNovelId(), request.getStreamType());
+        // 取消上游请求，已生成的部分由流式日志保留为草稿；流在其他节点时由注册表转发
+        if (streamRegistry.stop(streamKey)) {
             log.info("Stopped stream: {}", streamKey);
         } else {
             log.warn("Stream not found: {}", streamKey);
         }
     }
 
+    /**
+     * 重复的生成请求：本节点上的流补发已推送内容后继续由主题推送，流在其他节点时只回复 attached
+     */
+    private void attachToRunningStream(String streamKey, String destination, Principal principal) {
+        Consumer<ChapterStreamPayload> sink = payload ->
+                messagingTemplate.convertAndSendToUser(principal.getName(), destination, payload);
+        if (streamWriterFactory.attach(destination, sink)) {
+            log.info("Attached duplicate request to running stream: {}", streamKey);
+            return;
+        }
+        boolean remote = streamRegistry.status(streamKey).map(status -> !status.local()).orElse(false);
+        if (remote) {
+            log.info("Attached duplicate request to stream on another node: {}", streamKey);
+            sink.accept(new ChapterStreamPayload(CoalescingStreamWriter.TYPE_ATTACHED, null));
+        } else {
+            log.info("Rejected duplicate novel stream: {}", streamKey);
+            sink.accept(new ChapterStreamPayload("error", "正在生成中"));
+        }
+    }
+
+    /**
+     * 查询小说结构 / 章节大纲是否正在生成（任一节点），结果以 status 消息（running / idle）发给请求方
+     */
+    @MessageMapping("/novels/status")
+    public void novelStreamStatus(StopStreamRequest request, Principal principal) {
+        NovelStreamStrategy strategy = getStrategy(request.getStreamType());
+        if (request.getNovelId() == null || strategy == null || principal == null) {
+            log.warn("Invalid stream status request: {}", request);
+            return;
+        }
+        boolean running = streamRegistry.status(
+                StreamRegistry.novelKey(request.getNovelId(), request.getStreamType())).isPresent();
+        messagingTemplate.convertAndSendToUser(principal.getName(), strategy.buildDestination(request.getNovelId()),
+                new ChapterStreamPayload("status", running ? "running" : "idle"));
+    }
+
+    /**
+     * 重连或迟到的客户端请求补发，补发消息只发给请求方
+     */
+    @MessageMapping("/novels/resume")
+    public void resumeNovelStream(ResumeStreamRequest request, Principal principal) {
+        NovelStreamStrategy strategy = getStrategy(request.getStreamType());
+        if (request.getNovelId() == null || strategy == null) {
+            log.warn("Invalid resume stream request: {}", request);
+            return;
+        }
+        if (!ownsNovel(principalToUserId(principal), request.getNovelId())) {
+            log.warn("Rejected resume stream request: {}", request);
+            return;
+        }
+        String destination = strategy.buildDestination(request.getNovelId());
+        Consumer<ChapterStreamPayload> sink = payload ->
+                messagingTemplate.convertAndSendToUser(principal.getName(), destination, payload);
+        streamWriterFactory.find(destination).ifPresentOrElse(
+                writer -> writer.replay(request.getStreamId(), request.getLastSeq(), sink),
+                () -> sink.accept(new ChapterStreamPayload(CoalescingStreamWriter.TYPE_REPLAY_MISSING, null)));
+    }
+
+    /**
+     * 小说是否属于当前用户（按主键查询）
+     */
+    private boolean ownsNovel(Long currentUserId, Long novelId) {
+        return currentUserId != null && novelRepository.findById(novelId)
+                .map(novel -> currentUserId.equals(novel.getUserId()))
+                .orElse(false);
+    }
+
     private NovelStreamStrategy getStrategy(String type) {
         if (type == null) {
             return null;
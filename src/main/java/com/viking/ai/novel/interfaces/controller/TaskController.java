@@ -2,6 +2,7 @@ package com.viking.ai.novel.interfaces.controller;
 
 import com.viking.ai.novel.application.service.TaskService;
 import com.viking.ai.novel.domain.model.Task;
+import com.viking.ai.novel.interfaces.aop.CheckTaskOwner;
 import com.viking.ai.novel.interfaces.dto.TaskDTO;
 import com.viking.ai.novel.interfaces.mapper.TaskMapper;
 import lombok.RequiredArgsConstructor;
@@ -63,4 +64,13 @@ public class TaskController {
                 .collect(Collectors.toList());
         return ResponseEntity.ok(taskDTOs);
     }
+
+    /**
+     * 取消任务（批量生成章节、整本生成等），已完成或已失败的任务不受影响
+     */
+    @PostMapping("/{id}/cancel")
+    @CheckTaskOwner(paramIndex = 0)
+    public ResponseEntity<TaskDTO> cancelTask(@PathVariable Long id) {
+        return ResponseEntity.ok(taskMapper.toDTO(taskService.cancelTask(id)));
+    }
 }
@@ -17,6 +17,7 @@ public class ChapterDTO {
     private Integer chapterNumber;
     private String title;
     private String abstractContent;
+    private String plannedOutline;
     private String content;
     private String vectorId;
     private Integer status;
@@ -13,13 +13,28 @@ import lombok.NoArgsConstructor;
 public class ChapterStreamPayload {
 
     /**
-     * 消息类型：delta / complete / error
+     * 消息类型：delta / complete / stopped / error / queued；
+     * complete 之后的后续事件：abstract（生成的摘要）/ indexed（向量分块数）/ stage_error（摘要或向量失败）/ saved（章节已全部写回）；
+     * 重连补发：replay_reset / snapshot / replay_missing
      */
     private String type;
 
     /**
-     * 文本内容（type=delta 时为增量内容；type=error 时为错误信息）
+     * 文本内容（type=delta 时为增量内容；type=error 时为错误信息；type=queued 时为排队位置）
      */
     private String content;
-}
 
+    /**
+     * 流 ID，同一目的地每次重新生成都会变化；流开始前的错误消息为 null
+     */
+    private Long streamId;
+
+    /**
+     * 流内序号，从 1 开始递增；客户端记录最后应用的序号，重连时据此请求补发
+     */
+    private Long seq;
+
+    public ChapterStreamPayload(String type, String content) {
+        this(type, content, null, null);
+    }
+}
@@ -0,0 +1,16 @@
+package com.viking.ai.novel.interfaces.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class GenerateChaptersRequest {
+    @NotNull(message = "小说ID不能为空")
+    private Long novelId;
+
+    /** 起始章节号，为空表示从第一章开始 */
+    private Integer fromChapter;
+
+    /** 结束章节号，为空表示到最后一章 */
+    private Integer toChapter;
+}
@@ -0,0 +1,35 @@
+package com.viking.ai.novel.interfaces.dto;
+
+import lombok.Data;
+
+/**
+ * WebSocket 重连后请求补发流式消息
+ */
+@Data
+public class ResumeStreamRequest {
+
+    /**
+     * 小说 ID
+     */
+    private Long novelId;
+
+    /**
+     * 章节序号（用于章节内容）
+     */
+    private Integer chapterNumber;
+
+    /**
+     * 流式类型：structure / outline（用于小说结构/章节大纲）
+     */
+    private String streamType;
+
+    /**
+     * 客户端上次收到的流 ID，为空表示从头补发
+     */
+    private Long streamId;
+
+    /**
+     * 客户端已应用的最后序号
+     */
+    private Long lastSeq;
+}
@@ -0,0 +1,32 @@
+package com.viking.ai.novel.interfaces.dto;
+
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 未正常完成的流式输出草稿
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamDraftDTO {
+    private String streamKey;
+    private String content;
+    private String status; // stopped / error / interrupted，生成中为 null
+    private Instant updatedAt;
+
+    public static StreamDraftDTO from(StreamJournal.Draft draft) {
+        return StreamDraftDTO.builder()
+                .streamKey(draft.key())
+                .content(draft.content())
+                .status(draft.status())
+                .updatedAt(draft.updatedAt())
+                .build();
+    }
+}
@@ -16,6 +16,10 @@ public class TaskDTO {
     private String taskName;
     private String taskType;
     private Long taskRelationId;
-    private Integer taskStatus; // 0: 待处理，1: 处理中，2: 处理完成
+    private Integer taskStatus; // 0: 待处理，1: 处理中，2: 处理完成，3: 处理失败，4: 已取消
+    private Integer progressDone;
+    private Integer progressTotal;
+    private String errorMessage;
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
 }
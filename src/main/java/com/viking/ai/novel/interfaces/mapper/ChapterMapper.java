@@ -3,6 +3,7 @@ package com.viking.ai.novel.interfaces.mapper;
 import com.viking.ai.novel.domain.model.Chapter;
 import com.viking.ai.novel.interfaces.dto.ChapterDTO;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 @Mapper
@@ -10,5 +11,6 @@ public interface ChapterMapper {
     ChapterMapper INSTANCE = Mappers.getMapper(ChapterMapper.class);
     
     ChapterDTO toDTO(Chapter chapter);
+    @Mapping(target = "chunkIds", ignore = true)
     Chapter toEntity(ChapterDTO chapterDTO);
 }
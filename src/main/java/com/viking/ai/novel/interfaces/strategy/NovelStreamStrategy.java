@@ -2,10 +2,9 @@ package com.viking.ai.novel.interfaces.strategy;
 
 import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
 import com.viking.ai.novel.interfaces.dto.NovelStreamRequest;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-
-import java.util.concurrent.atomic.AtomicBoolean;
+import com.viking.ai.novel.interfaces.stream.CoalescingStreamWriter;
 
 /**
  * 小说流式生成策略（结构 / 章节大纲）
@@ -27,15 +26,15 @@ public interface NovelStreamStrategy {
      *
      * @param novel        小说实体
      * @param model        用户模型配置
-     * @param messagingTemplate WebSocket 消息模板
-     * @param stopped      停止标记
+     * @param writer       本次生成的写出器（受理请求时创建，准备期间的重复请求即可接入）
+     * @param handle       取消句柄，停止时取消上游请求
      * @param request      客户端请求（可含 continueOutline 等选项，可为 null）
      * @param onFinished   生成完成或出错时的回调（用于清理资源等）
      */
     void stream(Novel novel,
                 UserModel model,
-                SimpMessagingTemplate messagingTemplate,
-                AtomicBoolean stopped,
+                CoalescingStreamWriter writer,
+                StreamHandle handle,
                 NovelStreamRequest request,
                 Runnable onFinished);
 }
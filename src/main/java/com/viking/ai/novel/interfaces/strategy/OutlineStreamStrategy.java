@@ -5,14 +5,13 @@ import com.viking.ai.novel.domain.model.UserModel;
 import com.viking.ai.novel.domain.repository.NovelRepository;
 import com.viking.ai.novel.application.service.ChapterService;
 import com.viking.ai.novel.infrastructure.ai.AiModelService;
-import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
 import com.viking.ai.novel.interfaces.dto.NovelStreamRequest;
+import com.viking.ai.novel.interfaces.stream.CoalescingStreamWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 章节大纲流式生成策略
@@ -39,15 +38,12 @@ public class OutlineStreamStrategy implements NovelStreamStrategy {
     @Override
     public void stream(Novel novel,
                        UserModel model,
-                       SimpMessagingTemplate messagingTemplate,
-                       AtomicBoolean stopped,
+                       CoalescingStreamWriter writer,
+                       StreamHandle handle,
                        NovelStreamRequest request,
                        Runnable onFinished) {
-        String destination = buildDestination(novel.getId());
-
         if (novel.getStructure() == null || novel.getStructure().isEmpty()) {
-            messagingTemplate.convertAndSend(destination,
-                    new ChapterStreamPayload("error", "请先完成小说架构的生成"));
+            writer.finish("error", "请先完成小说架构的生成");
             if (onFinished != null) {
                 onFinished.run();
             }
@@ -77,11 +73,10 @@ public class OutlineStreamStrategy implements NovelStreamStrategy {
                 new AiModelService.StreamCallback() {
                     @Override
                     public void onDelta(String text) {
-                        if (stopped.get()) {
+                        if (handle.isCancelled()) {
                             return;
                         }
-                        messagingTemplate.convertAndSend(destination,
-                                new ChapterStreamPayload("delta", text));
+                        writer.delta(text);
                     }
 
                     @Override
@@ -89,11 +84,6 @@ public class OutlineStreamStrategy implements NovelStreamStrategy {
                         if (onFinished != null) {
                             onFinished.run();
                         }
-                        if (stopped.get()) {
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("stopped", null));
-                            return;
-                        }
                         try {
                             String fullOutline = fullText;
                             if (existingForMerge != null && !existingForMerge.isEmpty()) {
@@ -106,13 +96,30 @@ public class OutlineStreamStrategy implements NovelStreamStrategy {
 
                             // 同步章节表：根据完整大纲提取每章标题，创建/更新占位章节
                             chapterService.syncChaptersFromOutline(novel.getId(), fullOutline);
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("complete", null));
+                            writer.finish("complete", null);
                         } catch (Exception e) {
                             log.error("Error finishing streamed chapter outline {}", novel.getId(), e);
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("error", e.getMessage()));
+                            writer.finish("error", e.getMessage());
+                        }
+                    }
+
+                    @Override
+                    public void onQueued(int position) {
+                        writer.send("queued", String.valueOf(position));
+                    }
+
+                    @Override
+                    public void onCancelled(String partialText) {
+                        if (onFinished != null) {
+                            onFinished.run();
+                        }
+                        if (handle.isYielded()) {
+                            // 其他节点在生成同一个流，主题上的消息归胜出方
+                            writer.abandon();
+                            return;
                         }
+                        // 已生成的部分保留在流式日志中作为草稿
+                        writer.finish("stopped", null);
                     }
 
                     @Override
@@ -121,10 +128,10 @@ public class OutlineStreamStrategy implements NovelStreamStrategy {
                             onFinished.run();
                         }
                         log.error("Error streaming chapter outline", t);
-                        messagingTemplate.convertAndSend(destination,
-                                new ChapterStreamPayload("error", t.getMessage()));
+                        writer.finish("error", t.getMessage());
                     }
-                }
+                },
+                handle
         );
     }
 }
@@ -4,14 +4,13 @@ import com.viking.ai.novel.domain.model.Novel;
 import com.viking.ai.novel.domain.model.UserModel;
 import com.viking.ai.novel.domain.repository.NovelRepository;
 import com.viking.ai.novel.infrastructure.ai.AiModelService;
-import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
 import com.viking.ai.novel.interfaces.dto.NovelStreamRequest;
+import com.viking.ai.novel.interfaces.stream.CoalescingStreamWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * 小说结构流式生成策略
  */
@@ -36,12 +35,10 @@ public class StructureStreamStrategy implements NovelStreamStrategy {
     @Override
     public void stream(Novel novel,
                        UserModel model,
-                       SimpMessagingTemplate messagingTemplate,
-                       AtomicBoolean stopped,
+                       CoalescingStreamWriter writer,
+                       StreamHandle handle,
                        NovelStreamRequest request,
                        Runnable onFinished) {
-        String destination = buildDestination(novel.getId());
-
         aiModelService.streamNovelStructure(
                 novel.getTitle(),
                 novel.getGenre(),
@@ -51,11 +48,10 @@ public class StructureStreamStrategy implements NovelStreamStrategy {
                 new AiModelService.StreamCallback() {
                     @Override
                     public void onDelta(String text) {
-                        if (stopped.get()) {
+                        if (handle.isCancelled()) {
                             return;
                         }
-                        messagingTemplate.convertAndSend(destination,
-                                new ChapterStreamPayload("delta", text));
+                        writer.delta(text);
                     }
 
                     @Override
@@ -63,23 +59,35 @@ public class StructureStreamStrategy implements NovelStreamStrategy {
                         if (onFinished != null) {
                             onFinished.run();
                         }
-                        if (stopped.get()) {
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("stopped", null));
-                            return;
-                        }
                         try {
                             // 生成完成，保存小说结构
                             novel.setStructure(fullText);
                             // novel 的保存由调用方负责或在此处完成
                             novelRepository.save(novel);
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("complete", null));
+                            writer.finish("complete", null);
                         } catch (Exception e) {
                             log.error("Error finishing streamed novel structure {}", novel.getId(), e);
-                            messagingTemplate.convertAndSend(destination,
-                                    new ChapterStreamPayload("error", e.getMessage()));
+                            writer.finish("error", e.getMessage());
+                        }
+                    }
+
+                    @Override
+                    public void onQueued(int position) {
+                        writer.send("queued", String.valueOf(position));
+                    }
+
+                    @Override
+                    public void onCancelled(String partialText) {
+                        if (onFinished != null) {
+                            onFinished.run();
+                        }
+                        if (handle.isYielded()) {
+                            // 其他节点在生成同一个流，主题上的消息归胜出方
+                            writer.abandon();
+                            return;
                         }
+                        // 已生成的部分保留在流式日志中作为草稿
+                        writer.finish("stopped", null);
                     }
 
                     @Override
@@ -88,10 +96,10 @@ public class StructureStreamStrategy implements NovelStreamStrategy {
                             onFinished.run();
                         }
                         log.error("Error streaming novel structure", t);
-                        messagingTemplate.convertAndSend(destination,
-                                new ChapterStreamPayload("error", t.getMessage()));
+                        writer.finish("error", t.getMessage());
                     }
-                }
+                },
+                handle
         );
     }
 }
@@ -0,0 +1,254 @@
+package com.viking.ai.novel.interfaces.stream;
+
+import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 合并增量的流式写出器：模型逐 token 回调的 delta 先写入缓冲，
+ * 按时间窗口或缓冲大小批量推送，显著减少 STOMP 帧数与序列化次数。
+ * <p>
+ * 非 delta 消息（complete / stopped / error 等）发送前会先冲刷缓冲，保证顺序。
+ * 指定了日志 key 时，每批推送的增量同时追加到 {@link StreamJournal}（首批增量时才打开日志文件）；
+ * complete 时删除日志，其他终止消息保留为草稿。
+ * <p>
+ * 每条推送的消息带流 ID 与从 1 开始的序号，并保留在有界环形缓冲中（按条数与字符数限制），
+ * 迟到或重连的客户端通过 {@link #replay} 只补发缺失的部分。
+ * 由 {@link StreamWriterFactory} 创建，每个流一个实例。
+ */
+public class CoalescingStreamWriter {
+
+    /**
+     * 补发时请求的流已不是当前流（流 ID 不同），客户端应清空已显示内容后再应用随后的消息
+     */
+    public static final String TYPE_REPLAY_RESET = "replay_reset";
+    /**
+     * 缺失部分已移出环形缓冲，content 为截至 seq 的全部增量文本，客户端用它替换已显示内容
+     */
+    public static final String TYPE_SNAPSHOT = "snapshot";
+    /**
+     * 无法补发（流已过期或缺失内容不可恢复），客户端应通过 REST 接口重新加载章节或草稿
+     */
+    public static final String TYPE_REPLAY_MISSING = "replay_missing";
+    /**
+     * 重复的生成请求已接入进行中的流（不再单独调用模型），随后补发已推送的消息
+     */
+    public static final String TYPE_ATTACHED = "attached";
+    /**
+     * 生成请求已受理、正在准备上下文（只发给请求方），content 为前面排队的请求数
+     */
+    public static final String TYPE_ACCEPTED = "accepted";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final String destination;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final int maxBufferChars;
+    private final StreamJournal journal;
+    private final String journalKey;
+    private final long streamId;
+    private final int replayCapacity;
+    private final int replayMaxChars;
+    private final Consumer<CoalescingStreamWriter> onFinished;
+    private StreamJournal.Entry journalEntry;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private final ArrayDeque<ChapterStreamPayload> replayRing = new ArrayDeque<>();
+    private int replayChars;
+    private long seq;
+    private ChapterStreamPayload terminal;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    CoalescingStreamWriter(SimpMessagingTemplate messagingTemplate, String destination,
+                           ScheduledExecutorService scheduler, long windowMillis, int maxBufferChars,
+                           StreamJournal journal, String journalKey,
+                           long streamId, int replayCapacity, int replayMaxChars,
+                           Consumer<CoalescingStreamWriter> onFinished) {
+        this.messagingTemplate = messagingTemplate;
+        this.destination = destination;
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maxBufferChars = maxBufferChars;
+        this.journal = journal;
+        this.journalKey = journalKey;
+        this.streamId = streamId;
+        this.replayCapacity = replayCapacity;
+        this.replayMaxChars = replayMaxChars;
+        this.onFinished = onFinished;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public long getStreamId() {
+        return streamId;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 写入一段增量文本
+     */
+    public synchronized void delta(String text) {
+        if (closed || text == null || text.isEmpty()) {
+            return;
+        }
+        buffer.append(text);
+        if (windowMillis <= 0 || buffer.length() >= maxBufferChars) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即推送缓冲中的增量
+     */
+    public synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (buffer.length() == 0) {
+            return;
+        }
+        String content = buffer.toString();
+        buffer.setLength(0);
+        if (journal != null && journalKey != null) {
+            if (journalEntry == null) {
+                journalEntry = journal.open(journalKey, destination);
+            }
+            if (journalEntry != null) {
+                journalEntry.append(content);
+            }
+        }
+        publish("delta", content);
+    }
+
+    /**
+     * 发送控制消息（先冲刷缓冲），流仍可继续写入
+     */
+    public synchronized void send(String type, String content) {
+        flush();
+        publish(type, content);
+    }
+
+    /**
+     * 发送终止消息（complete / stopped / error），之后的增量会被丢弃
+     */
+    public synchronized void finish(String type, String content) {
+        send(type, content);
+        closed = true;
+        terminal = replayRing.peekLast();
+        if (journalEntry != null) {
+            if ("complete".equals(type)) {
+                journalEntry.complete();
+            } else {
+                journalEntry.close(type);
+            }
+        }
+        if (onFinished != null) {
+            onFinished.accept(this);
+        }
+    }
+
+    /**
+     * 不发送终止消息直接结束（流让出给其他节点时，同一主题上仍有胜出方的消息）：丢弃未推送的增量并删除本节点的流式日志
+     */
+    public synchronized void abandon() {
+        if (closed) {
+            return;
+        }
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        buffer.setLength(0);
+        closed = true;
+        terminal = replayRing.peekLast();
+        if (journalEntry != null) {
+            journalEntry.complete();
+        }
+        if (onFinished != null) {
+            onFinished.accept(this);
+        }
+    }
+
+    /**
+     * 向重连的客户端补发消息；lastSeq 为客户端已应用的最后序号，streamId 与当前流不同或为空时从头补发。
+     * 在写出器锁内执行，补发期间不会插入新的推送，客户端按 seq 去重即可与主题上的实时消息衔接。
+     */
+    public synchronized void replay(Long clientStreamId, Long lastSeq, Consumer<ChapterStreamPayload> sink) {
+        flush();
+        boolean sameStream = clientStreamId != null && clientStreamId == streamId && lastSeq != null;
+        long from = sameStream ? lastSeq + 1 : 1;
+        if (!sameStream) {
+            sink.accept(new ChapterStreamPayload(TYPE_REPLAY_RESET, null, streamId, 0L));
+        }
+        long firstRetained = replayRing.isEmpty() ? seq + 1 : replayRing.peekFirst().getSeq();
+        if (from >= firstRetained) {
+            for (ChapterStreamPayload payload : replayRing) {
+                if (payload.getSeq() >= from) {
+                    sink.accept(payload);
+                }
+            }
+            return;
+        }
+        // 缺失部分已移出环形缓冲：用流式日志中的全文补齐，再补发终止消息
+        Optional<StreamJournal.Draft> draft = journal != null && journalKey != null
+                ? journal.readDraft(journalKey) : Optional.empty();
+        if (draft.isEmpty()) {
+            sink.accept(new ChapterStreamPayload(TYPE_REPLAY_MISSING, null, streamId, seq));
+            return;
+        }
+        sink.accept(new ChapterStreamPayload(TYPE_SNAPSHOT, draft.get().content(), streamId, seq));
+        if (terminal != null) {
+            sink.accept(terminal);
+        }
+    }
+
+    /**
+     * 把重复的生成请求作为订阅者接入本流：先发 attached，再从头补发已推送的消息，之后的消息由主题送达
+     *
+     * @return 流已结束时返回 false
+     */
+    public synchronized boolean attach(Consumer<ChapterStreamPayload> sink) {
+        if (closed) {
+            return false;
+        }
+        sink.accept(new ChapterStreamPayload(TYPE_ATTACHED, null, streamId, seq));
+        replay(null, null, sink);
+        return true;
+    }
+
+    private void publish(String type, String content) {
+        ChapterStreamPayload payload = new ChapterStreamPayload(type, content, streamId, ++seq);
+        remember(payload);
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    private void remember(ChapterStreamPayload payload) {
+        if (replayCapacity <= 0) {
+            return;
+        }
+        replayRing.addLast(payload);
+        replayChars += lengthOf(payload);
+        while (replayRing.size() > replayCapacity || (replayChars > replayMaxChars && replayRing.size() > 1)) {
+            replayChars -= lengthOf(replayRing.removeFirst());
+        }
+    }
+
+    private static int lengthOf(ChapterStreamPayload payload) {
+        return payload.getContent() == null ? 0 : payload.getContent().length();
+    }
+}
@@ -0,0 +1,412 @@
+package com.viking.ai.novel.interfaces.stream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 流式输出日志：每个进行中的流（章节内容、小说结构、章节大纲）把已推送的增量追加写入本地日志文件，
+ * 进程崩溃或客户端断开时已生成的文本不会丢失，可作为草稿取回。
+ * <p>
+ * 文件为只追加的记录序列：[类型 1B][长度 4B][CRC32 4B][内容]，类型为 H（头）/ D（增量）/ E（结束状态）。
+ * 写入先进入内存缓冲，缓冲满或定时任务触发时写入 FileChannel 并 fsync；读取时遇到不完整或校验失败的记录即截止，
+ * 因此崩溃前最后一次 fsync 之前的内容都可恢复。
+ * <p>
+ * 正常完成（complete）的流删除日志；停止、出错或被中断的流保留日志作为草稿，超过保留时长后清理。
+ */
+@Component
+@Slf4j
+public class StreamJournal {
+
+    static final byte TYPE_HEADER = 'H';
+    static final byte TYPE_DELTA = 'D';
+    static final byte TYPE_END = 'E';
+
+    public static final String STATUS_INTERRUPTED = "interrupted";
+
+    private static final String SUFFIX = ".journal";
+    private static final int RECORD_HEADER_BYTES = 9;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long fsyncIntervalMillis;
+    private final int bufferBytes;
+    private final Duration retention;
+
+    private final Map<String, Entry> openEntries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stream-journal-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StreamJournal(@Value("${stream.journal.enabled:true}") boolean enabled,
+                         @Value("${stream.journal.dir:./data/stream-journal}") String directory,
+                         @Value("${stream.journal.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+                         @Value("${stream.journal.buffer-bytes:8192}") int bufferBytes,
+                         @Value("${stream.journal.retention-hours:72}") long retentionHours) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.bufferBytes = Math.max(512, bufferBytes);
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    /**
+     * 章节内容流的日志 key
+     */
+    public static String chapterKey(Long novelId, Integer chapterNumber) {
+        return "chapter-" + novelId + "-" + chapterNumber;
+    }
+
+    /**
+     * 小说级流（structure / outline）的日志 key
+     */
+    public static String novelKey(Long novelId, String streamType) {
+        return streamType + "-" + novelId;
+    }
+
+    /**
+     * 草稿：未正常完成的流已写入日志的文本
+     *
+     * @param status 结束状态（stopped / error / interrupted），进行中的流为 null
+     */
+    public record Draft(String key, String destination, String content, String status, Instant updatedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            log.error("Failed to initialize stream journal at {}", directory, e);
+        }
+        if (fsyncIntervalMillis > 0) {
+            syncScheduler.scheduleWithFixedDelay(this::syncAll, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        log.info("Stream journal enabled at {} (fsync every {} ms)", directory.toAbsolutePath(), fsyncIntervalMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncScheduler.shutdownNow();
+        // 进程正常退出时仍在进行的流标记为中断，保留为草稿
+        for (Entry entry : new ArrayList<>(openEntries.values())) {
+            entry.close(STATUS_INTERRUPTED);
+        }
+    }
+
+    /**
+     * 为一个流打开日志（同 key 的旧日志被覆盖）；未启用或打开失败时返回 null，调用方照常推送
+     */
+    public Entry open(String key, String destination) {
+        if (!enabled) {
+            return null;
+        }
+        Entry previous = openEntries.remove(key);
+        if (previous != null) {
+            previous.close(STATUS_INTERRUPTED);
+        }
+        try {
+            FileChannel channel = FileChannel.open(fileOf(key), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            Entry entry = new Entry(key, channel);
+            entry.write(TYPE_HEADER, destination + "\n" + Instant.now().toEpochMilli());
+            openEntries.put(key, entry);
+            return entry;
+        } catch (IOException e) {
+            log.error("Failed to open stream journal {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取草稿；正常完成后日志已删除，返回空
+     */
+    public Optional<Draft> readDraft(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Entry open = openEntries.get(key);
+        if (open != null) {
+            open.flush(false);
+        }
+        Path file = fileOf(key);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(parse(key, file));
+        } catch (IOException e) {
+            log.error("Failed to read stream journal {}", key, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 删除草稿（进行中的流不可删除）
+     */
+    public boolean discard(String key) {
+        if (!enabled || openEntries.containsKey(key)) {
+            return false;
+        }
+        try {
+            return Files.deleteIfExists(fileOf(key));
+        } catch (IOException e) {
+            log.error("Failed to delete stream journal {}", key, e);
+            return false;
+        }
+    }
+
+    /**
+     * 启动时扫描遗留日志：没有结束记录的日志说明上次进程在生成中退出，补记为中断；超过保留时长的草稿删除
+     */
+    private void recover() throws IOException {
+        int recovered = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String key = name.substring(0, name.length() - SUFFIX.length());
+                Draft draft = parse(key, file);
+                if (draft.updatedAt().isBefore(Instant.now().minus(retention))) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                if (draft.status() == null) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        // 截掉可能写了一半的尾部记录后再追加结束记录
+                        channel.truncate(validLength(file));
+                        channel.position(channel.size());
+                        channel.write(record(TYPE_END, STATUS_INTERRUPTED));
+                        channel.force(false);
+                    }
+                    recovered++;
+                    log.info("Recovered interrupted stream draft {} ({} chars)", key, draft.content().length());
+                }
+            }
+        }
+        if (recovered > 0) {
+            log.info("Recovered {} interrupted stream drafts", recovered);
+        }
+    }
+
+    private void syncAll() {
+        for (Entry entry : openEntries.values()) {
+            entry.flush(true);
+        }
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key.replaceAll("[^A-Za-z0-9_.-]", "_") + SUFFIX);
+    }
+
+    private static ByteBuffer record(byte type, String text) {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        buffer.put(type).putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 顺序解析记录，返回最后一条完整记录结束的位置
+     */
+    private static long validLength(Path file) throws IOException {
+        long[] end = new long[1];
+        scan(file, (type, text, position) -> end[0] = position);
+        return end[0];
+    }
+
+    private static Draft parse(String key, Path file) throws IOException {
+        StringBuilder content = new StringBuilder();
+        String[] destination = new String[1];
+        String[] status = new String[1];
+        scan(file, (type, text, position) -> {
+            switch (type) {
+                case TYPE_HEADER -> destination[0] = text.split("\n", 2)[0];
+                case TYPE_DELTA -> content.append(text);
+                case TYPE_END -> status[0] = text;
+                default -> {
+                }
+            }
+        });
+        return new Draft(key, destination[0], content.toString(), status[0],
+                Files.getLastModifiedTime(file).toInstant());
+    }
+
+    private interface RecordVisitor {
+        void visit(byte type, String text, long endPosition);
+    }
+
+    private static void scan(Path file, RecordVisitor visitor) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            byte type = buffer.get();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+            visitor.visit(type, new String(payload, StandardCharsets.UTF_8), buffer.position());
+        }
+    }
+
+    /**
+     * 单个流的日志句柄，线程安全
+     */
+    public class Entry {
+
+        private final String key;
+        private final FileChannel channel;
+        private final ByteBuffer pending = ByteBuffer.allocate(bufferBytes);
+        private boolean dirty;
+        private boolean closed;
+
+        private Entry(String key, FileChannel channel) {
+            this.key = key;
+            this.channel = channel;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 追加一段增量
+         */
+        public void append(String text) {
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+            write(TYPE_DELTA, text);
+        }
+
+        /**
+         * 正常完成：内容已持久化到数据库，删除日志
+         */
+        public void complete() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                closeChannel();
+            }
+            openEntries.remove(key, this);
+            try {
+                Files.deleteIfExists(fileOf(key));
+            } catch (IOException e) {
+                log.warn("Failed to delete completed stream journal {}", key, e);
+            }
+        }
+
+        /**
+         * 未正常完成：写入结束状态并保留为草稿
+         */
+        public void close(String status) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                write(TYPE_END, status);
+                flush(true);
+                closed = true;
+                closeChannel();
+            }
+            openEntries.remove(key, this);
+        }
+
+        private synchronized void write(byte type, String text) {
+            if (closed) {
+                return;
+            }
+            ByteBuffer record = record(type, text);
+            if (record.remaining() > pending.remaining()) {
+                flush(false);
+            }
+            try {
+                if (record.remaining() > pending.capacity()) {
+                    // 超过缓冲大小的记录直接写入
+                    writeFully(record);
+                } else {
+                    pending.put(record);
+                }
+                dirty = true;
+            } catch (IOException e) {
+                log.error("Failed to append stream journal {}", key, e);
+            }
+        }
+
+        /**
+         * 把缓冲写入文件；force 为 true 时同时 fsync
+         */
+        synchronized void flush(boolean force) {
+            if (closed || !dirty) {
+                return;
+            }
+            try {
+                pending.flip();
+                writeFully(pending);
+                pending.clear();
+                if (force) {
+                    channel.force(false);
+                    dirty = false;
+                }
+            } catch (IOException e) {
+                pending.clear();
+                log.error("Failed to flush stream journal {}", key, e);
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close stream journal {}", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.viking.ai.novel.interfaces.stream;
+
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 流式生成的准备线程池：查库、构造前文、向量检索等阻塞操作不在 WebSocket 入站通道线程上执行，
+ * 避免少数慢请求拖住所有连接的消息处理。
+ * <p>
+ * 并发与队列均有上限，队列满时拒绝提交，由调用方向客户端返回繁忙。
+ */
+@Component
+@Slf4j
+public class StreamSetupExecutor {
+
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService executor;
+
+    public StreamSetupExecutor(ExecutorFactory executorFactory,
+                               MeterRegistry meterRegistry,
+                               @Value("${stream.setup.threads:8}") int threads,
+                               @Value("${stream.setup.queue-capacity:200}") int queueCapacity) {
+        this.pool = executorFactory.boundedRejecting("stream-setup", threads, queueCapacity);
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "stream.setup");
+    }
+
+    /**
+     * 提交流的准备任务
+     *
+     * @return 提交时排在前面的任务数（0 表示立即执行）；队列已满时返回 -1
+     */
+    public int submit(Runnable task) {
+        int ahead = Math.max(0, pool.getActiveCount() + pool.getQueue().size() - pool.getMaximumPoolSize());
+        try {
+            executor.execute(task);
+            return ahead;
+        } catch (RejectedExecutionException e) {
+            log.warn("Stream setup queue is full ({} queued), rejecting request", pool.getQueue().size());
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
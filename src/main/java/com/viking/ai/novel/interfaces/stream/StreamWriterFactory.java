@@ -0,0 +1,97 @@
+package com.viking.ai.novel.interfaces.stream;
+
+import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 流式写出器工厂：章节内容、小说结构、章节大纲三条流式路径共用同一套合并配置与调度线程。
+ * <p>
+ * 按目的地登记当前写出器供重连补发使用；流结束后再保留一段时间，之后移除以释放环形缓冲。
+ */
+@Component
+public class StreamWriterFactory {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StreamJournal streamJournal;
+    private final long windowMillis;
+    private final int maxBufferChars;
+    private final int replayCapacity;
+    private final int replayMaxChars;
+    private final long replayRetainMillis;
+    private final AtomicLong streamIds = new AtomicLong(System.currentTimeMillis());
+    private final Map<String, CoalescingStreamWriter> writers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stream-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StreamWriterFactory(SimpMessagingTemplate messagingTemplate,
+                               StreamJournal streamJournal,
+                               @Value("${stream.coalesce.window-ms:40}") long windowMillis,
+                               @Value("${stream.coalesce.max-chars:512}") int maxBufferChars,
+                               @Value("${stream.replay.capacity:2048}") int replayCapacity,
+                               @Value("${stream.replay.max-chars:200000}") int replayMaxChars,
+                               @Value("${stream.replay.retain-seconds:120}") long replayRetainSeconds) {
+        this.messagingTemplate = messagingTemplate;
+        this.streamJournal = streamJournal;
+        this.windowMillis = windowMillis;
+        this.maxBufferChars = maxBufferChars;
+        this.replayCapacity = replayCapacity;
+        this.replayMaxChars = replayMaxChars;
+        this.replayRetainMillis = TimeUnit.SECONDS.toMillis(replayRetainSeconds);
+    }
+
+    public CoalescingStreamWriter create(String destination) {
+        return create(destination, null);
+    }
+
+    /**
+     * 创建写出器并为该流记录流式日志，journalKey 见 {@link StreamJournal#chapterKey} / {@link StreamJournal#novelKey}
+     */
+    public CoalescingStreamWriter create(String destination, String journalKey) {
+        CoalescingStreamWriter writer = new CoalescingStreamWriter(messagingTemplate, destination, scheduler,
+                windowMillis, maxBufferChars, journalKey != null ? streamJournal : null, journalKey,
+                streamIds.incrementAndGet(), replayCapacity, replayMaxChars, this::retire);
+        writers.put(destination, writer);
+        return writer;
+    }
+
+    /**
+     * 目的地上当前（或刚结束、仍在保留期内）的写出器
+     */
+    public Optional<CoalescingStreamWriter> find(String destination) {
+        return Optional.ofNullable(writers.get(destination));
+    }
+
+    /**
+     * 目的地上有进行中的流时把请求方接入该流，见 {@link CoalescingStreamWriter#attach}
+     *
+     * @return 本节点没有进行中的流时返回 false
+     */
+    public boolean attach(String destination, Consumer<ChapterStreamPayload> sink) {
+        return find(destination).map(writer -> writer.attach(sink)).orElse(false);
+    }
+
+    private void retire(CoalescingStreamWriter writer) {
+        scheduler.schedule(() -> writers.remove(writer.getDestination(), writer),
+                replayRetainMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,121 @@
+package com.viking;
+
+import com.viking.ai.novel.application.service.ChapterCompletionPipeline;
+import com.viking.ai.novel.application.service.ChapterContextBuilder;
+import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.model.Novel;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ChapterCompletionPipelineTest {
+
+    private ChapterRepository chapterRepository;
+    private AiModelService aiModelService;
+    private QdrantService qdrantService;
+    private ChapterCompletionPipeline pipeline;
+    private Chapter chapter;
+
+    private final Novel novel = Novel.builder().id(1L).userId(1L).build();
+    private final UserModel model = UserModel.builder().userId(1L).build();
+
+    @BeforeEach
+    public void setUp() {
+        chapterRepository = mock(ChapterRepository.class);
+        aiModelService = mock(AiModelService.class);
+        qdrantService = mock(QdrantService.class);
+        chapter = Chapter.builder().id(10L).novelId(1L).chapterNumber(1).status(1).build();
+        when(chapterRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(chapterRepository.findById(10L)).thenReturn(Optional.of(chapter));
+        pipeline = new ChapterCompletionPipeline(chapterRepository, aiModelService, qdrantService,
+                mock(ChapterContextBuilder.class), new ExecutorFactory(false), new SimpleMeterRegistry(), 1, 1, 1, 4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testCompleteSentBeforeAbstractFinishes() throws Exception {
+        CountDownLatch abstractGate = new CountDownLatch(1);
+        when(aiModelService.generateChapterAbstract(anyString(), any())).thenAnswer(inv -> {
+            abstractGate.await(5, TimeUnit.SECONDS);
+            return "摘要";
+        });
+        when(qdrantService.storeChapter(any(), anyString(), any(), any())).thenReturn(List.of("a", "b"));
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch persisted = new CountDownLatch(1);
+        var future = pipeline.submit(novel, chapter, "正文", model, model, new ChapterCompletionPipeline.Listener() {
+            @Override
+            public void onTextPersisted(Chapter c) {
+                events.add("complete");
+                persisted.countDown();
+            }
+
+            @Override
+            public void onAbstract(String abstractContent) {
+                events.add("abstract");
+            }
+
+            @Override
+            public void onVectors(int chunkCount) {
+                events.add("indexed:" + chunkCount);
+            }
+        });
+
+        // 摘要仍在生成时正文已落库
+        assertTrue(persisted.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isDone());
+        abstractGate.countDown();
+
+        Chapter saved = future.get(5, TimeUnit.SECONDS);
+        assertEquals("complete", events.get(0));
+        assertTrue(events.containsAll(List.of("abstract", "indexed:2")));
+        assertEquals("正文", saved.getContent());
+        assertEquals("摘要", saved.getAbstractContent());
+        assertEquals("a,b", saved.getChunkIds());
+        assertEquals(2, saved.getStatus());
+    }
+
+    @Test
+    public void testAbstractFailureStillFinishesChapter() throws Exception {
+        when(aiModelService.generateChapterAbstract(anyString(), any())).thenThrow(new RuntimeException("timeout"));
+        when(qdrantService.storeChapter(any(), anyString(), any(), any())).thenReturn(List.of("a"));
+
+        List<String> failedStages = new CopyOnWriteArrayList<>();
+        Chapter saved = pipeline.submit(novel, chapter, "正文", model, model, new ChapterCompletionPipeline.Listener() {
+            @Override
+            public void onTextPersisted(Chapter c) {
+            }
+
+            @Override
+            public void onStageFailed(String stage, Throwable t) {
+                failedStages.add(stage);
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(ChapterCompletionPipeline.STAGE_ABSTRACT), failedStages);
+        assertNull(saved.getAbstractContent());
+        assertEquals("a", saved.getChunkIds());
+        assertEquals(2, saved.getStatus());
+    }
+}
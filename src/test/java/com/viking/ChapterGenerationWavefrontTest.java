@@ -0,0 +1,144 @@
+package com.viking;
+
+import com.viking.ai.novel.application.service.ChapterContextBuilder;
+import com.viking.ai.novel.application.service.ChapterGenerationTaskService;
+import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.model.Novel;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.domain.repository.NovelRepository;
+import com.viking.ai.novel.domain.repository.TaskRepository;
+import com.viking.ai.novel.domain.repository.UserModelRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import com.viking.ai.novel.infrastructure.config.FairSharePolicy;
+import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
+import com.viking.ai.novel.infrastructure.stream.LocalStreamRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量生成的波前：有本章计划的章节并行生成；无计划的章节只等待前序章节写回摘要，而不是前序章节全部完成
+ */
+public class ChapterGenerationWavefrontTest {
+
+    private ChapterRepository chapterRepository;
+    private AiModelService aiModelService;
+    private ChapterContextBuilder chapterContextBuilder;
+    private ChapterGenerationTaskService service;
+
+    private final Novel novel = Novel.builder().id(1L).userId(1L).title("t").build();
+    private final UserModel model = UserModel.builder().userId(1L).build();
+
+    @BeforeEach
+    public void setUp() {
+        chapterRepository = mock(ChapterRepository.class);
+        aiModelService = mock(AiModelService.class);
+        chapterContextBuilder = mock(ChapterContextBuilder.class);
+        NovelRepository novelRepository = mock(NovelRepository.class);
+        UserModelRepository userModelRepository = mock(UserModelRepository.class);
+        when(novelRepository.findById(1L)).thenReturn(Optional.of(novel));
+        when(userModelRepository.findByUserIdAndType(1L, ModelTypeEnum.NORMAL.getType())).thenReturn(Optional.of(model));
+        when(chapterRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(chapterContextBuilder.buildPreviousContext(anyLong(), anyInt())).thenReturn("");
+        when(aiModelService.generateChapterAbstract(any(), any())).thenReturn("摘要");
+
+        service = new ChapterGenerationTaskService(chapterRepository, novelRepository, mock(TaskRepository.class),
+                aiModelService, mock(QdrantService.class), userModelRepository, chapterContextBuilder,
+                mock(SimpMessagingTemplate.class), new ExecutorFactory(false), new LocalStreamRegistry(),
+                FairSharePolicy.UNRESTRICTED);
+        ReflectionTestUtils.setField(service, "parallelism", 3);
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private List<Long> chapters(boolean planned) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            Chapter chapter = Chapter.builder().id(10L + i).novelId(1L).chapterNumber(i).title("第" + i + "章")
+                    .plannedOutline(planned ? "计划" + i : null).status(0).build();
+            when(chapterRepository.findById(chapter.getId())).thenReturn(Optional.of(chapter));
+            ids.add(chapter.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * 模型回调：记录同时进行的流数，等待 started 计数归零（或超时）后完成
+     */
+    private void streamWhen(CountDownLatch started, AtomicInteger active, AtomicInteger maxActive) {
+        doAnswer(inv -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            started.countDown();
+            started.await(2, TimeUnit.SECONDS);
+            active.decrementAndGet();
+            AiModelService.ChapterStreamCallback callback = inv.getArgument(10);
+            callback.onComplete("正文");
+            return null;
+        }).when(aiModelService).streamChapterContent(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any());
+    }
+
+    @Test
+    public void testOutlineOnlyChaptersRunConcurrently() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        streamWhen(new CountDownLatch(2), active, maxActive);
+
+        service.generateChapters(1L, chapters(true), null).orTimeout(10, TimeUnit.SECONDS).join();
+
+        assertTrue(maxActive.get() >= 2, "expected concurrent chapters, max active was " + maxActive.get());
+        verify(aiModelService, times(3)).streamChapterContent(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any(), any());
+    }
+
+    @Test
+    public void testChapterWithoutPlanReleasesSuccessorOnceAbstractIsSaved() throws InterruptedException {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        CountDownLatch secondStarted = new CountDownLatch(2);
+        streamWhen(new CountDownLatch(0), active, maxActive);
+        doAnswer(inv -> {
+            secondStarted.countDown();
+            AiModelService.ChapterStreamCallback callback = inv.getArgument(10);
+            callback.onComplete("正文");
+            return null;
+        }).when(aiModelService).streamChapterContent(any(), any(), any(), any(), eq("第2章"), any(), any(), any(),
+                any(), any(), any(), any());
+        // 第 1 章的完成步骤等到第 2 章开始生成：若第 2 章等待第 1 章全部完成，这里只能超时
+        AtomicInteger releasedEarly = new AtomicInteger();
+        doAnswer(inv -> {
+            secondStarted.countDown();
+            if (secondStarted.await(2, TimeUnit.SECONDS)) {
+                releasedEarly.incrementAndGet();
+            }
+            return null;
+        }).when(chapterContextBuilder).onChapterCompleted(eq(1L), eq(1), any());
+
+        service.generateChapters(1L, chapters(false), null).orTimeout(10, TimeUnit.SECONDS).join();
+
+        assertEquals(1, releasedEarly.get());
+    }
+}
@@ -0,0 +1,100 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.config.EmbeddedStompBroker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内嵌 STOMP 代理：模拟两个节点各自的代理连接，一个连接发布的 /topic 消息所有订阅连接都能收到
+ */
+public class EmbeddedStompBrokerTest {
+
+    private EmbeddedStompBroker broker;
+    private ReactorNettyTcpStompClient client;
+    private ThreadPoolTaskScheduler scheduler;
+    private final List<StompSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        broker = new EmbeddedStompBroker("127.0.0.1", port);
+        broker.start();
+        client = new ReactorNettyTcpStompClient("127.0.0.1", port);
+        client.setMessageConverter(new StringMessageConverter());
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        client.setTaskScheduler(scheduler);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        sessions.forEach(StompSession::disconnect);
+        client.shutdown();
+        scheduler.shutdown();
+        broker.stop();
+    }
+
+    private StompSession connect() throws Exception {
+        StompSession session = client.connectAsync(new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    private BlockingQueue<String> subscribe(StompSession session, String destination) {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        session.setAutoReceipt(true);
+        StompSession.Receiptable receipt = session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((String) payload);
+            }
+        });
+        BlockingQueue<Boolean> ack = new LinkedBlockingQueue<>();
+        receipt.addReceiptTask(() -> ack.add(true));
+        try {
+            assertNotNull(ack.poll(10, TimeUnit.SECONDS), "subscription not confirmed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return received;
+    }
+
+    @Test
+    public void topicMessagesFanOutToSubscribersOnOtherConnections() throws Exception {
+        String destination = "/topic/chapters/1/2";
+        BlockingQueue<String> nodeA = subscribe(connect(), destination);
+        BlockingQueue<String> nodeB = subscribe(connect(), destination);
+
+        connect().send(destination, "delta-1");
+
+        assertEquals("delta-1", nodeA.poll(10, TimeUnit.SECONDS));
+        assertEquals("delta-1", nodeB.poll(10, TimeUnit.SECONDS));
+    }
+}
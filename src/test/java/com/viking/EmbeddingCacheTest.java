@@ -0,0 +1,104 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.ai.EmbeddingCache;
+import dev.langchain4j.data.embedding.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Embedding vector(float v) {
+        return Embedding.from(new float[]{v, v});
+    }
+
+    /**
+     * 按文本首字符生成向量，记录每次 loader 收到的文本
+     */
+    private static List<Embedding> load(List<String> texts, List<List<String>> calls) {
+        calls.add(texts);
+        return texts.stream().map(t -> vector(t.charAt(0))).toList();
+    }
+
+    @Test
+    public void testPartialHitLoadsOnlyMissingAndKeepsOrder() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(new SimpleMeterRegistry(), 100, "", 0, 0);
+        List<List<String>> calls = new ArrayList<>();
+
+        cache.getAllAsync("m", 2, List.of("b", "d"), t -> load(t, calls), Runnable::run).get();
+        List<Embedding> result = cache.getAllAsync("m", 2, List.of("a", "b", "c", "d"),
+                t -> load(t, calls), Runnable::run).get();
+
+        // 第二次只加载未命中的 a、c，结果按输入顺序
+        assertEquals(List.of(List.of("b", "d"), List.of("a", "c")), calls);
+        assertEquals(List.of('a', 'b', 'c', 'd'), result.stream().map(e -> (char) e.vector()[0]).toList());
+
+        // 全部命中时立即完成，不调用 loader
+        assertTrue(cache.getAllAsync("m", 2, List.of("c", "a"), t -> load(t, calls), Runnable::run).isDone());
+        assertEquals(2, calls.size());
+
+        // 不同模型不共享缓存
+        cache.getAllAsync("other-model", 2, List.of("a"), t -> load(t, calls), Runnable::run).get();
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    public void testLoaderCountMismatchFails() {
+        EmbeddingCache cache = new EmbeddingCache(new SimpleMeterRegistry(), 100, "", 0, 0);
+        assertThrows(Exception.class, () -> cache.getAllAsync("m", 2, List.of("a", "b"),
+                t -> List.of(vector(1)), Runnable::run).get());
+    }
+
+    @Test
+    public void testDiskTierSurvivesNewInstance() throws Exception {
+        new EmbeddingCache(new SimpleMeterRegistry(), 100, tempDir.toString(), 0, 0)
+                .getAllAsync("m", 2, List.of("text"), t -> List.of(Embedding.from(new float[]{0.5f, -0.25f})),
+                        Runnable::run).get();
+
+        EmbeddingCache reopened = new EmbeddingCache(new SimpleMeterRegistry(), 100, tempDir.toString(), 0, 0);
+        List<Embedding> cached = reopened.getAllAsync("m", 2, List.of("text"), t -> {
+            throw new AssertionError("should hit disk cache");
+        }, Runnable::run).get();
+        assertArrayEquals(new float[]{0.5f, -0.25f}, cached.get(0).vector());
+    }
+
+    @Test
+    public void testDiskTierPrunedByAgeAndSize() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(new SimpleMeterRegistry(), 100, tempDir.toString(), 2, 30);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getAllAsync("m", 2, List.of("a", "b", "c", "d"), t -> {
+            loads.addAndGet(t.size());
+            return t.stream().map(x -> vector(1)).toList();
+        }, Runnable::run).get();
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(tempDir)) {
+            files = walk.filter(p -> p.toString().endsWith(".vec")).sorted().toList();
+        }
+        assertEquals(4, files.size());
+        // 一个文件超过最长闲置天数，一个较旧，其余两个最近访问
+        Files.setLastModifiedTime(files.get(0), FileTime.from(Instant.now().minus(40, ChronoUnit.DAYS)));
+        Files.setLastModifiedTime(files.get(1), FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+
+        assertEquals(2, cache.pruneDisk());
+        assertFalse(Files.exists(files.get(0)));
+        assertFalse(Files.exists(files.get(1)));
+        assertTrue(Files.exists(files.get(2)));
+        assertTrue(Files.exists(files.get(3)));
+    }
+}
@@ -0,0 +1,84 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import com.viking.ai.novel.infrastructure.config.FairShareExecutor;
+import com.viking.ai.novel.infrastructure.config.FairSharePolicy;
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 章节生成线程池的公平调度：大批量任务不阻塞其他用户与交互式任务
+ */
+public class FairShareExecutorTest {
+
+    private FairShareExecutor executor;
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        // 2 个名额，预留 1 个给交互式任务，每用户后台任务上限 1
+        executor = new FairShareExecutor(new ExecutorFactory(false).fixed("fair-test", 2), 2,
+                new FairSharePolicy("", 1, 1, 0, 1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private CompletableFuture<Void> submit(long userId, PriorityClassEnum priority, String label, boolean block) {
+        return executor.submit(userId, priority, () -> {
+            started.add(label);
+            if (block) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testLargeBatchDoesNotStarveOthers() throws Exception {
+        CompletableFuture<Void> first = submit(1, PriorityClassEnum.BACKGROUND, "a1", true);
+        for (int i = 2; i <= 50; i++) {
+            submit(1, PriorityClassEnum.BACKGROUND, "a" + i, false);
+        }
+        CompletableFuture<Void> other = submit(2, PriorityClassEnum.BACKGROUND, "b1", false);
+        CompletableFuture<Void> interactive = submit(3, PriorityClassEnum.INTERACTIVE, "c1", false);
+
+        // 后台只能占 1 个名额，交互式任务立即执行
+        interactive.get(2, TimeUnit.SECONDS);
+        assertEquals(List.of("a1", "c1"), started);
+        assertEquals(50, executor.queued());
+
+        gate.countDown();
+        other.get(2, TimeUnit.SECONDS);
+        first.get(2, TimeUnit.SECONDS);
+        // 用户 2 的任务只排在用户 1 的下一个任务之后，而不是全部 50 个之后
+        assertEquals(List.of("a1", "c1", "a2", "b1"), started.subList(0, 4));
+    }
+
+    @Test
+    public void testTaskFailureCompletesExceptionally() {
+        CompletableFuture<Void> failed = executor.submit(1L, PriorityClassEnum.INTERACTIVE, () -> {
+            throw new RuntimeException("boom");
+        });
+        assertThrows(Exception.class, () -> failed.get(2, TimeUnit.SECONDS));
+        assertTrue(failed.isCompletedExceptionally());
+        submit(1, PriorityClassEnum.BACKGROUND, "after", false).join();
+        assertEquals(List.of("after"), started);
+    }
+}
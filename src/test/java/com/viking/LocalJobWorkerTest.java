@@ -0,0 +1,111 @@
+package com.viking;
+
+import com.viking.ai.novel.application.service.ChapterGenerationTaskService;
+import com.viking.ai.novel.application.service.NovelGenerationTaskService;
+import com.viking.ai.novel.domain.model.GenerationJob;
+import com.viking.ai.novel.domain.model.Task;
+import com.viking.ai.novel.domain.repository.GenerationJobRepository;
+import com.viking.ai.novel.domain.repository.TaskRepository;
+import com.viking.ai.novel.infrastructure.config.ExecutorFactory;
+import com.viking.ai.novel.infrastructure.job.LocalJobWorker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 本地作业执行：认领、按类型执行、失败重试与最终失败
+ */
+public class LocalJobWorkerTest {
+
+    private GenerationJobRepository jobRepository;
+    private TaskRepository taskRepository;
+    private ChapterGenerationTaskService chapterGenerationTaskService;
+    private LocalJobWorker worker;
+
+    @BeforeEach
+    public void setUp() {
+        jobRepository = mock(GenerationJobRepository.class);
+        taskRepository = mock(TaskRepository.class);
+        chapterGenerationTaskService = mock(ChapterGenerationTaskService.class);
+        when(jobRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(jobRepository.claim(anyString(), anyInt())).thenReturn(List.of());
+        // 最多执行 2 次；轮询间隔设大，测试中手动轮询
+        worker = new LocalJobWorker(jobRepository, taskRepository, mock(NovelGenerationTaskService.class),
+                chapterGenerationTaskService, new ExecutorFactory(false), "node-1", 2, 60_000, 60, 2, 30);
+        worker.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        worker.shutdown();
+    }
+
+    private GenerationJob claimed(int attempts) {
+        return GenerationJob.builder().id(1L).jobType(GenerationJob.TYPE_CHAPTER_CONTENT)
+                .novelId(1L).chapterId(10L).taskId(100L).status(1).attempts(attempts).lockedBy("node-1").build();
+    }
+
+    @Test
+    public void testClaimedJobRunsAndCompletes() {
+        GenerationJob job = claimed(1);
+        when(jobRepository.claim("node-1", 2)).thenReturn(List.of(job)).thenReturn(List.of());
+
+        worker.poll();
+
+        verify(chapterGenerationTaskService, timeout(2000)).doGenerateChapterContent(1L, 10L, 100L);
+        verify(jobRepository, timeout(2000)).save(argThat(j -> j.getStatus() == 2));
+    }
+
+    @Test
+    public void testFailedJobIsRescheduledWithBackoff() {
+        GenerationJob job = claimed(1);
+        when(jobRepository.claim("node-1", 2)).thenReturn(List.of(job)).thenReturn(List.of());
+        doThrow(new RuntimeException("boom")).when(chapterGenerationTaskService).doGenerateChapterContent(1L, 10L, 100L);
+
+        worker.poll();
+
+        verify(jobRepository, timeout(2000)).save(argThat(j -> j.getStatus() == 0));
+        assertEquals("boom", job.getLastError());
+        assertNull(job.getLockedBy());
+        assertTrue(job.getAvailableAt().isAfter(LocalDateTime.now().plusSeconds(20)));
+        verify(taskRepository, never()).save(any());
+    }
+
+    @Test
+    public void testJobFailsAfterMaxAttemptsAndMarksTask() {
+        GenerationJob job = claimed(2);
+        Task task = Task.builder().id(100L).taskStatus(1).build();
+        when(taskRepository.findById(100L)).thenReturn(Optional.of(task));
+        when(jobRepository.claim("node-1", 2)).thenReturn(List.of(job)).thenReturn(List.of());
+        doThrow(new RuntimeException("boom")).when(chapterGenerationTaskService).doGenerateChapterContent(1L, 10L, 100L);
+
+        worker.poll();
+
+        verify(taskRepository, timeout(2000)).save(task);
+        assertEquals(3, job.getStatus());
+        assertEquals(3, task.getTaskStatus());
+        assertEquals("boom", task.getErrorMessage());
+    }
+
+    @Test
+    public void testInitFailsFastWhenJobTableIsUnavailable() {
+        GenerationJobRepository missingTable = mock(GenerationJobRepository.class);
+        doThrow(new RuntimeException("Table 'generation_job' doesn't exist")).when(missingTable).probe();
+        LocalJobWorker broken = new LocalJobWorker(missingTable, taskRepository, mock(NovelGenerationTaskService.class),
+                chapterGenerationTaskService, new ExecutorFactory(false), "node-2", 1, 60_000, 60, 2, 30);
+
+        RuntimeException e = assertThrows(RuntimeException.class, broken::init);
+        assertTrue(e.getMessage().contains("job.dispatch.type=inline"));
+        broken.shutdown();
+    }
+}
@@ -0,0 +1,130 @@
+package com.viking;
+
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.infrastructure.ai.ModelAdmissionController;
+import com.viking.ai.novel.infrastructure.config.FairSharePolicy;
+import com.viking.ai.novel.infrastructure.constants.PriorityClassEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelAdmissionControllerTest {
+
+    private static UserModel model(long userId) {
+        return UserModel.builder()
+                .userId(userId)
+                .modelUrl("https://api.example.com/v1")
+                .apiKey("sk-test")
+                .modelName("test-model")
+                .build();
+    }
+
+    @Test
+    public void testFairQueueAcrossUsers() throws Exception {
+        ModelAdmissionController controller = new ModelAdmissionController(1, 0, 5);
+        List<Integer> positions = new ArrayList<>();
+
+        CompletableFuture<ModelAdmissionController.Permit> a1 = controller.acquire(model(1), 10, null);
+        CompletableFuture<ModelAdmissionController.Permit> a2 = controller.acquire(model(1), 10, null);
+        CompletableFuture<ModelAdmissionController.Permit> a3 = controller.acquire(model(1), 10, null);
+        CompletableFuture<ModelAdmissionController.Permit> b1 = controller.acquire(model(2), 10, positions::add);
+
+        assertTrue(a1.isDone());
+        assertFalse(a2.isDone());
+        assertFalse(b1.isDone());
+        // 用户 2 只需等待用户 1 的下一个请求
+        assertEquals(List.of(2), positions);
+
+        a1.get().release();
+        assertTrue(a2.isDone());
+        assertFalse(b1.isDone());
+        assertEquals(List.of(2, 1), positions);
+
+        a2.get().release();
+        assertTrue(b1.isDone());
+        assertFalse(a3.isDone());
+
+        b1.get().release();
+        assertTrue(a3.isDone());
+        a3.get().release();
+        controller.shutdown();
+    }
+
+    @Test
+    public void testSeparateEndpointsDoNotShareLimit() {
+        ModelAdmissionController controller = new ModelAdmissionController(1, 0, 5);
+        UserModel other = model(1);
+        other.setApiKey("sk-other");
+
+        assertTrue(controller.acquire(model(1), 10, null).isDone());
+        assertTrue(controller.acquire(other, 10, null).isDone());
+        assertFalse(controller.acquire(model(1), 10, null).isDone());
+        controller.shutdown();
+    }
+
+    @Test
+    public void testInteractiveBeforeBackgroundWithReservedSlot() throws Exception {
+        // 2 个名额，预留 1 个给交互式请求
+        ModelAdmissionController controller = new ModelAdmissionController(2, 0, 5,
+                new FairSharePolicy("", 1, 0, 0, 1));
+
+        CompletableFuture<ModelAdmissionController.Permit> bg1 =
+                controller.acquire(model(1), 10, null, PriorityClassEnum.BACKGROUND);
+        CompletableFuture<ModelAdmissionController.Permit> bg2 =
+                controller.acquire(model(1), 10, null, PriorityClassEnum.BACKGROUND);
+        assertTrue(bg1.isDone());
+        assertFalse(bg2.isDone());
+
+        CompletableFuture<ModelAdmissionController.Permit> ia = controller.acquire(model(2), 10, null);
+        assertTrue(ia.isDone());
+
+        CompletableFuture<ModelAdmissionController.Permit> ib = controller.acquire(model(3), 10, null);
+        bg1.get().release();
+        // 交互式请求先于更早排队的后台请求
+        assertTrue(ib.isDone());
+        assertFalse(bg2.isDone());
+
+        ia.get().release();
+        assertTrue(bg2.isDone());
+        ib.get().release();
+        bg2.get().release();
+        controller.shutdown();
+    }
+
+    @Test
+    public void testWeightedShareAndPerUserCap() throws Exception {
+        // 用户 1 权重 2；每用户并发上限 1
+        ModelAdmissionController controller = new ModelAdmissionController(1, 0, 5,
+                new FairSharePolicy("1:2", 1, 0, 0, 0));
+        ModelAdmissionController.Permit busy = controller.acquire(model(9), 10, null).get();
+
+        List<String> order = new ArrayList<>();
+        List<ModelAdmissionController.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            for (long user : new long[]{1, 2}) {
+                controller.acquire(model(user), 10, null).thenAccept(p -> {
+                    order.add(user == 1 ? "a" : "b");
+                    permits.add(p);
+                });
+            }
+        }
+        busy.release();
+        for (int i = 0; i < 8; i++) {
+            permits.get(i).release();
+        }
+        // 竞争期间用户 1 获得两倍份额，之后只剩用户 2
+        assertEquals(List.of("a", "b", "a", "a", "b", "a", "b", "b"), order);
+        controller.shutdown();
+
+        ModelAdmissionController capped = new ModelAdmissionController(2, 0, 5,
+                new FairSharePolicy("", 1, 0, 1, 0));
+        assertTrue(capped.acquire(model(1), 10, null).isDone());
+        assertFalse(capped.acquire(model(1), 10, null).isDone());
+        assertTrue(capped.acquire(model(2), 10, null).isDone());
+        capped.shutdown();
+    }
+}
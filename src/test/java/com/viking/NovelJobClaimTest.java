@@ -0,0 +1,85 @@
+package com.viking;
+
+import com.viking.ai.novel.application.service.ChapterGenerationTaskService;
+import com.viking.ai.novel.application.service.ChapterService;
+import com.viking.ai.novel.application.service.NovelGenerationTaskService;
+import com.viking.ai.novel.domain.model.Chapter;
+import com.viking.ai.novel.domain.model.Task;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.domain.repository.NovelRepository;
+import com.viking.ai.novel.domain.repository.TaskRepository;
+import com.viking.ai.novel.domain.repository.UserModelRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.stream.LocalStreamRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 整本生成任务的认领：只执行本节点认领成功的任务，执行结束后释放认领
+ */
+public class NovelJobClaimTest {
+
+    private TaskRepository taskRepository;
+    private ChapterGenerationTaskService chapterGenerationTaskService;
+    private NovelGenerationTaskService service;
+
+    private final Task task = Task.builder().id(100L).taskType(NovelGenerationTaskService.TASK_TYPE_GENERATE_NOVEL)
+            .taskRelationId(1L).taskStatus(1).build();
+
+    @BeforeEach
+    public void setUp() {
+        taskRepository = mock(TaskRepository.class);
+        chapterGenerationTaskService = mock(ChapterGenerationTaskService.class);
+        ChapterRepository chapterRepository = mock(ChapterRepository.class);
+        when(taskRepository.findByTaskTypeAndTaskStatus(NovelGenerationTaskService.TASK_TYPE_GENERATE_NOVEL, 1))
+                .thenReturn(List.of(task));
+        when(chapterRepository.findByNovelId(1L)).thenReturn(List.of(
+                Chapter.builder().id(11L).novelId(1L).chapterNumber(1).status(0).build()));
+        when(chapterGenerationTaskService.generateChapters(anyLong(), anyList(), anyLong(), anyBoolean()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service = new NovelGenerationTaskService(mock(NovelRepository.class), taskRepository, mock(AiModelService.class),
+                mock(UserModelRepository.class), chapterRepository, mock(ChapterService.class),
+                chapterGenerationTaskService, new LocalStreamRegistry());
+        ReflectionTestUtils.setField(service, "resumeOnStartup", true);
+        ReflectionTestUtils.setField(service, "nodeId", "node-1");
+        ReflectionTestUtils.setField(service, "leaseSeconds", 60L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testResumeSkipsTaskClaimedByAnotherNode() {
+        when(taskRepository.claim(eq(100L), eq("node-1"), any())).thenReturn(false);
+
+        service.resumeInterruptedJobs();
+
+        verify(chapterGenerationTaskService, never()).generateChapters(anyLong(), anyList(), anyLong(), anyBoolean());
+        verify(taskRepository, never()).save(any());
+    }
+
+    @Test
+    public void testResumeRunsClaimedTaskAndReleasesIt() {
+        when(taskRepository.claim(eq(100L), eq("node-1"), any())).thenReturn(true);
+
+        service.resumeInterruptedJobs();
+
+        verify(chapterGenerationTaskService).generateChapters(1L, List.of(11L), 100L, true);
+        verify(taskRepository).release(100L, "node-1");
+    }
+}
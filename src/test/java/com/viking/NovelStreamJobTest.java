@@ -0,0 +1,121 @@
+package com.viking;
+
+import com.viking.ai.novel.application.service.ChapterGenerationTaskService;
+import com.viking.ai.novel.application.service.ChapterService;
+import com.viking.ai.novel.application.service.NovelGenerationTaskService;
+import com.viking.ai.novel.domain.model.Novel;
+import com.viking.ai.novel.domain.model.Task;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.domain.repository.ChapterRepository;
+import com.viking.ai.novel.domain.repository.NovelRepository;
+import com.viking.ai.novel.domain.repository.TaskRepository;
+import com.viking.ai.novel.domain.repository.UserModelRepository;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+import com.viking.ai.novel.infrastructure.constants.ModelTypeEnum;
+import com.viking.ai.novel.infrastructure.stream.LocalStreamRegistry;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 小说结构、章节大纲作业：生成结果写回小说并结束任务，失败时任务置为失败且不改动原有大纲与章节
+ */
+public class NovelStreamJobTest {
+
+    private NovelRepository novelRepository;
+    private TaskRepository taskRepository;
+    private AiModelService aiModelService;
+    private ChapterService chapterService;
+    private StreamRegistry streamRegistry;
+    private NovelGenerationTaskService service;
+
+    private Novel novel;
+    private Task task;
+
+    @BeforeEach
+    public void setUp() {
+        novelRepository = mock(NovelRepository.class);
+        taskRepository = mock(TaskRepository.class);
+        aiModelService = mock(AiModelService.class);
+        chapterService = mock(ChapterService.class);
+        UserModelRepository userModelRepository = mock(UserModelRepository.class);
+        streamRegistry = new LocalStreamRegistry();
+
+        novel = Novel.builder().id(1L).userId(1L).title("t").structure("结构").chapterOutline("旧大纲").build();
+        task = Task.builder().id(100L).taskStatus(0).build();
+        when(novelRepository.findById(1L)).thenReturn(Optional.of(novel));
+        when(taskRepository.findById(100L)).thenReturn(Optional.of(task));
+        when(userModelRepository.findByUserIdAndType(1L, ModelTypeEnum.NORMAL.getType()))
+                .thenReturn(Optional.of(UserModel.builder().userId(1L).build()));
+
+        service = new NovelGenerationTaskService(novelRepository, taskRepository, aiModelService, userModelRepository,
+                mock(ChapterRepository.class), chapterService, mock(ChapterGenerationTaskService.class), streamRegistry);
+    }
+
+    @Test
+    public void testStructureJobSavesStructureAndCompletesTask() {
+        doAnswer(inv -> {
+            AiModelService.StreamCallback callback = inv.getArgument(5);
+            callback.onComplete("新结构");
+            return null;
+        }).when(aiModelService).streamNovelStructure(any(), any(), any(), any(), any(), any(), any());
+
+        service.doGenerateNovelStructure(1L, 100L, 1L);
+
+        assertEquals("新结构", novel.getStructure());
+        assertEquals(2, task.getTaskStatus());
+        verify(novelRepository).save(novel);
+        assertTrue(streamRegistry.status(StreamRegistry.novelKey(1L, "structure")).isEmpty());
+    }
+
+    @Test
+    public void testOutlineJobReplacesChaptersAfterGeneration() {
+        doAnswer(inv -> {
+            AiModelService.StreamCallback callback = inv.getArgument(6);
+            callback.onComplete("新大纲");
+            return null;
+        }).when(aiModelService).streamChapterOutline(any(), any(), any(), any(), any(), any(), any(), any());
+
+        service.doGenerateChapterOutline(1L, 100L);
+
+        assertEquals("新大纲", novel.getChapterOutline());
+        assertEquals(2, task.getTaskStatus());
+        verify(chapterService).deleteChaptersByNovelId(1L);
+        verify(chapterService).syncChaptersFromOutline(1L, "新大纲");
+    }
+
+    @Test
+    public void testFailedOutlineJobMarksTaskFailedAndKeepsChapters() {
+        doAnswer(inv -> {
+            AiModelService.StreamCallback callback = inv.getArgument(6);
+            callback.onError(new RuntimeException("model down"));
+            return null;
+        }).when(aiModelService).streamChapterOutline(any(), any(), any(), any(), any(), any(), any(), any());
+
+        assertThrows(RuntimeException.class, () -> service.doGenerateChapterOutline(1L, 100L));
+
+        assertEquals(3, task.getTaskStatus());
+        assertEquals("model down", task.getErrorMessage());
+        assertEquals("旧大纲", novel.getChapterOutline());
+        verify(chapterService, never()).deleteChaptersByNovelId(anyLong());
+        verify(chapterService, never()).syncChaptersFromOutline(anyLong(), any());
+    }
+
+    @Test
+    public void testJobDoesNotCallModelWhileSameStreamIsRunning() {
+        streamRegistry.register(StreamRegistry.novelKey(1L, "structure"), new StreamHandle());
+
+        assertThrows(RuntimeException.class, () -> service.doGenerateNovelStructure(1L, 100L, 1L));
+
+        assertEquals(3, task.getTaskStatus());
+        verify(aiModelService, never()).streamNovelStructure(any(), any(), any(), any(), any(), any(), any());
+    }
+}
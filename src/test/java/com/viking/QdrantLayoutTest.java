@@ -0,0 +1,35 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.ai.QdrantLayout;
+import com.viking.ai.novel.infrastructure.ai.VectorScope;
+import io.qdrant.client.grpc.Points;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QdrantLayoutTest {
+
+    @Test
+    public void testPerNovelLayout() {
+        QdrantLayout layout = new QdrantLayout(QdrantLayout.PER_NOVEL, "novel-vectors", 1);
+
+        assertEquals("novel-chapters-1-2", layout.collectionOf(VectorScope.novel(1L, 2L)));
+        assertEquals("novel-chapters-1-null", layout.collectionOf(VectorScope.library(1L)));
+        assertNull(layout.filterOf(VectorScope.novel(1L, 2L)));
+    }
+
+    @Test
+    public void testSharedLayoutFiltersByScope() {
+        QdrantLayout layout = new QdrantLayout(QdrantLayout.SHARED, "novel-vectors", 4);
+
+        assertEquals("novel-vectors-1", layout.collectionOf(VectorScope.novel(5L, 2L)));
+        assertEquals("novel-vectors-1", layout.collectionOf(VectorScope.library(5L)));
+
+        Points.Filter novelFilter = layout.filterOf(VectorScope.novel(5L, 2L));
+        assertEquals(3, novelFilter.getMustCount());
+        Points.Filter libraryFilter = layout.filterOf(VectorScope.library(5L));
+        assertEquals(2, libraryFilter.getMustCount());
+        assertEquals(VectorScope.KIND_LIBRARY,
+                libraryFilter.getMust(1).getField().getMatch().getKeyword());
+    }
+}
@@ -0,0 +1,54 @@
+package com.viking;
+
+import com.google.common.util.concurrent.Futures;
+import com.viking.ai.novel.infrastructure.ai.QdrantLayout;
+import com.viking.ai.novel.infrastructure.ai.QdrantMigrationJob;
+import com.viking.ai.novel.infrastructure.ai.QdrantService;
+import io.qdrant.client.QdrantClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 向量布局迁移的启动：提交失败时复位运行标记，迁移可以再次启动
+ */
+public class QdrantMigrationJobTest {
+
+    private final QdrantLayout sharedLayout = new QdrantLayout(QdrantLayout.SHARED, "novel-vectors", 1);
+
+    @Test
+    public void testRejectedSubmitResetsRunning() {
+        AtomicInteger submits = new AtomicInteger();
+        Executor rejecting = task -> {
+            submits.incrementAndGet();
+            throw new RejectedExecutionException("queue full");
+        };
+        QdrantMigrationJob job = new QdrantMigrationJob(mock(QdrantClient.class), sharedLayout,
+                mock(QdrantService.class), rejecting);
+
+        assertFalse(job.start(false));
+        assertEquals(false, job.status().get("running"));
+        assertEquals("queue full", job.status().get("lastError"));
+
+        assertFalse(job.start(false));
+        assertEquals(2, submits.get());
+    }
+
+    @Test
+    public void testMigrationClearsRunningWhenFinished() {
+        QdrantClient client = mock(QdrantClient.class);
+        when(client.listCollectionsAsync()).thenReturn(Futures.immediateFuture(List.of()));
+        QdrantMigrationJob job = new QdrantMigrationJob(client, sharedLayout, mock(QdrantService.class), Runnable::run);
+
+        assertTrue(job.start(false));
+        assertEquals(false, job.status().get("running"));
+        assertNotNull(job.status().get("finishedAt"));
+    }
+}
@@ -0,0 +1,217 @@
+package com.viking;
+
+import com.sun.net.httpserver.HttpServer;
+import com.viking.ai.novel.domain.model.UserModel;
+import com.viking.ai.novel.infrastructure.ai.AiModelService;
+import com.viking.ai.novel.infrastructure.ai.ModelAdmissionController;
+import com.viking.ai.novel.infrastructure.ai.ModelClientRegistry;
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+import com.viking.ai.novel.infrastructure.ai.StreamMetrics;
+import com.viking.ai.novel.infrastructure.ai.StreamSupervisor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 停止流式生成时取消上游请求：本地 HTTP 服务模拟逐 token 的 SSE 响应
+ */
+public class StreamCancellationTest {
+
+    private HttpServer server;
+    private final CountDownLatch upstreamClosed = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private ModelAdmissionController admissionController;
+    private AiModelService aiModelService;
+    private StreamSupervisor supervisor;
+    private UserModel model;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 200; i++) {
+                    String chunk = "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"字\"}}]}\n\n";
+                    out.write(chunk.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    Thread.sleep(20);
+                }
+                out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                upstreamClosed.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // 发出两个增量后停顿，模拟挂起的上游连接
+        server.createContext("/stall/v1/chat/completions", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 2; i++) {
+                    out.write("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"字\"}}]}\n\n"
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+                Thread.sleep(3000);
+                out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                upstreamClosed.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        admissionController = new ModelAdmissionController(1, 0, 5);
+        // 空闲超时 1 秒，测试中手动巡检
+        supervisor = new StreamSupervisor(1, 60, 10);
+        aiModelService = new AiModelService(new ModelClientRegistry(meterRegistry, 10, 5), admissionController,
+                new StreamMetrics(meterRegistry, List.of(), 20, true), supervisor);
+        model = UserModel.builder().userId(1L).apiKey("test-key").modelName("test-model")
+                .modelUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1").build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        admissionController.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCancelClosesUpstreamAndReleasesPermit() throws Exception {
+        StreamHandle handle = new StreamHandle();
+        CountDownLatch receivedTokens = new CountDownLatch(3);
+        AtomicReference<String> partial = new AtomicReference<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        aiModelService.streamNovelStructure("标题", "玄幻", "设定", 10, model, new AiModelService.StreamCallback() {
+            @Override
+            public void onDelta(String text) {
+                receivedTokens.countDown();
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+                completed.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCancelled(String partialText) {
+                partial.set(partialText);
+                cancelled.countDown();
+            }
+        }, handle);
+
+        assertTrue(receivedTokens.await(5, TimeUnit.SECONDS));
+        handle.cancel();
+
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        assertTrue(partial.get().startsWith("字字字"));
+        // 上游连接在下一个事件时被关闭，服务端写入失败
+        assertTrue(upstreamClosed.await(2, TimeUnit.SECONDS));
+        assertFalse(completed.get());
+        assertEquals(1.0, meterRegistry.get("ai.stream.cancelled").tag("stream", "structure").counter().count());
+        assertTrue(meterRegistry.get("ai.stream.tokens.saved").tag("stream", "structure").counter().count() > 0);
+        assertEquals(1.0, meterRegistry.get("ai.stream.outcomes").tag("outcome", "stopped").counter().count());
+        assertEquals(1, meterRegistry.get("ai.stream.ttft").tag("model", "test-model").timer().count());
+
+        // 端点并发上限为 1：许可已归还，新的请求可以立即获得准入
+        ModelAdmissionController.Permit permit = admissionController.acquire(model, 1, null).get(1, TimeUnit.SECONDS);
+        permit.release();
+    }
+
+    @Test
+    public void testCancelWhileQueuedNeverCallsUpstream() throws Exception {
+        ModelAdmissionController.Permit busy = admissionController.acquire(model, 1, null).get(1, TimeUnit.SECONDS);
+        StreamHandle handle = new StreamHandle();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicBoolean delta = new AtomicBoolean();
+
+        aiModelService.streamNovelStructure("标题", "玄幻", "设定", 10, model, new AiModelService.StreamCallback() {
+            @Override
+            public void onDelta(String text) {
+                delta.set(true);
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCancelled(String partialText) {
+                cancelled.countDown();
+            }
+        }, handle);
+
+        handle.cancel();
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        busy.release();
+        Thread.sleep(200);
+        assertFalse(delta.get());
+    }
+
+    @Test
+    public void testSupervisorAbortsIdleStream() throws Exception {
+        UserModel stalled = UserModel.builder().userId(1L).apiKey("test-key").modelName("test-model")
+                .modelUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/stall/v1").build();
+        CountDownLatch receivedTokens = new CountDownLatch(2);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch failed = new CountDownLatch(1);
+
+        aiModelService.streamNovelStructure("标题", "玄幻", "设定", 10, stalled, new AiModelService.StreamCallback() {
+            @Override
+            public void onDelta(String text) {
+                receivedTokens.countDown();
+            }
+
+            @Override
+            public void onComplete(String fullText) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error.set(t);
+                failed.countDown();
+            }
+        }, new StreamHandle());
+
+        assertTrue(receivedTokens.await(5, TimeUnit.SECONDS));
+        assertEquals(1, supervisor.snapshot().size());
+        assertEquals(2, supervisor.snapshot().get(0).tokens());
+
+        Thread.sleep(1200);
+        supervisor.sweep();
+
+        assertTrue(failed.await(1, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.get());
+        assertTrue(supervisor.snapshot().isEmpty());
+        assertEquals(1.0, meterRegistry.get("ai.stream.outcomes").tag("outcome", "error").counter().count());
+    }
+}
@@ -0,0 +1,101 @@
+package com.viking;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 并发流容量对比：原 @Async 平台线程池（5/10/100）与虚拟线程执行器。
+ * <p>
+ * 每个模拟的流在执行线程上阻塞等待逐 token 的模型响应（sleep 模拟 HTTP 读），结束时再阻塞一次模拟落库。
+ * 默认不执行，运行方式：
+ * <pre>
+ * mvn test -Dtest=StreamCapacityBenchmark -Dbenchmark=true [-Dbenchmark.streams=2000]
+ * </pre>
+ * 虚拟线程部分需要 JDK 21+。
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class StreamCapacityBenchmark {
+
+    private static final int STREAMS = Integer.getInteger("benchmark.streams", 2000);
+    private static final int TOKENS_PER_STREAM = Integer.getInteger("benchmark.tokens", 50);
+    private static final long TOKEN_INTERVAL_MS = Long.getLong("benchmark.token-interval-ms", 10);
+    private static final long PERSIST_MS = Long.getLong("benchmark.persist-ms", 20);
+
+    private record Result(String name, int accepted, int rejected, int peakConcurrent, long wallMillis) {
+        @Override
+        public String toString() {
+            return String.format("%-22s accepted=%5d rejected=%5d peakConcurrent=%5d wall=%6d ms",
+                    name, accepted, rejected, peakConcurrent, wallMillis);
+        }
+    }
+
+    @Test
+    public void comparePlatformPoolWithVirtualThreads() throws Exception {
+        ThreadPoolTaskExecutor platform = new ThreadPoolTaskExecutor();
+        platform.setCorePoolSize(5);
+        platform.setMaxPoolSize(10);
+        platform.setQueueCapacity(100);
+        platform.setThreadNamePrefix("bench-platform-");
+        platform.initialize();
+        Result platformResult = run("platform pool 5/10/100", platform);
+        platform.shutdown();
+        System.out.println(platformResult);
+
+        if (Runtime.version().feature() < 21) {
+            System.out.println("virtual threads         skipped (requires JDK 21+, running " + Runtime.version() + ")");
+            return;
+        }
+        SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("bench-virtual-");
+        virtual.setVirtualThreads(true);
+        virtual.setConcurrencyLimit(STREAMS);
+        Result virtualResult = run("virtual threads", virtual);
+        System.out.println(virtualResult);
+
+        assertEquals(STREAMS, virtualResult.accepted());
+    }
+
+    private Result run(String name, Executor executor) throws InterruptedException {
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(STREAMS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < STREAMS; i++) {
+            try {
+                executor.execute(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        for (int t = 0; t < TOKENS_PER_STREAM; t++) {
+                            Thread.sleep(TOKEN_INTERVAL_MS);
+                        }
+                        Thread.sleep(PERSIST_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+                accepted.incrementAndGet();
+            } catch (TaskRejectedException e) {
+                rejected.incrementAndGet();
+                done.countDown();
+            }
+        }
+        done.await(10, TimeUnit.MINUTES);
+        long wall = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new Result(name, accepted.get(), rejected.get(), peak.get(), wall);
+    }
+}
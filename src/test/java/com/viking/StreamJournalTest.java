@@ -0,0 +1,85 @@
+package com.viking;
+
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private StreamJournal journal;
+
+    private StreamJournal start() {
+        journal = new StreamJournal(true, dir.toString(), 0, 512, 72);
+        journal.init();
+        return journal;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        journal.shutdown();
+    }
+
+    @Test
+    public void testStoppedStreamKeptAsDraft() {
+        String key = StreamJournal.chapterKey(1L, 3);
+        StreamJournal.Entry entry = start().open(key, "/topic/chapters/1/3");
+        entry.append("第一段");
+        entry.append("第二段");
+        entry.close("stopped");
+
+        StreamJournal.Draft draft = journal.readDraft(key).orElseThrow();
+        assertEquals("第一段第二段", draft.content());
+        assertEquals("stopped", draft.status());
+        assertEquals("/topic/chapters/1/3", draft.destination());
+    }
+
+    @Test
+    public void testCompletedStreamDeletesJournal() throws Exception {
+        String key = StreamJournal.novelKey(1L, "structure");
+        StreamJournal.Entry entry = start().open(key, "/topic/novels/1/structure");
+        entry.append("结构");
+        entry.complete();
+
+        assertTrue(journal.readDraft(key).isEmpty());
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testCrashRecoveryTruncatesTornRecord() throws Exception {
+        String key = StreamJournal.chapterKey(2L, 1);
+        StreamJournal first = start();
+        StreamJournal.Entry entry = first.open(key, "/topic/chapters/2/1");
+        // 超过缓冲大小的记录直接写入文件，模拟崩溃前已落盘的内容
+        String written = "正文".repeat(200);
+        entry.append(written);
+        Path file;
+        try (var files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow();
+        }
+        // 模拟写了一半的尾部记录
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[]{'D', 0, 0, 0, 100, 1, 2});
+        }
+
+        // 新进程启动（不经过 shutdown）
+        StreamJournal restarted = new StreamJournal(true, dir.toString(), 0, 512, 72);
+        restarted.init();
+        StreamJournal.Draft draft = restarted.readDraft(key).orElseThrow();
+        assertEquals(written, draft.content());
+        assertEquals(StreamJournal.STATUS_INTERRUPTED, draft.status());
+        restarted.shutdown();
+    }
+}
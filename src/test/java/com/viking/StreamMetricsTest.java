@@ -0,0 +1,62 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.ai.StreamMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 模型调用指标：model 标签基数有上限，延迟指标输出直方图
+ */
+public class StreamMetricsTest {
+
+    private static List<String> modelTags(SimpleMeterRegistry registry) {
+        return registry.find("ai.stream.prompt.tokens").summaries().stream()
+                .map(summary -> summary.getId().getTag("model"))
+                .sorted()
+                .toList();
+    }
+
+    @Test
+    public void testModelsOutsideAllowListAreTaggedOther() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StreamMetrics metrics = new StreamMetrics(registry, List.of("GPT-4o"), 20, true);
+
+        metrics.start(StreamMetrics.STREAM_CHAPTER, " gpt-4o ", "提示词");
+        metrics.start(StreamMetrics.STREAM_CHAPTER, "my-custom-model-2024", "提示词");
+        metrics.start(StreamMetrics.STREAM_CHAPTER, null, "提示词");
+
+        assertEquals(List.of("gpt-4o", "other", "unknown"), modelTags(registry));
+    }
+
+    @Test
+    public void testModelTagsAreCappedWithoutAllowList() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StreamMetrics metrics = new StreamMetrics(registry, List.of(), 2, true);
+
+        for (String model : List.of("a", "b", "c", "d", "a")) {
+            metrics.start(StreamMetrics.STREAM_CHAPTER, model, "提示词");
+        }
+
+        assertEquals(List.of("a", "b", "other"), modelTags(registry));
+    }
+
+    @Test
+    public void testLatencyTimersPublishHistogram() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        StreamMetrics.Sample sample = new StreamMetrics(registry, List.of(), 20, true)
+                .start(StreamMetrics.STREAM_CHAPTER, "m", "提示词");
+        sample.sent();
+        sample.token();
+        sample.token();
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("ai_stream_ttft_seconds_bucket"));
+        assertTrue(scrape.contains("ai_stream_inter_token_seconds_bucket"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.ai.StreamHandle;
+import com.viking.ai.novel.infrastructure.mq.RocketMqStreamRegistry;
+import com.viking.ai.novel.infrastructure.mq.StreamRegistryMessage;
+import com.viking.ai.novel.infrastructure.stream.StreamRegistry;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 多节点流注册表：两个节点共用一个模拟的广播主题，消息由测试手动投递以模拟广播延迟
+ */
+public class StreamRegistryTest {
+
+    private final List<StreamRegistryMessage> inFlight = new ArrayList<>();
+    private RocketMqStreamRegistry nodeA;
+    private RocketMqStreamRegistry nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        RocketMQTemplate template = mock(RocketMQTemplate.class);
+        doAnswer(invocation -> {
+            inFlight.add(invocation.getArgument(1));
+            return null;
+        }).when(template).asyncSend(anyString(), any(Object.class), any(SendCallback.class));
+        nodeA = new RocketMqStreamRegistry(template, "node-a", 10);
+        nodeB = new RocketMqStreamRegistry(template, "node-b", 10);
+    }
+
+    private void deliver() {
+        while (!inFlight.isEmpty()) {
+            StreamRegistryMessage message = inFlight.remove(0);
+            nodeA.onMessage(message);
+            nodeB.onMessage(message);
+        }
+    }
+
+    @Test
+    public void rejectsStreamRunningOnAnotherNodeAndRoutesStop() {
+        String key = StreamRegistry.chapterKey(1L, 3);
+        StreamHandle handleA = new StreamHandle();
+        assertTrue(nodeA.register(key, handleA));
+        deliver();
+
+        assertFalse(nodeB.register(key, new StreamHandle()));
+        assertEquals("node-a", nodeB.status(key).orElseThrow().nodeId());
+
+        assertTrue(nodeB.stop(key));
+        deliver();
+        assertTrue(handleA.isCancelled());
+        assertFalse(handleA.isYielded());
+
+        nodeA.unregister(key, handleA);
+        deliver();
+        assertTrue(nodeB.status(key).isEmpty());
+        assertTrue(nodeB.register(key, new StreamHandle()));
+    }
+
+    @Test
+    public void concurrentStartKeepsOnlyTheEarlierStream() throws InterruptedException {
+        String key = StreamRegistry.novelKey(1L, "outline");
+        StreamHandle handleA = new StreamHandle();
+        StreamHandle handleB = new StreamHandle();
+        assertTrue(nodeA.register(key, handleA));
+        Thread.sleep(5);
+        // B 尚未收到 A 的 CLAIM，本地检查通过
+        assertTrue(nodeB.register(key, handleB));
+        deliver();
+
+        assertFalse(handleA.isCancelled());
+        assertTrue(handleB.isCancelled());
+        // 让出而非普通停止：回调方据此不写回状态、不发送 stopped
+        assertTrue(handleB.isYielded());
+        assertTrue(nodeA.status(key).orElseThrow().local());
+        assertEquals("node-a", nodeB.status(key).orElseThrow().nodeId());
+    }
+}
@@ -0,0 +1,105 @@
+package com.viking;
+
+import com.viking.ai.novel.interfaces.dto.ChapterStreamPayload;
+import com.viking.ai.novel.interfaces.stream.CoalescingStreamWriter;
+import com.viking.ai.novel.interfaces.stream.StreamJournal;
+import com.viking.ai.novel.interfaces.stream.StreamWriterFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class StreamReplayTest {
+
+    private static final String DESTINATION = "/topic/chapters/1/1";
+
+    @TempDir
+    Path dir;
+
+    private StreamJournal journal;
+    private StreamWriterFactory factory;
+
+    private CoalescingStreamWriter start(int replayCapacity) {
+        journal = new StreamJournal(true, dir.toString(), 0, 512, 72);
+        journal.init();
+        // 窗口为 0：每个 delta 立即推送，便于断言序号
+        factory = new StreamWriterFactory(mock(SimpMessagingTemplate.class), journal, 0, 512,
+                replayCapacity, 100_000, 60);
+        return factory.create(DESTINATION, StreamJournal.chapterKey(1L, 1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        factory.shutdown();
+        journal.shutdown();
+    }
+
+    @Test
+    public void testResumeSendsOnlyMissedFrames() {
+        CoalescingStreamWriter writer = start(16);
+        writer.delta("一");
+        writer.delta("二");
+        writer.delta("三");
+        writer.finish("stopped", null);
+
+        List<ChapterStreamPayload> replayed = new ArrayList<>();
+        factory.find(DESTINATION).orElseThrow().replay(writer.getStreamId(), 1L, replayed::add);
+
+        assertEquals(List.of(2L, 3L, 4L), replayed.stream().map(ChapterStreamPayload::getSeq).toList());
+        assertEquals("二", replayed.get(0).getContent());
+        assertEquals("stopped", replayed.get(2).getType());
+    }
+
+    @Test
+    public void testUnknownStreamReplaysFromStart() {
+        CoalescingStreamWriter writer = start(16);
+        writer.delta("一");
+        writer.delta("二");
+
+        List<ChapterStreamPayload> replayed = new ArrayList<>();
+        writer.replay(writer.getStreamId() - 1, 5L, replayed::add);
+
+        assertEquals(CoalescingStreamWriter.TYPE_REPLAY_RESET, replayed.get(0).getType());
+        assertEquals(List.of("一", "二"), replayed.subList(1, 3).stream().map(ChapterStreamPayload::getContent).toList());
+    }
+
+    @Test
+    public void testEvictedFramesFallBackToJournalSnapshot() {
+        CoalescingStreamWriter writer = start(2);
+        writer.delta("一");
+        writer.delta("二");
+        writer.delta("三");
+        writer.finish("error", "timeout");
+
+        List<ChapterStreamPayload> replayed = new ArrayList<>();
+        writer.replay(writer.getStreamId(), 0L, replayed::add);
+
+        assertEquals(CoalescingStreamWriter.TYPE_SNAPSHOT, replayed.get(0).getType());
+        assertEquals("一二三", replayed.get(0).getContent());
+        assertEquals(4L, replayed.get(0).getSeq());
+        assertEquals("error", replayed.get(1).getType());
+    }
+
+    @Test
+    public void testDuplicateRequestAttachesToRunningStream() {
+        CoalescingStreamWriter writer = start(16);
+        writer.delta("一");
+        writer.delta("二");
+
+        List<ChapterStreamPayload> received = new ArrayList<>();
+        assertTrue(factory.attach(DESTINATION, received::add));
+        assertEquals(List.of(CoalescingStreamWriter.TYPE_ATTACHED, CoalescingStreamWriter.TYPE_REPLAY_RESET, "delta", "delta"),
+                received.stream().map(ChapterStreamPayload::getType).toList());
+        assertEquals("二", received.get(3).getContent());
+
+        writer.finish("complete", null);
+        assertFalse(factory.attach(DESTINATION, received::add));
+    }
+}
@@ -0,0 +1,45 @@
+package com.viking;
+
+import com.viking.ai.novel.infrastructure.ai.TextChunker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextChunkerTest {
+
+    @Test
+    public void testChunksOverlapAndCoverText() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            content.append("这是第").append(i).append("句话，用于测试分块。");
+        }
+        String text = content.toString();
+
+        List<TextChunker.Chunk> chunks = TextChunker.split(text, 100, 20);
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 0; i < chunks.size(); i++) {
+            TextChunker.Chunk chunk = chunks.get(i);
+            assertEquals(i, chunk.index());
+            assertTrue(chunk.text().length() <= 100);
+            assertTrue(text.startsWith(chunk.text(), chunk.offset()));
+            if (i > 0) {
+                TextChunker.Chunk previous = chunks.get(i - 1);
+                // 相邻块有重叠
+                assertTrue(chunk.offset() < previous.offset() + previous.text().length());
+            }
+        }
+        TextChunker.Chunk last = chunks.get(chunks.size() - 1);
+        assertEquals(text.length(), last.offset() + last.text().length());
+        // 优先在句末断开
+        assertTrue(chunks.get(0).text().endsWith("。"));
+    }
+
+    @Test
+    public void testBlankContent() {
+        assertTrue(TextChunker.split("  ", 100, 20).isEmpty());
+        assertTrue(TextChunker.split(null, 100, 20).isEmpty());
+    }
+}